@@ -0,0 +1,501 @@
+import java.util.function.IntConsumer;
+
+/**
+ * Classe que representa uma Árvore Radix Adaptativa (ART) de chaves inteiras.
+ * Em vez de comparar chaves, a descida usa cada um dos 4 bytes da chave como
+ * índice do filho, pelo que a altura nunca passa de 4 nós internos,
+ * independentemente da ordem das inserções.
+ *
+ * Os nós internos adaptam-se ao número de filhos (Node4, Node16, Node48 e
+ * Node256) e crescem para o tipo seguinte quando ficam cheios. Os bytes que
+ * todas as chaves de uma subárvore partilham não criam nós (compressão de
+ * caminho): cada nó interno guarda o nível do byte que o distingue e uma chave
+ * de referência da subárvore, com a qual é verificado o prefixo. As chaves
+ * ficam em folhas, criadas só quando o caminho deixa de ser único.
+ *
+ * As chaves são guardadas com o bit de sinal invertido, para que a ordem dos
+ * bytes sem sinal coincida com a ordem dos inteiros com sinal.
+ *
+ * @author Guilherme Rosmaninho
+ * @version 1.0
+ */
+public class ARTree {
+
+    /**
+     * Classe base dos nós.
+     */
+    private abstract static class Node {
+    }
+
+    /**
+     * Folha: guarda uma chave completa (já com o bit de sinal invertido).
+     */
+    private static final class Folha extends Node {
+        final int chave;
+
+        Folha(int chave) {
+            this.chave = chave;
+        }
+    }
+
+    /**
+     * Nó interno. Distingue os filhos pelo byte {@code nivel} da chave (0 é o
+     * mais significativo); todas as chaves da subárvore partilham os bytes
+     * anteriores com {@code referencia}.
+     */
+    private abstract static class Interno extends Node {
+        final int referencia, nivel;
+        int n;
+
+        Interno(int referencia, int nivel) {
+            this.referencia = referencia;
+            this.nivel = nivel;
+        }
+
+        /** Devolve o filho do byte indicado, ou {@code null}. */
+        abstract Node filho(int b);
+
+        /** Substitui o filho (existente) do byte indicado. */
+        abstract void substituir(int b, Node filho);
+
+        /** Devolve o menor byte maior ou igual ao indicado que tem filho, ou -1. */
+        abstract int seguinte(int b);
+
+        /** Indica se o nó já não tem espaço para mais filhos. */
+        abstract boolean cheio();
+
+        /** Acrescenta um filho para um byte sem filho (o nó não pode estar cheio). */
+        abstract void acrescentar(int b, Node filho);
+
+        /** Cria um nó do tipo seguinte com os mesmos filhos. */
+        abstract Interno crescer();
+
+        /** Copia todos os filhos para outro nó, por ordem crescente dos bytes. */
+        void copiarPara(Interno destino) {
+            for (int b = seguinte(0); b >= 0; b = b == 255 ? -1 : seguinte(b + 1)) destino.acrescentar(b, filho(b));
+        }
+    }
+
+    /**
+     * Nó com até 4 filhos, com os bytes ordenados.
+     */
+    private static final class Node4 extends Interno {
+        final byte[] bytes = new byte[4];
+        final Node[] filhos = new Node[4];
+
+        Node4(int referencia, int nivel) {
+            super(referencia, nivel);
+        }
+
+        @Override
+        Node filho(int b) {
+            for (int i = 0; i < n; i++) {
+                if ((bytes[i] & 0xFF) == b) return filhos[i];
+            }
+            return null;
+        }
+
+        @Override
+        void substituir(int b, Node filho) {
+            for (int i = 0; i < n; i++) {
+                if ((bytes[i] & 0xFF) == b) filhos[i] = filho;
+            }
+        }
+
+        @Override
+        int seguinte(int b) {
+            for (int i = 0; i < n; i++) {
+                if ((bytes[i] & 0xFF) >= b) return bytes[i] & 0xFF;
+            }
+            return -1;
+        }
+
+        @Override
+        boolean cheio() {
+            return n == 4;
+        }
+
+        @Override
+        void acrescentar(int b, Node filho) {
+            int i = n;
+            while (i > 0 && (bytes[i - 1] & 0xFF) > b) {
+                bytes[i] = bytes[i - 1];
+                filhos[i] = filhos[i - 1];
+                i--;
+            }
+            bytes[i] = (byte) b;
+            filhos[i] = filho;
+            n++;
+        }
+
+        @Override
+        Interno crescer() {
+            Node16 maior = new Node16(referencia, nivel);
+            System.arraycopy(bytes, 0, maior.bytes, 0, n);
+            System.arraycopy(filhos, 0, maior.filhos, 0, n);
+            maior.n = n;
+            return maior;
+        }
+    }
+
+    /**
+     * Nó com até 16 filhos, com os bytes ordenados.
+     */
+    private static final class Node16 extends Interno {
+        final byte[] bytes = new byte[16];
+        final Node[] filhos = new Node[16];
+
+        Node16(int referencia, int nivel) {
+            super(referencia, nivel);
+        }
+
+        @Override
+        Node filho(int b) {
+            for (int i = 0; i < n; i++) {
+                if ((bytes[i] & 0xFF) == b) return filhos[i];
+            }
+            return null;
+        }
+
+        @Override
+        void substituir(int b, Node filho) {
+            for (int i = 0; i < n; i++) {
+                if ((bytes[i] & 0xFF) == b) filhos[i] = filho;
+            }
+        }
+
+        @Override
+        int seguinte(int b) {
+            for (int i = 0; i < n; i++) {
+                if ((bytes[i] & 0xFF) >= b) return bytes[i] & 0xFF;
+            }
+            return -1;
+        }
+
+        @Override
+        boolean cheio() {
+            return n == 16;
+        }
+
+        @Override
+        void acrescentar(int b, Node filho) {
+            int i = n;
+            while (i > 0 && (bytes[i - 1] & 0xFF) > b) {
+                bytes[i] = bytes[i - 1];
+                filhos[i] = filhos[i - 1];
+                i--;
+            }
+            bytes[i] = (byte) b;
+            filhos[i] = filho;
+            n++;
+        }
+
+        @Override
+        Interno crescer() {
+            Node48 maior = new Node48(referencia, nivel);
+            copiarPara(maior);
+            return maior;
+        }
+    }
+
+    /**
+     * Nó com até 48 filhos: um índice de 256 posições indica a posição do
+     * filho de cada byte (mais 1; 0 significa que não há filho).
+     */
+    private static final class Node48 extends Interno {
+        final byte[] indice = new byte[256];
+        final Node[] filhos = new Node[48];
+
+        Node48(int referencia, int nivel) {
+            super(referencia, nivel);
+        }
+
+        @Override
+        Node filho(int b) {
+            int i = indice[b];
+            return i == 0 ? null : filhos[i - 1];
+        }
+
+        @Override
+        void substituir(int b, Node filho) {
+            filhos[indice[b] - 1] = filho;
+        }
+
+        @Override
+        int seguinte(int b) {
+            for (; b < 256; b++) {
+                if (indice[b] != 0) return b;
+            }
+            return -1;
+        }
+
+        @Override
+        boolean cheio() {
+            return n == 48;
+        }
+
+        @Override
+        void acrescentar(int b, Node filho) {
+            filhos[n] = filho;
+            indice[b] = (byte) ++n;
+        }
+
+        @Override
+        Interno crescer() {
+            Node256 maior = new Node256(referencia, nivel);
+            copiarPara(maior);
+            return maior;
+        }
+    }
+
+    /**
+     * Nó com um filho por cada valor do byte.
+     */
+    private static final class Node256 extends Interno {
+        final Node[] filhos = new Node[256];
+
+        Node256(int referencia, int nivel) {
+            super(referencia, nivel);
+        }
+
+        @Override
+        Node filho(int b) {
+            return filhos[b];
+        }
+
+        @Override
+        void substituir(int b, Node filho) {
+            filhos[b] = filho;
+        }
+
+        @Override
+        int seguinte(int b) {
+            for (; b < 256; b++) {
+                if (filhos[b] != null) return b;
+            }
+            return -1;
+        }
+
+        @Override
+        boolean cheio() {
+            return false;
+        }
+
+        @Override
+        void acrescentar(int b, Node filho) {
+            filhos[b] = filho;
+            n++;
+        }
+
+        @Override
+        Interno crescer() {
+            throw new IllegalStateException("Um Node256 nunca fica cheio");
+        }
+    }
+
+    private Node root;
+
+    /**
+     * Número total de nós que cresceram para o tipo seguinte durante as inserções.
+     */
+    public int crescimentos = 0;
+
+    /**
+     * Número total de nós visitados nas descidas das inserções (a ART não
+     * compara chaves, por isso é esta a medida do trabalho de cada descida).
+     */
+    public long comparacoes = 0;
+
+    /**
+     * Insere uma chave na árvore, sem recursão. As chaves repetidas são ignoradas.
+     *
+     * @param chave A chave a ser inserida.
+     */
+    public void insert(int chave) {
+        int u = chave ^ Integer.MIN_VALUE;
+        if (root == null) {
+            root = new Folha(u);
+            return;
+        }
+
+        Interno pai = null;
+        int bytePai = 0;
+        Node node = root;
+        while (true) {
+            comparacoes++;
+            if (node instanceof Folha) {
+                int outra = ((Folha) node).chave;
+                if (outra == u) return;
+                int nivel = Integer.numberOfLeadingZeros(u ^ outra) >>> 3;
+                ligar(pai, bytePai, dividir(node, outra, u, nivel));
+                return;
+            }
+
+            Interno interno = (Interno) node;
+            if (((u ^ interno.referencia) & mascara(interno.nivel)) != 0) {
+                // O prefixo comprimido diverge antes do byte deste nó
+                int nivel = Integer.numberOfLeadingZeros(u ^ interno.referencia) >>> 3;
+                ligar(pai, bytePai, dividir(node, interno.referencia, u, nivel));
+                return;
+            }
+
+            int b = byteDe(u, interno.nivel);
+            Node filho = interno.filho(b);
+            if (filho == null) {
+                if (interno.cheio()) {
+                    interno = interno.crescer();
+                    crescimentos++;
+                    ligar(pai, bytePai, interno);
+                }
+                interno.acrescentar(b, new Folha(u));
+                return;
+            }
+
+            pai = interno;
+            bytePai = b;
+            node = filho;
+        }
+    }
+
+    /**
+     * Verifica se uma chave existe na árvore. A descida não verifica os
+     * prefixos comprimidos, porque a folha guarda a chave completa.
+     *
+     * @param chave chave a procurar
+     * @return true se a chave existir, false caso contrário
+     */
+    public boolean contains(int chave) {
+        int u = chave ^ Integer.MIN_VALUE;
+        Node node = root;
+        while (node instanceof Interno) {
+            Interno interno = (Interno) node;
+            node = interno.filho(byteDe(u, interno.nivel));
+        }
+        return node != null && ((Folha) node).chave == u;
+    }
+
+    /**
+     * Percorre por ordem crescente as chaves do intervalo [de, ate], sem
+     * visitar as subárvores que ficam fora do intervalo. A recursão tem no
+     * máximo 5 níveis.
+     *
+     * @param de limite inferior (inclusive)
+     * @param ate limite superior (inclusive)
+     * @param acao ação aplicada a cada chave do intervalo
+     * @return o número de chaves visitadas
+     */
+    public int range(int de, int ate, IntConsumer acao) {
+        if (root == null || de > ate) return 0;
+        return range(root, de ^ Integer.MIN_VALUE, ate ^ Integer.MIN_VALUE, acao);
+    }
+
+    /**
+     * Percorre o intervalo [de, ate] (chaves já transformadas) numa subárvore.
+     */
+    private int range(Node node, int de, int ate, IntConsumer acao) {
+        if (node instanceof Folha) {
+            int u = ((Folha) node).chave;
+            if (Integer.compareUnsigned(u, de) < 0 || Integer.compareUnsigned(u, ate) > 0) return 0;
+            acao.accept(u ^ Integer.MIN_VALUE);
+            return 1;
+        }
+
+        Interno interno = (Interno) node;
+        int deslocamento = 24 - 8 * interno.nivel;
+        int base = interno.referencia & mascara(interno.nivel);
+        int resto = (int) ((1L << deslocamento) - 1);
+        if (Integer.compareUnsigned(base | 0xFF << deslocamento | resto, de) < 0
+                || Integer.compareUnsigned(base, ate) > 0) return 0;
+
+        int visitadas = 0;
+        for (int b = interno.seguinte(0); b >= 0; b = b == 255 ? -1 : interno.seguinte(b + 1)) {
+            int menor = base | b << deslocamento;
+            if (Integer.compareUnsigned(menor, ate) > 0) break;
+            if (Integer.compareUnsigned(menor | resto, de) < 0) continue;
+            visitadas += range(interno.filho(b), de, ate, acao);
+        }
+        return visitadas;
+    }
+
+    /**
+     * Devolve a altura da árvore (número de nós no caminho mais longo, incluindo a folha).
+     *
+     * @return altura da árvore, ou 0 se estiver vazia
+     */
+    public int altura() {
+        return (int) medirForma(root, 1)[2];
+    }
+
+    /**
+     * Devolve a profundidade média das folhas (a raiz tem profundidade 1).
+     *
+     * @return profundidade média, ou 0 se a árvore estiver vazia
+     */
+    public double profundidadeMedia() {
+        long[] forma = medirForma(root, 1);
+        return forma[0] == 0 ? 0.0 : (double) forma[1] / forma[0];
+    }
+
+    /**
+     * Mede a forma de uma subárvore (a recursão tem no máximo 5 níveis).
+     *
+     * @return número de folhas, soma das suas profundidades e altura
+     */
+    private long[] medirForma(Node node, int profundidade) {
+        long[] forma = new long[3];
+        if (node == null) return forma;
+        if (node instanceof Folha) {
+            forma[0] = 1;
+            forma[1] = profundidade;
+            forma[2] = profundidade;
+            return forma;
+        }
+        Interno interno = (Interno) node;
+        for (int b = interno.seguinte(0); b >= 0; b = b == 255 ? -1 : interno.seguinte(b + 1)) {
+            long[] filho = medirForma(interno.filho(b), profundidade + 1);
+            forma[0] += filho[0];
+            forma[1] += filho[1];
+            forma[2] = Math.max(forma[2], filho[2]);
+        }
+        return forma;
+    }
+
+    /**
+     * Cria um Node4 no nível onde duas chaves divergem, com o nó existente e
+     * uma folha para a nova chave.
+     *
+     * @param existente nó (folha ou interno) cujas chaves começam por {@code chaveExistente}
+     * @param chaveExistente chave de referência do nó existente
+     * @param nova chave a inserir (transformada)
+     * @param nivel primeiro byte em que as duas chaves diferem
+     * @return o novo nó
+     */
+    private Interno dividir(Node existente, int chaveExistente, int nova, int nivel) {
+        Node4 node = new Node4(nova, nivel);
+        node.acrescentar(byteDe(chaveExistente, nivel), existente);
+        node.acrescentar(byteDe(nova, nivel), new Folha(nova));
+        return node;
+    }
+
+    /**
+     * Coloca um nó no lugar do filho de um pai, ou na raiz se não houver pai.
+     */
+    private void ligar(Interno pai, int b, Node node) {
+        if (pai == null) root = node;
+        else pai.substituir(b, node);
+    }
+
+    /**
+     * Devolve o byte de uma chave num nível (0 é o mais significativo).
+     */
+    private static int byteDe(int u, int nivel) {
+        return (u >>> (24 - 8 * nivel)) & 0xFF;
+    }
+
+    /**
+     * Devolve a máscara dos bytes anteriores a um nível.
+     */
+    private static int mascara(int nivel) {
+        return nivel == 0 ? 0 : -1 << (32 - 8 * nivel);
+    }
+}
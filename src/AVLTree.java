@@ -1,3 +1,20 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
 /**
  * Classe que representa uma Árvore AVL,uma árvore binária de busca
  * autobalanceada que garante operações eficientes.
@@ -25,6 +42,18 @@ public class AVLTree {
         }
     }
 
+    /**
+     * Nó com o tamanho da sua subárvore, usado só quando os tamanhos estão
+     * ativos (ver {@link #comTamanhos()}).
+     */
+    private class NoContado extends Node {
+        int tamanho = 1;
+
+        NoContado(int chave) {
+            super(chave);
+        }
+    }
+
     private Node root;
 
     /**
@@ -32,15 +61,405 @@ public class AVLTree {
      */
     public int rotacoes = 0;
 
+    /**
+     * Número total de comparações de chaves feitas nas descidas das inserções.
+     */
+    public long comparacoes = 0;
+
+    /** Indica se o tamanho de cada subárvore é mantido (ver {@link #comTamanhos()}). */
+    private boolean contarTamanhos = false;
+
+    /** Indica se as inserções copiam o caminho em vez de alterar os nós (ver {@link #persistente()}). */
+    private boolean persistente = false;
+
+    /** Raiz da última versão completa, lida pelos snapshots de outras threads. */
+    private volatile Node raizPublicada;
+
+    /** Tamanho abaixo do qual a construção paralela passa a ser sequencial. */
+    private static final int LIMIAR_PARALELO = 1 << 13;
+
+    /** Caminho da raiz até ao ponto de inserção, reutilizado por {@link #insertIter(int)}. */
+    private Node[] caminho = new Node[64];
+
+    /** Dedo: caminho da raiz até à última chave inserida por {@link #insertFinger(int)}. */
+    private Node[] dedo = new Node[64];
+
+    /** Intervalo aberto de chaves que cabe na subárvore de cada nó do dedo. */
+    private long[] dedoInf = new long[64], dedoSup = new long[64];
+
+    /** Número de níveis válidos do dedo; 0 quando outra inserção o invalidou. */
+    private int tamanhoDedo = 0;
+
+    /**
+     * Constrói em tempo linear uma Árvore AVL perfeitamente balanceada a partir
+     * de chaves ordenadas de forma crescente, sem qualquer rotação.
+     * As chaves repetidas são ignoradas.
+     *
+     * @param ordenadas chaves por ordem crescente
+     * @return a árvore construída
+     * @throws IllegalArgumentException se as chaves não estiverem ordenadas
+     */
+    public static AVLTree fromSorted(int[] ordenadas) {
+        int[] chaves = DetetorOrdem.semDuplicados(ordenadas);
+        AVLTree tree = new AVLTree();
+        tree.root = tree.construirBalanceada(chaves, 0, chaves.length - 1);
+        return tree;
+    }
+
+    /**
+     * Constrói uma Árvore AVL a partir de um conjunto de chaves qualquer.
+     * Se as chaves já estiverem ordenadas (crescente ou decrescente) usa
+     * {@link #fromSorted(int[])}; caso contrário insere-as uma a uma.
+     *
+     * @param chaves chaves a carregar
+     * @return a árvore construída
+     */
+    public static AVLTree carregar(int[] chaves) {
+        int[] ordenadas = DetetorOrdem.ordenadasSemDuplicados(chaves);
+        if (ordenadas != null) return fromSorted(ordenadas);
+
+        AVLTree tree = new AVLTree();
+        for (int chave : chaves) tree.insert(chave);
+        return tree;
+    }
+
+    /**
+     * Constrói em paralelo uma Árvore AVL com as chaves indicadas, por qualquer ordem.
+     *
+     * As chaves são ordenadas e deduplicadas com uma ordenação paralela e as
+     * subárvores esquerda e direita de cada intervalo grande são construídas
+     * em tarefas separadas do pool, sendo ligadas ao nó do meio no regresso.
+     * A árvore resultante contém as mesmas chaves que a inserção sequencial.
+     *
+     * @param chaves chaves a carregar
+     * @param pool pool onde correm a ordenação e a construção
+     * @return a árvore construída
+     */
+    public static AVLTree carregarParalelo(int[] chaves, ForkJoinPool pool) {
+        AVLTree tree = new AVLTree();
+        tree.root = pool.invoke(ForkJoinTask.adapt(() -> {
+            int[] ordenadas = DetetorOrdem.ordenarEmParalelo(chaves);
+            return tree.new ConstrucaoParalela(ordenadas, 0, ordenadas.length - 1).invoke();
+        }));
+        return tree;
+    }
+
+    /**
+     * Tarefa que constrói a subárvore balanceada de um intervalo de chaves,
+     * dividindo o trabalho entre as duas metades enquanto o intervalo for grande.
+     */
+    @SuppressWarnings("serial") // as tarefas nunca são serializadas
+    private class ConstrucaoParalela extends RecursiveTask<Node> {
+        private final int[] chaves;
+        private final int inicio, fim;
+
+        ConstrucaoParalela(int[] chaves, int inicio, int fim) {
+            this.chaves = chaves;
+            this.inicio = inicio;
+            this.fim = fim;
+        }
+
+        @Override
+        protected Node compute() {
+            if (fim - inicio < LIMIAR_PARALELO) return construirBalanceada(chaves, inicio, fim);
+
+            int meio = (inicio + fim) >>> 1;
+            ConstrucaoParalela esquerda = new ConstrucaoParalela(chaves, inicio, meio - 1);
+            esquerda.fork();
+            Node node = novoNo(chaves[meio]);
+            node.direita = new ConstrucaoParalela(chaves, meio + 1, fim).compute();
+            node.esquerda = esquerda.join();
+            updateAltura(node);
+            return node;
+        }
+    }
+
+    /**
+     * Constrói recursivamente a subárvore balanceada de um intervalo de chaves,
+     * usando a chave do meio como raiz.
+     *
+     * @param chaves chaves estritamente crescentes
+     * @param inicio primeira posição do intervalo
+     * @param fim última posição do intervalo
+     * @return a raiz da subárvore, ou {@code null} se o intervalo for vazio
+     */
+    private Node construirBalanceada(int[] chaves, int inicio, int fim) {
+        if (inicio > fim) return null;
+
+        int meio = (inicio + fim) >>> 1;
+        Node node = novoNo(chaves[meio]);
+        node.esquerda = construirBalanceada(chaves, inicio, meio - 1);
+        node.direita = construirBalanceada(chaves, meio + 1, fim);
+        updateAltura(node);
+        return node;
+    }
+
     /**
      * Insere uma nova chave inteira na Árvore AVL.
      *
      * @param chave A chave a ser inserida.
      */
     public void insert(int chave) {
+        tamanhoDedo = 0;
+        if (persistente) {
+            root = insertCopia(root, chave);
+            raizPublicada = root;
+            return;
+        }
         root = insertRec(root, chave);
     }
 
+    /**
+     * Ativa o modo persistente: a partir daqui cada inserção copia os O(log n)
+     * nós do caminho desde a raiz e nunca altera um nó já existente, pelo que
+     * {@link #snapshot()} é apenas a captura da raiz atual e pode ser lido por
+     * outras threads sem locks enquanto esta continua a inserir.
+     *
+     * Em modo persistente, {@link #insertIter(int)} e {@link #insertFinger(int)}
+     * passam a usar {@link #insert(int)}, porque alteram os nós no lugar.
+     *
+     * @return esta árvore
+     */
+    public AVLTree persistente() {
+        persistente = true;
+        raizPublicada = root;
+        return this;
+    }
+
+    /**
+     * Captura em O(1) a versão atual de uma árvore em modo persistente.
+     * O snapshot não muda com as inserções seguintes e pode ser lido por
+     * qualquer thread.
+     *
+     * @return o snapshot
+     * @throws IllegalStateException se a árvore não estiver em modo persistente
+     */
+    public Snapshot snapshot() {
+        if (!persistente) throw new IllegalStateException("A árvore não está em modo persistente; use persistente()");
+        return new Snapshot(raizPublicada);
+    }
+
+    /**
+     * Inserção com cópia do caminho: cada nó atravessado é substituído por uma
+     * cópia e só as cópias são alteradas. As rotações de uma inserção AVL só
+     * mexem em nós do caminho da nova chave, que nesta altura já são cópias,
+     * pelo que o balanceamento habitual pode ser reutilizado sem alterar a
+     * versão anterior.
+     *
+     * @param node Subárvore atual (não é alterada).
+     * @param chave Chave a ser inserida.
+     * @return A nova subárvore, ou a própria se a chave já existir.
+     */
+    private Node insertCopia(Node node, int chave) {
+        if (node == null) return novoNo(chave);
+
+        comparacoes++;
+        Node copia;
+        if (chave < node.chave) {
+            Node esquerda = insertCopia(node.esquerda, chave);
+            if (esquerda == node.esquerda) return node; // Chave duplicada, nada foi copiado
+            copia = copiar(node);
+            copia.esquerda = esquerda;
+        } else if (chave > node.chave) {
+            Node direita = insertCopia(node.direita, chave);
+            if (direita == node.direita) return node;
+            copia = copiar(node);
+            copia.direita = direita;
+        } else {
+            // Chave duplicada, não faz nada
+            return node;
+        }
+
+        updateAltura(copia);
+        if (contarTamanhos) atualizarTamanho(copia);
+        return balance(copia);
+    }
+
+    /**
+     * Cria uma cópia de um nó, com os mesmos filhos.
+     *
+     * @param node O nó a copiar.
+     * @return A cópia.
+     */
+    private Node copiar(Node node) {
+        Node copia = novoNo(node.chave);
+        copia.altura = node.altura;
+        if (contarTamanhos) ((NoContado) copia).tamanho = tamanho(node);
+        copia.esquerda = node.esquerda;
+        copia.direita = node.direita;
+        return copia;
+    }
+
+    /**
+     * Insere uma nova chave sem recursão, guardando o caminho num buffer explícito.
+     *
+     * Produz exatamente a mesma árvore que {@link #insert(int)}, mas interrompe a
+     * subida assim que a altura de uma subárvore deixa de mudar ou após uma
+     * rotação, e só reescreve as ligações que foram efetivamente alteradas.
+     *
+     * @param chave A chave a ser inserida.
+     */
+    public void insertIter(int chave) {
+        if (persistente) {
+            insert(chave);
+            return;
+        }
+        tamanhoDedo = 0;
+        if (root == null) {
+            root = novoNo(chave);
+            return;
+        }
+
+        int profundidade = 0;
+        Node atual = root;
+        while (atual != null) {
+            if (profundidade == caminho.length) caminho = Arrays.copyOf(caminho, profundidade * 2);
+            caminho[profundidade++] = atual;
+            comparacoes++;
+            if (chave < atual.chave) {
+                atual = atual.esquerda;
+            } else if (chave > atual.chave) {
+                atual = atual.direita;
+            } else {
+                // Chave duplicada, não faz nada
+                return;
+            }
+        }
+
+        Node pai = caminho[profundidade - 1];
+        if (chave < pai.chave) pai.esquerda = novoNo(chave);
+        else pai.direita = novoNo(chave);
+        if (contarTamanhos) for (int i = 0; i < profundidade; i++) ((NoContado) caminho[i]).tamanho++;
+
+        for (int i = profundidade - 1; i >= 0; i--) {
+            Node node = caminho[i];
+            int alturaAntes = node.altura;
+            updateAltura(node);
+            Node novo = balance(node);
+
+            if (novo != node) {
+                // Após uma rotação a subárvore recupera a altura anterior à inserção
+                if (i == 0) root = novo;
+                else if (caminho[i - 1].esquerda == node) caminho[i - 1].esquerda = novo;
+                else caminho[i - 1].direita = novo;
+                return;
+            }
+            if (node.altura == alturaAntes) return;
+        }
+    }
+
+    /**
+     * Insere uma nova chave partindo da posição da última inserção (finger search).
+     *
+     * Sobe pelo dedo até à subárvore mais funda cujo intervalo de chaves contém
+     * a nova chave e desce a partir daí, pelo que o custo da procura depende da
+     * distância à chave anterior e não do tamanho da árvore. Em sequências
+     * crescentes ou decrescentes a nova chave fica logo abaixo do último nó.
+     * O balanceamento é o mesmo de {@link #insertIter(int)}; se houver uma
+     * rotação, o dedo é refeito só a partir da subárvore rodada.
+     *
+     * @param chave A chave a ser inserida.
+     */
+    public void insertFinger(int chave) {
+        if (persistente) {
+            insert(chave);
+            return;
+        }
+        if (root == null) {
+            root = novoNo(chave);
+            tamanhoDedo = empilharDedo(0, root, Long.MIN_VALUE, Long.MAX_VALUE);
+            return;
+        }
+
+        int nivel = tamanhoDedo - 1;
+        while (nivel > 0 && (chave <= dedoInf[nivel] || chave >= dedoSup[nivel])) nivel--;
+        int profundidade = nivel < 0
+                ? descerDedo(0, root, Long.MIN_VALUE, Long.MAX_VALUE, chave)
+                : descerDedo(nivel, dedo[nivel], dedoInf[nivel], dedoSup[nivel], chave);
+
+        Node pai = dedo[profundidade - 1];
+        if (pai.chave == chave) {
+            // Chave duplicada, o dedo fica no nó existente
+            tamanhoDedo = profundidade;
+            return;
+        }
+
+        Node novo = novoNo(chave);
+        if (chave < pai.chave) {
+            pai.esquerda = novo;
+            tamanhoDedo = empilharDedo(profundidade, novo, dedoInf[profundidade - 1], pai.chave);
+        } else {
+            pai.direita = novo;
+            tamanhoDedo = empilharDedo(profundidade, novo, pai.chave, dedoSup[profundidade - 1]);
+        }
+        if (contarTamanhos) for (int i = 0; i < profundidade; i++) ((NoContado) dedo[i]).tamanho++;
+
+        for (int i = profundidade - 1; i >= 0; i--) {
+            Node node = dedo[i];
+            int alturaAntes = node.altura;
+            updateAltura(node);
+            Node novaRaiz = balance(node);
+
+            if (novaRaiz != node) {
+                if (i == 0) root = novaRaiz;
+                else if (dedo[i - 1].esquerda == node) dedo[i - 1].esquerda = novaRaiz;
+                else dedo[i - 1].direita = novaRaiz;
+                // A rotação não muda o intervalo da subárvore, só o caminho dentro dela
+                tamanhoDedo = descerDedo(i, novaRaiz, dedoInf[i], dedoSup[i], chave);
+                return;
+            }
+            if (node.altura == alturaAntes) return;
+        }
+    }
+
+    /**
+     * Desce a partir de um nó até encontrar a chave ou o ponto onde seria
+     * inserida, registando cada nó no dedo com o intervalo da sua subárvore.
+     *
+     * @param nivel Nível do dedo onde fica o nó de partida.
+     * @param atual Nó de partida.
+     * @param inf Limite inferior (exclusivo) das chaves da subárvore de partida.
+     * @param sup Limite superior (exclusivo) das chaves da subárvore de partida.
+     * @param chave Chave procurada.
+     * @return Número de níveis do dedo; o último é o nó com a chave ou o seu futuro pai.
+     */
+    private int descerDedo(int nivel, Node atual, long inf, long sup, int chave) {
+        while (true) {
+            nivel = empilharDedo(nivel, atual, inf, sup);
+            comparacoes++;
+            if (chave < atual.chave && atual.esquerda != null) {
+                sup = atual.chave;
+                atual = atual.esquerda;
+            } else if (chave > atual.chave && atual.direita != null) {
+                inf = atual.chave;
+                atual = atual.direita;
+            } else {
+                return nivel;
+            }
+        }
+    }
+
+    /**
+     * Regista um nó num nível do dedo, fazendo crescer os buffers se necessário.
+     *
+     * @param nivel Nível a escrever.
+     * @param node Nó a registar.
+     * @param inf Limite inferior (exclusivo) das chaves da subárvore.
+     * @param sup Limite superior (exclusivo) das chaves da subárvore.
+     * @return O número de níveis após o registo.
+     */
+    private int empilharDedo(int nivel, Node node, long inf, long sup) {
+        if (nivel == dedo.length) {
+            dedo = Arrays.copyOf(dedo, nivel * 2);
+            dedoInf = Arrays.copyOf(dedoInf, nivel * 2);
+            dedoSup = Arrays.copyOf(dedoSup, nivel * 2);
+        }
+        dedo[nivel] = node;
+        dedoInf[nivel] = inf;
+        dedoSup[nivel] = sup;
+        return nivel + 1;
+    }
+
     /**
      * Método recursivo auxiliar para inserção de uma chave.
      *
@@ -49,8 +468,9 @@ public class AVLTree {
      * @return A subárvore atualizada após a inserção e eventual balanceamento.
      */
     private Node insertRec(Node node, int chave) {
-        if (node == null) return new Node(chave);
+        if (node == null) return novoNo(chave);
 
+        comparacoes++;
         if (chave < node.chave) {
             node.esquerda = insertRec(node.esquerda, chave);
         } else if (chave > node.chave) {
@@ -61,9 +481,455 @@ public class AVLTree {
         }
 
         updateAltura(node);
+        if (contarTamanhos) atualizarTamanho(node);
         return balance(node);
     }
 
+    /**
+     * Verifica se uma chave existe na árvore.
+     *
+     * @param chave chave a procurar
+     * @return true se a chave existir, false caso contrário
+     */
+    public boolean contains(int chave) {
+        Node atual = root;
+        while (atual != null) {
+            if (chave < atual.chave) atual = atual.esquerda;
+            else if (chave > atual.chave) atual = atual.direita;
+            else return true;
+        }
+        return false;
+    }
+
+    /**
+     * Devolve a maior chave da árvore menor ou igual à indicada.
+     *
+     * @param chave chave de referência
+     * @return a chave encontrada, ou {@code null} se não existir
+     */
+    public Integer floor(int chave) {
+        Node atual = root, melhor = null;
+        while (atual != null) {
+            if (chave < atual.chave) {
+                atual = atual.esquerda;
+            } else if (chave > atual.chave) {
+                melhor = atual;
+                atual = atual.direita;
+            } else {
+                return atual.chave;
+            }
+        }
+        return melhor == null ? null : melhor.chave;
+    }
+
+    /**
+     * Devolve a menor chave da árvore maior ou igual à indicada.
+     *
+     * @param chave chave de referência
+     * @return a chave encontrada, ou {@code null} se não existir
+     */
+    public Integer ceiling(int chave) {
+        Node atual = root, melhor = null;
+        while (atual != null) {
+            if (chave > atual.chave) {
+                atual = atual.direita;
+            } else if (chave < atual.chave) {
+                melhor = atual;
+                atual = atual.esquerda;
+            } else {
+                return atual.chave;
+            }
+        }
+        return melhor == null ? null : melhor.chave;
+    }
+
+    /**
+     * Percorre por ordem crescente as chaves do intervalo [de, ate], sem
+     * recursão e sem visitar as subárvores que ficam fora do intervalo.
+     *
+     * @param de limite inferior (inclusive)
+     * @param ate limite superior (inclusive)
+     * @param acao ação aplicada a cada chave do intervalo
+     * @return o número de chaves visitadas
+     */
+    public int range(int de, int ate, IntConsumer acao) {
+        int visitadas = 0;
+        ArrayDeque<Node> pilha = new ArrayDeque<>();
+        Node atual = root;
+        while (true) {
+            while (atual != null) {
+                if (atual.chave < de) {
+                    atual = atual.direita;
+                } else {
+                    pilha.push(atual);
+                    atual = atual.esquerda;
+                }
+            }
+            if (pilha.isEmpty()) return visitadas;
+
+            Node node = pilha.pop();
+            if (node.chave > ate) return visitadas;
+            acao.accept(node.chave);
+            visitadas++;
+            atual = node.direita;
+        }
+    }
+
+    /**
+     * Devolve um cursor pelas chaves, por ordem crescente. O cursor não aloca
+     * nada por chave e pode ser reposto no início com {@link Cursor#reiniciar()}
+     * para voltar a percorrer a árvore sem criar outro. Deixa de ser válido se
+     * a árvore for alterada.
+     *
+     * @return o cursor, posicionado na menor chave
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Devolve um spliterator pelas chaves, por ordem crescente, que se divide
+     * nas fronteiras das subárvores, para agregações com
+     * {@code IntStream.parallel()}. A árvore não pode ser alterada enquanto
+     * é percorrida.
+     *
+     * @return o spliterator
+     */
+    public Spliterator.OfInt spliterator() {
+        return new Percurso(root, contarTamanhos ? tamanho(root) : Long.MAX_VALUE);
+    }
+
+    /**
+     * Devolve as chaves como um {@link IntStream}, por ordem crescente.
+     *
+     * @param paralelo true para um stream paralelo
+     * @return o stream das chaves
+     */
+    public IntStream stream(boolean paralelo) {
+        return StreamSupport.intStream(spliterator(), paralelo);
+    }
+
+    /**
+     * Converte a árvore numa forma imutável sem referências, num único
+     * {@code int[]} com disposição Eytzinger, para fases só de leitura. A
+     * árvore não é alterada.
+     *
+     * @return a forma imutável com as chaves atuais
+     */
+    public FrozenTree freeze() {
+        return freeze(false);
+    }
+
+    /**
+     * Converte a árvore numa forma imutável sem referências, com disposição
+     * Eytzinger ou van Emde Boas (ver {@link FrozenTree}). A árvore não é alterada.
+     *
+     * @param vanEmdeBoas true para a disposição van Emde Boas
+     * @return a forma imutável com as chaves atuais
+     */
+    public FrozenTree freeze(boolean vanEmdeBoas) {
+        FrozenTree.Recolha recolha = new FrozenTree.Recolha();
+        range(Integer.MIN_VALUE, Integer.MAX_VALUE, recolha);
+        return vanEmdeBoas ? FrozenTree.vanEmdeBoas(recolha.chaves()) : FrozenTree.eytzinger(recolha.chaves());
+    }
+
+    /**
+     * Grava a árvore num ficheiro de snapshot binário (ver {@link FormatoArvore}):
+     * os nós em pré-ordem, cada um com a chave, a altura de cada nó e os filhos
+     * que tem. O ficheiro é substituído se existir.
+     *
+     * @param ficheiro caminho do ficheiro
+     * @throws IOException se não for possível escrever o ficheiro
+     */
+    public void gravar(Path ficheiro) throws IOException {
+        try (FormatoArvore.Escritor escritor = new FormatoArvore.Escritor(ficheiro, FormatoArvore.AVL,
+                contarTamanhos ? FormatoArvore.TAMANHOS : 0)) {
+            if (root == null) return;
+            ArrayDeque<Node> pilha = new ArrayDeque<>();
+            pilha.push(root);
+            while (!pilha.isEmpty()) {
+                Node node = pilha.pop();
+                int filhos = (node.esquerda != null ? FormatoArvore.ESQUERDA : 0)
+                        | (node.direita != null ? FormatoArvore.DIREITA : 0);
+                escritor.no(5).putInt(node.chave).put((byte) (node.altura | filhos << 6));
+                if (node.direita != null) pilha.push(node.direita);
+                if (node.esquerda != null) pilha.push(node.esquerda);
+            }
+        }
+    }
+
+    /**
+     * Lê uma árvore de um ficheiro de snapshot gravado por {@link #gravar(Path)},
+     * mapeado em memória. A árvore é refeita com a mesma forma e com as alturas guardadas,
+     * numa só passagem e sem rotações.
+     *
+     * @param ficheiro caminho do ficheiro
+     * @return a árvore lida
+     * @throws IOException se o ficheiro não puder ser lido ou não for um snapshot válido
+     */
+    public static AVLTree ler(Path ficheiro) throws IOException {
+        ByteBuffer mapa = FormatoArvore.mapear(ficheiro, FormatoArvore.AVL, 5);
+        AVLTree arvore = new AVLTree();
+        arvore.contarTamanhos = (FormatoArvore.opcoes(mapa) & FormatoArvore.TAMANHOS) != 0;
+        arvore.lerNos(mapa, FormatoArvore.nos(mapa));
+        if (arvore.contarTamanhos) arvore.recalcularTamanhos();
+        return arvore;
+    }
+
+    /**
+     * Refaz a árvore a partir dos nós em pré-ordem. Cada nó com filhos fica
+     * numa pilha até receber todos os filhos que o registo indica.
+     */
+    private void lerNos(ByteBuffer mapa, int n) throws IOException {
+        Node[] pilha = new Node[64];
+        int[] pendentes = new int[64];
+        int topo = 0;
+        for (int i = 0; i < n; i++) {
+            int chave = mapa.getInt();
+            int meta = mapa.get() & 0xFF;
+            Node node = novoNo(chave);
+            node.altura = meta & 0x3F;
+            int filhos = meta >>> 6;
+
+            if (root == null) {
+                root = node;
+            } else {
+                if (topo == 0) throw new IOException("Snapshot inválido: nó sem pai na posição " + i);
+                Node pai = pilha[topo - 1];
+                if ((pendentes[topo - 1] & FormatoArvore.ESQUERDA) != 0) {
+                    pai.esquerda = node;
+                    pendentes[topo - 1] &= ~FormatoArvore.ESQUERDA;
+                } else {
+                    pai.direita = node;
+                    pendentes[topo - 1] = 0;
+                }
+                if (pendentes[topo - 1] == 0) topo--;
+            }
+
+            if (filhos != 0) {
+                if (topo == pilha.length) {
+                    pilha = Arrays.copyOf(pilha, topo * 2);
+                    pendentes = Arrays.copyOf(pendentes, topo * 2);
+                }
+                pilha[topo] = node;
+                pendentes[topo++] = filhos;
+            }
+        }
+        if (topo != 0) throw new IOException("Snapshot inválido: faltam nós");
+    }
+
+    /**
+     * Ativa a contagem do tamanho de cada subárvore, que passa a ser mantida
+     * por todas as inserções e rotações e permite {@link #rank(int)},
+     * {@link #select(int)} e {@link #countRange(int, int)} em O(log n).
+     * Os nós existentes são substituídos, numa só passagem, por nós com o
+     * tamanho da subárvore, pelo que também pode ser usada numa árvore
+     * construída por carregamento em bloco.
+     *
+     * Só os nós de uma árvore com os tamanhos ativos têm o campo do tamanho:
+     * cada um passa de 32 para 40 bytes (com referências comprimidas), além do
+     * custo de manter os tamanhos nas inserções e rotações. Sem os tamanhos,
+     * a árvore não paga nada. O mesmo vale para a {@link VPTree} e a
+     * {@link TreapTree}.
+     *
+     * @return esta árvore
+     */
+    public AVLTree comTamanhos() {
+        if (!contarTamanhos) {
+            contarTamanhos = true;
+            recalcularTamanhos();
+        }
+        return this;
+    }
+
+    /**
+     * Devolve o número de chaves da árvore menores do que a indicada.
+     *
+     * @param chave chave de referência
+     * @return número de chaves menores
+     * @throws IllegalStateException se os tamanhos das subárvores não estiverem ativos
+     */
+    public int rank(int chave) {
+        return contarMenores(chave);
+    }
+
+    /**
+     * Devolve a chave com a posição indicada na ordem crescente.
+     *
+     * @param posicao posição da chave, a começar em 0
+     * @return a chave nessa posição
+     * @throws IllegalStateException se os tamanhos das subárvores não estiverem ativos
+     * @throws IndexOutOfBoundsException se a posição não existir
+     */
+    public int select(int posicao) {
+        exigirTamanhos();
+        if (posicao < 0 || posicao >= tamanho(root)) {
+            throw new IndexOutOfBoundsException("Posição " + posicao + " fora de [0, " + tamanho(root) + ")");
+        }
+
+        Node atual = root;
+        while (true) {
+            int esquerda = tamanho(atual.esquerda);
+            if (posicao < esquerda) {
+                atual = atual.esquerda;
+            } else if (posicao > esquerda) {
+                posicao -= esquerda + 1;
+                atual = atual.direita;
+            } else {
+                return atual.chave;
+            }
+        }
+    }
+
+    /**
+     * Conta as chaves do intervalo [de, ate] sem as percorrer.
+     *
+     * @param de limite inferior (inclusive)
+     * @param ate limite superior (inclusive)
+     * @return número de chaves no intervalo
+     * @throws IllegalStateException se os tamanhos das subárvores não estiverem ativos
+     */
+    public int countRange(int de, int ate) {
+        if (de > ate) {
+            exigirTamanhos();
+            return 0;
+        }
+        return contarMenores((long) ate + 1) - contarMenores(de);
+    }
+
+    /**
+     * Conta as chaves menores do que um limite, somando os tamanhos das
+     * subárvores esquerdas deixadas para trás na descida.
+     *
+     * @param limite limite (exclusivo); é um long para que {@code ate + 1} não transborde
+     * @return número de chaves menores do que o limite
+     */
+    private int contarMenores(long limite) {
+        exigirTamanhos();
+        int menores = 0;
+        Node atual = root;
+        while (atual != null) {
+            if (limite <= atual.chave) {
+                atual = atual.esquerda;
+            } else {
+                menores += tamanho(atual.esquerda) + 1;
+                atual = atual.direita;
+            }
+        }
+        return menores;
+    }
+
+    /**
+     * Garante que os tamanhos das subárvores estão a ser mantidos.
+     *
+     * @throws IllegalStateException se não estiverem
+     */
+    private void exigirTamanhos() {
+        if (!contarTamanhos) {
+            throw new IllegalStateException("Os tamanhos das subárvores não estão ativos; use comTamanhos()");
+        }
+    }
+
+    /**
+     * Troca sem recursão cada nó sem tamanho por um {@link NoContado} e calcula
+     * o tamanho de todos os nós: a lista por ordem de descoberta, já com os
+     * nós novos, é percorrida ao contrário, pelo que cada nó é tratado depois
+     * dos seus filhos. Os nós antigos não são alterados, pelo que os snapshots
+     * de uma árvore persistente continuam válidos.
+     */
+    private void recalcularTamanhos() {
+        tamanhoDedo = 0;
+        if (root == null) return;
+
+        ArrayList<Node> ordem = new ArrayList<>();
+        root = contado(root);
+        ordem.add(root);
+        for (int i = 0; i < ordem.size(); i++) {
+            Node node = ordem.get(i);
+            if (node.esquerda != null) ordem.add(node.esquerda = contado(node.esquerda));
+            if (node.direita != null) ordem.add(node.direita = contado(node.direita));
+        }
+        for (int i = ordem.size() - 1; i >= 0; i--) atualizarTamanho(ordem.get(i));
+        if (persistente) raizPublicada = root;
+    }
+
+    /**
+     * Devolve o próprio nó, se já tiver tamanho, ou uma cópia com tamanho e
+     * com os mesmos filhos.
+     *
+     * @param node O nó a converter.
+     * @return Um nó com o campo do tamanho.
+     */
+    private Node contado(Node node) {
+        if (node instanceof NoContado) return node;
+        Node copia = new NoContado(node.chave);
+        copia.altura = node.altura;
+        copia.esquerda = node.esquerda;
+        copia.direita = node.direita;
+        return copia;
+    }
+
+    /**
+     * Cria um nó, com o campo do tamanho se os tamanhos estiverem ativos.
+     *
+     * @param chave A chave do nó.
+     * @return O novo nó.
+     */
+    private Node novoNo(int chave) {
+        return contarTamanhos ? new NoContado(chave) : new Node(chave);
+    }
+
+    /**
+     * Devolve a altura da árvore (número de nós no caminho mais longo).
+     *
+     * @return altura da árvore, ou 0 se estiver vazia
+     */
+    public int altura() {
+        return altura(root);
+    }
+
+    /**
+     * Devolve a profundidade média dos nós, isto é, o comprimento médio do
+     * caminho desde a raiz (a raiz tem profundidade 1).
+     *
+     * @return profundidade média, ou 0 se a árvore estiver vazia
+     */
+    public double profundidadeMedia() {
+        long[] forma = medirForma();
+        return forma[0] == 0 ? 0.0 : (double) forma[1] / forma[0];
+    }
+
+    /**
+     * Percorre a árvore sem recursão e mede a sua forma.
+     *
+     * @return número de nós, soma das profundidades e altura
+     */
+    private long[] medirForma() {
+        long[] forma = new long[3];
+        if (root == null) return forma;
+
+        ArrayDeque<Node> nos = new ArrayDeque<>();
+        ArrayDeque<Integer> profundidades = new ArrayDeque<>();
+        nos.push(root);
+        profundidades.push(1);
+        while (!nos.isEmpty()) {
+            Node node = nos.pop();
+            int profundidade = profundidades.pop();
+            forma[0]++;
+            forma[1] += profundidade;
+            forma[2] = Math.max(forma[2], profundidade);
+            if (node.esquerda != null) {
+                nos.push(node.esquerda);
+                profundidades.push(profundidade + 1);
+            }
+            if (node.direita != null) {
+                nos.push(node.direita);
+                profundidades.push(profundidade + 1);
+            }
+        }
+        return forma;
+    }
+
     /**
      * Atualiza a altura de um nó com base nas alturas dos seus filhos.
      *
@@ -83,6 +949,25 @@ public class AVLTree {
         return node == null ? 0 : node.altura;
     }
 
+    /**
+     * Retorna o tamanho da subárvore de um nó.
+     *
+     * @param node O nó a ser avaliado.
+     * @return O número de nós da subárvore, ou 0 se for {@code null}.
+     */
+    private int tamanho(Node node) {
+        return node == null ? 0 : ((NoContado) node).tamanho;
+    }
+
+    /**
+     * Atualiza o tamanho de um nó com base nos tamanhos dos seus filhos.
+     *
+     * @param node O nó cujo tamanho deve ser atualizado.
+     */
+    private void atualizarTamanho(Node node) {
+        ((NoContado) node).tamanho = 1 + tamanho(node.esquerda) + tamanho(node.direita);
+    }
+
     /**
      * Calcula o fator de balanceamento de um nó.
      *
@@ -129,6 +1014,10 @@ public class AVLTree {
         x.direita = y;
         updateAltura(y);
         updateAltura(x);
+        if (contarTamanhos) {
+            atualizarTamanho(y);
+            atualizarTamanho(x);
+        }
         return x;
     }
 
@@ -145,6 +1034,218 @@ public class AVLTree {
         y.esquerda = x;
         updateAltura(x);
         updateAltura(y);
+        if (contarTamanhos) {
+            atualizarTamanho(x);
+            atualizarTamanho(y);
+        }
         return y;
     }
-}
\ No newline at end of file
+
+    /**
+     * Versão imutável de uma árvore em modo persistente, obtida por
+     * {@link #snapshot()}. Como os nós de uma versão publicada nunca são
+     * alterados, pode ser lida por várias threads ao mesmo tempo sem locks.
+     */
+    public final class Snapshot {
+        private final Node raiz;
+
+        private Snapshot(Node raiz) {
+            this.raiz = raiz;
+        }
+
+        /**
+         * Verifica se uma chave existe nesta versão.
+         *
+         * @param chave chave a procurar
+         * @return true se a chave existir, false caso contrário
+         */
+        public boolean contains(int chave) {
+            Node atual = raiz;
+            while (atual != null) {
+                if (chave < atual.chave) atual = atual.esquerda;
+                else if (chave > atual.chave) atual = atual.direita;
+                else return true;
+            }
+            return false;
+        }
+
+        /**
+         * Devolve a altura desta versão.
+         *
+         * @return altura da árvore, ou 0 se estiver vazia
+         */
+        public int altura() {
+            return raiz == null ? 0 : raiz.altura;
+        }
+
+        /**
+         * Devolve um iterador pelas chaves desta versão, por ordem crescente.
+         * Cada iterador usa uma pilha própria, pelo que cada thread deve usar o seu.
+         *
+         * @return o iterador
+         */
+        public PrimitiveIterator.OfInt iterator() {
+            return new PrimitiveIterator.OfInt() {
+                private Node[] pilha = new Node[Math.max(1, altura())];
+                private int topo = 0;
+
+                {
+                    descer(raiz);
+                }
+
+                private void descer(Node node) {
+                    for (; node != null; node = node.esquerda) {
+                        if (topo == pilha.length) pilha = Arrays.copyOf(pilha, topo * 2);
+                        pilha[topo++] = node;
+                    }
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return topo > 0;
+                }
+
+                @Override
+                public int nextInt() {
+                    if (topo == 0) throw new NoSuchElementException();
+                    Node node = pilha[--topo];
+                    descer(node.direita);
+                    return node.chave;
+                }
+            };
+        }
+    }
+
+    /**
+     * Cursor em ordem pela AVL. A pilha começa com a altura guardada na raiz,
+     * que limita a profundidade do percurso, e é reutilizada por
+     * {@link #reiniciar()}; só cresce se a árvore tiver ficado mais alta.
+     */
+    public final class Cursor implements PrimitiveIterator.OfInt {
+        private Node[] pilha = new Node[root == null ? 1 : root.altura];
+        private int topo = 0;
+
+        private Cursor() {
+            descer(root);
+        }
+
+        /**
+         * Volta a posicionar o cursor na menor chave da árvore, reutilizando a pilha.
+         */
+        public void reiniciar() {
+            Arrays.fill(pilha, 0, topo, null);
+            topo = 0;
+            descer(root);
+        }
+
+        private void descer(Node node) {
+            for (; node != null; node = node.esquerda) {
+                if (topo == pilha.length) pilha = Arrays.copyOf(pilha, topo * 2);
+                pilha[topo++] = node;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return topo > 0;
+        }
+
+        @Override
+        public int nextInt() {
+            if (topo == 0) throw new NoSuchElementException();
+            Node node = pilha[--topo];
+            descer(node.direita);
+            return node.chave;
+        }
+
+        @Override
+        public void forEachRemaining(IntConsumer acao) {
+            while (topo > 0) {
+                Node node = pilha[--topo];
+                descer(node.direita);
+                acao.accept(node.chave);
+            }
+        }
+    }
+
+    /**
+     * Spliterator em ordem pela AVL, dividido pelas subárvores direitas da pilha
+     * como o da {@link BinaryTree}. Com a árvore equilibrada, cada divisão fica
+     * perto de metade das chaves, que é o que a estimativa assume.
+     */
+    private final class Percurso implements Spliterator.OfInt {
+        private Node[] pilha;
+        private int topo = 0, corte = 0;
+        private long estimativa;
+
+        Percurso(Node raiz, long estimativa) {
+            this.pilha = new Node[raiz == null ? 1 : raiz.altura];
+            this.estimativa = estimativa;
+            descer(raiz);
+        }
+
+        private Percurso(Node[] pilha, int topo, long estimativa) {
+            this.pilha = pilha;
+            this.topo = topo;
+            this.corte = 1;
+            this.estimativa = estimativa;
+        }
+
+        private void descer(Node node) {
+            for (; node != null; node = node.esquerda) {
+                if (topo == pilha.length) pilha = Arrays.copyOf(pilha, topo * 2);
+                pilha[topo++] = node;
+            }
+        }
+
+        @Override
+        public boolean tryAdvance(IntConsumer acao) {
+            if (topo == 0) return false;
+            Node node = pilha[--topo];
+            if (topo >= corte) descer(node.direita);
+            acao.accept(node.chave);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(IntConsumer acao) {
+            while (topo > 0) {
+                Node node = pilha[--topo];
+                if (topo >= corte) descer(node.direita);
+                acao.accept(node.chave);
+            }
+        }
+
+        @Override
+        public Spliterator.OfInt trySplit() {
+            int c = corte;
+            while (c < topo && pilha[c].direita == null) c++;
+            if (c >= topo) return null;
+
+            // Prefixo: o nó c, já sem a subárvore direita, e os que estão acima dele
+            Node[] prefixo = Arrays.copyOfRange(pilha, c, c + pilha.length);
+            Node direita = pilha[c].direita;
+            Arrays.fill(pilha, c, topo, null);
+            int tamanhoPrefixo = topo - c;
+            topo = corte = c;
+            descer(direita);
+            estimativa >>>= 1;
+            return new Percurso(prefixo, tamanhoPrefixo, estimativa);
+        }
+
+        @Override
+        public long estimateSize() {
+            return estimativa;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SORTED | DISTINCT | NONNULL;
+        }
+
+        @Override
+        public Comparator<? super Integer> getComparator() {
+            return null;
+        }
+    }
+}
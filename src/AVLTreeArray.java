@@ -0,0 +1,196 @@
+import java.util.Arrays;
+
+/**
+ * Variante da {@link AVLTree} em que os nós são guardados em arrays paralelos
+ * de tipos primitivos (struct-of-arrays) em vez de objetos individuais.
+ *
+ * Cada nó é identificado por um índice; o índice 0 representa o nó nulo.
+ * Os arrays crescem para o dobro quando ficam cheios. A lógica de inserção,
+ * balanceamento e rotação é a mesma da {@link AVLTree}.
+ *
+ * @author Guilherme Rosmaninho
+ * @version 1.0
+ */
+public class AVLTreeArray {
+
+    /** Índice que representa a ausência de nó. */
+    private static final int NULO = 0;
+
+    private int[] chaves;
+    private int[] esquerdas;
+    private int[] direitas;
+    private byte[] alturas;
+
+    /** Número de nós alocados (o índice 0 está reservado). */
+    private int tamanho = 0;
+
+    private int root = NULO;
+
+    /**
+     * Número total de rotações realizadas durante as inserções.
+     */
+    public int rotacoes = 0;
+
+    /**
+     * Cria uma árvore vazia com capacidade inicial por omissão.
+     */
+    public AVLTreeArray() {
+        this(16);
+    }
+
+    /**
+     * Cria uma árvore vazia com a capacidade inicial indicada.
+     *
+     * @param capacidade número de nós a reservar inicialmente
+     */
+    public AVLTreeArray(int capacidade) {
+        int n = Math.max(2, capacidade + 1);
+        chaves = new int[n];
+        esquerdas = new int[n];
+        direitas = new int[n];
+        alturas = new byte[n];
+    }
+
+    /**
+     * Insere uma nova chave inteira na Árvore AVL.
+     *
+     * @param chave A chave a ser inserida.
+     */
+    public void insert(int chave) {
+        root = insertRec(root, chave);
+    }
+
+    /**
+     * Devolve o número de bytes ocupados pelos arrays de nós.
+     *
+     * @return bytes reservados para o armazenamento
+     */
+    public long bytesUsados() {
+        return (long) chaves.length * (3 * Integer.BYTES + Byte.BYTES);
+    }
+
+    /**
+     * Aloca um novo nó, fazendo crescer os arrays se necessário.
+     *
+     * @param chave A chave a guardar no nó.
+     * @return O índice do novo nó.
+     */
+    private int novoNo(int chave) {
+        if (tamanho + 1 == chaves.length) crescer();
+        int node = ++tamanho;
+        chaves[node] = chave;
+        alturas[node] = 1;
+        return node;
+    }
+
+    /**
+     * Duplica a capacidade dos arrays de nós.
+     */
+    private void crescer() {
+        int n = chaves.length * 2;
+        chaves = Arrays.copyOf(chaves, n);
+        esquerdas = Arrays.copyOf(esquerdas, n);
+        direitas = Arrays.copyOf(direitas, n);
+        alturas = Arrays.copyOf(alturas, n);
+    }
+
+    /**
+     * Método recursivo auxiliar para inserção de uma chave.
+     *
+     * @param node Índice da subárvore atual.
+     * @param chave Chave a ser inserida.
+     * @return O índice da subárvore atualizada após a inserção e eventual balanceamento.
+     */
+    private int insertRec(int node, int chave) {
+        if (node == NULO) return novoNo(chave);
+
+        // O filho é calculado antes da escrita porque a inserção pode realocar os arrays
+        if (chave < chaves[node]) {
+            int filho = insertRec(esquerdas[node], chave);
+            esquerdas[node] = filho;
+        } else if (chave > chaves[node]) {
+            int filho = insertRec(direitas[node], chave);
+            direitas[node] = filho;
+        } else {
+            // Chave duplicada, não faz nada
+            return node;
+        }
+
+        updateAltura(node);
+        return balance(node);
+    }
+
+    /**
+     * Atualiza a altura de um nó com base nas alturas dos seus filhos.
+     *
+     * @param node O nó cuja altura deve ser atualizada.
+     */
+    private void updateAltura(int node) {
+        alturas[node] = (byte) (1 + Math.max(alturas[esquerdas[node]], alturas[direitas[node]]));
+    }
+
+    /**
+     * Calcula o fator de balanceamento de um nó.
+     *
+     * @param node O nó a ser avaliado.
+     * @return A diferença entre as alturas dos filhos esquerdo e direito.
+     */
+    private int getBalance(int node) {
+        return alturas[esquerdas[node]] - alturas[direitas[node]];
+    }
+
+    /**
+     * Realiza o balanceamento do nó fornecido, utilizando rotações se necessário.
+     *
+     * @param node O nó a ser balanceado.
+     * @return O novo nó raiz da subárvore após o balanceamento.
+     */
+    private int balance(int node) {
+        int balance = getBalance(node);
+
+        if (balance > 1) {
+            if (getBalance(esquerdas[node]) < 0)
+                esquerdas[node] = rotacaoEsquerda(esquerdas[node]); // rotação dupla
+            return rotacaoDireita(node);
+        }
+        if (balance < -1) {
+            if (getBalance(direitas[node]) > 0)
+                direitas[node] = rotacaoDireita(direitas[node]); // rotação dupla
+            return rotacaoEsquerda(node);
+        }
+
+        return node;
+    }
+
+    /**
+     * Realiza uma rotação à direita para restaurar o balanceamento da árvore.
+     *
+     * @param y O nó desbalanceado.
+     * @return Novo nó raiz da subárvore após a rotação.
+     */
+    private int rotacaoDireita(int y) {
+        rotacoes++;
+        int x = esquerdas[y];
+        esquerdas[y] = direitas[x];
+        direitas[x] = y;
+        updateAltura(y);
+        updateAltura(x);
+        return x;
+    }
+
+    /**
+     * Realiza uma rotação à esquerda para restaurar o balanceamento da árvore.
+     *
+     * @param x O nó desbalanceado.
+     * @return Novo nó raiz da subárvore após a rotação.
+     */
+    private int rotacaoEsquerda(int x) {
+        rotacoes++;
+        int y = direitas[x];
+        direitas[x] = esquerdas[y];
+        esquerdas[y] = x;
+        updateAltura(x);
+        updateAltura(y);
+        return y;
+    }
+}
@@ -0,0 +1,536 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Variante concorrente da {@link AVLTree}, segura para várias threads a inserir
+ * e a pesquisar ao mesmo tempo, no estilo das árvores AVL de balanceamento
+ * relaxado de Bronson et al. ("A Practical Concurrent Binary Search Tree").
+ *
+ * As pesquisas não usam locks: descem de forma otimista e validam, em cada
+ * passo, a versão do nó de onde vieram. Uma rotação marca o nó que desce como
+ * "em mudança" e incrementa a sua versão no fim, pelo que uma descida que o
+ * atravessou durante a rotação é repetida a partir do nível anterior.
+ *
+ * As inserções descem da mesma forma e só bloqueiam o pai da nova folha. O
+ * balanceamento é feito depois, subindo pelos pais e bloqueando apenas o nó,
+ * o seu pai e os filhos envolvidos em cada rotação; durante a inserção
+ * concorrente a árvore pode estar temporariamente desequilibrada, mas volta a
+ * ser uma árvore AVL quando todas as inserções terminam. Como a árvore não tem
+ * remoções, não precisa dos nós de encaminhamento do algoritmo original.
+ *
+ * @author Guilherme Rosmaninho
+ * @version 1.0
+ */
+public class AVLTreeConcurrent {
+
+    /** Bit da versão que indica que o nó está a descer numa rotação. */
+    private static final long MUDANDO = 1L;
+
+    /** Resultado de uma tentativa que tem de ser repetida a partir do nível anterior. */
+    private static final int REPETIR = -1;
+
+    /** Resultado de uma tentativa que encontrou a chave (ou a inseriu). */
+    private static final int ENCONTRADA = 1;
+
+    /** Resultado de uma tentativa que não encontrou a chave. */
+    private static final int AUSENTE = 0;
+
+    /** Condição de um nó que precisa de uma rotação. */
+    private static final int PRECISA_ROTACAO = -1;
+
+    /** Condição de um nó com a altura correta e equilibrado. */
+    private static final int CORRETO = 0;
+
+    /** Número de voltas em espera ativa antes de bloquear num nó em mudança. */
+    private static final int ESPERA_ATIVA = 100;
+
+    /**
+     * Classe interna que representa um nó da árvore. O lock de cada nó é o
+     * seu próprio monitor.
+     */
+    private static class Node {
+        final int chave;
+        volatile int altura;
+        volatile long versao;
+        volatile Node esquerda, direita, pai;
+
+        /**
+         * Construtor do nó.
+         *
+         * @param chave A chave inteira a ser armazenada no nó.
+         * @param pai O pai do nó.
+         */
+        Node(int chave, Node pai) {
+            this.chave = chave;
+            this.altura = 1;
+            this.pai = pai;
+        }
+
+        Node filho(int direcao) {
+            return direcao < 0 ? esquerda : direita;
+        }
+    }
+
+    /** Nó sentinela cujo filho direito é a raiz; nunca roda nem muda de versão. */
+    private final Node suporte = new Node(Integer.MIN_VALUE, null);
+
+    /**
+     * Número total de rotações realizadas durante as inserções, somado sem
+     * contenção entre as threads.
+     */
+    public final LongAdder rotacoes = new LongAdder();
+
+    /**
+     * Verifica se uma chave existe na árvore, sem bloquear.
+     *
+     * @param chave chave a procurar
+     * @return true se a chave existir, false caso contrário
+     */
+    public boolean contains(int chave) {
+        while (true) {
+            Node raiz = suporte.direita;
+            if (raiz == null) return false;
+            int direcao = Integer.compare(chave, raiz.chave);
+            if (direcao == 0) return true;
+
+            long versao = raiz.versao;
+            if ((versao & MUDANDO) != 0) {
+                esperarMudanca(raiz);
+            } else if (raiz == suporte.direita) {
+                int resultado = tentarProcurar(chave, raiz, direcao, versao);
+                if (resultado != REPETIR) return resultado == ENCONTRADA;
+            }
+        }
+    }
+
+    /**
+     * Desce a partir de um nó já validado, confirmando em cada passo que o nó
+     * não mudou desde que a sua versão foi lida.
+     *
+     * @param chave chave procurada
+     * @param node nó atual
+     * @param direcao lado do nó para onde a chave segue
+     * @param versao versão do nó lida antes de o atravessar
+     * @return {@link #ENCONTRADA}, {@link #AUSENTE} ou {@link #REPETIR}
+     */
+    private int tentarProcurar(int chave, Node node, int direcao, long versao) {
+        while (true) {
+            Node filho = node.filho(direcao);
+            if (node.versao != versao) return REPETIR;
+            if (filho == null) return AUSENTE;
+
+            int direcaoFilho = Integer.compare(chave, filho.chave);
+            if (direcaoFilho == 0) return ENCONTRADA;
+
+            long versaoFilho = filho.versao;
+            if ((versaoFilho & MUDANDO) != 0) {
+                esperarMudanca(filho);
+                if (node.versao != versao) return REPETIR;
+            } else if (filho != node.filho(direcao)) {
+                if (node.versao != versao) return REPETIR;
+            } else {
+                if (node.versao != versao) return REPETIR;
+                int resultado = tentarProcurar(chave, filho, direcaoFilho, versaoFilho);
+                if (resultado != REPETIR) return resultado;
+            }
+        }
+    }
+
+    /**
+     * Insere uma nova chave; pode ser chamado por várias threads ao mesmo tempo.
+     *
+     * @param chave A chave a ser inserida.
+     */
+    public void insert(int chave) {
+        while (true) {
+            Node raiz = suporte.direita;
+            if (raiz == null) {
+                synchronized (suporte) {
+                    if (suporte.direita == null) {
+                        suporte.direita = new Node(chave, suporte);
+                        return;
+                    }
+                }
+                continue;
+            }
+
+            long versao = raiz.versao;
+            if ((versao & MUDANDO) != 0) {
+                esperarMudanca(raiz);
+            } else if (raiz == suporte.direita) {
+                if (tentarInserir(chave, raiz, versao) != REPETIR) return;
+            }
+        }
+    }
+
+    /**
+     * Desce como {@link #tentarProcurar(int, Node, int, long)} e, ao chegar a um
+     * filho nulo, bloqueia o pai, confirma que nada mudou e liga a nova folha.
+     *
+     * @param chave chave a inserir
+     * @param node nó atual
+     * @param versao versão do nó lida antes de o atravessar
+     * @return {@link #ENCONTRADA} se a chave ficou na árvore, ou {@link #REPETIR}
+     */
+    private int tentarInserir(int chave, Node node, long versao) {
+        int direcao = Integer.compare(chave, node.chave);
+        if (direcao == 0) return ENCONTRADA; // Chave duplicada, não faz nada
+
+        while (true) {
+            Node filho = node.filho(direcao);
+            if (node.versao != versao) return REPETIR;
+
+            if (filho == null) {
+                boolean inserida = false;
+                synchronized (node) {
+                    if (node.versao != versao) return REPETIR;
+                    if (node.filho(direcao) == null) {
+                        Node novo = new Node(chave, node);
+                        if (direcao < 0) node.esquerda = novo;
+                        else node.direita = novo;
+                        inserida = true;
+                    }
+                }
+                if (inserida) {
+                    corrigirAlturaEBalancear(node);
+                    return ENCONTRADA;
+                }
+                // Outra thread ligou um filho entretanto: continua a descida
+            } else {
+                long versaoFilho = filho.versao;
+                if ((versaoFilho & MUDANDO) != 0) {
+                    esperarMudanca(filho);
+                } else if (filho == node.filho(direcao)) {
+                    if (node.versao != versao) return REPETIR;
+                    int resultado = tentarInserir(chave, filho, versaoFilho);
+                    if (resultado != REPETIR) return resultado;
+                }
+            }
+        }
+    }
+
+    /**
+     * Espera que termine a rotação em curso num nó: primeiro em espera ativa e
+     * depois bloqueando no seu lock, que a rotação mantém até ao fim.
+     *
+     * @param node nó em mudança
+     */
+    private static void esperarMudanca(Node node) {
+        long versao = node.versao;
+        if ((versao & MUDANDO) == 0) return;
+
+        for (int i = 0; i < ESPERA_ATIVA; i++) {
+            if (node.versao != versao) return;
+            Thread.onSpinWait();
+        }
+        synchronized (node) {
+            // A rotação mantém o lock do nó até terminar
+        }
+    }
+
+    /**
+     * Sobe a partir de um nó cuja subárvore mudou, corrigindo alturas e
+     * rodando onde for preciso, até deixar de haver alterações.
+     *
+     * @param node nó danificado
+     */
+    private void corrigirAlturaEBalancear(Node node) {
+        while (node != null && node.pai != null) {
+            int condicao = condicao(node);
+            if (condicao == CORRETO) return;
+
+            if (condicao != PRECISA_ROTACAO) {
+                // Só falta atualizar a altura
+                synchronized (node) {
+                    node = corrigirAltura(node);
+                }
+            } else {
+                Node pai = node.pai;
+                synchronized (pai) {
+                    if (node.pai == pai) {
+                        synchronized (node) {
+                            node = balancear(pai, node);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Avalia, sem locks, o que um nó precisa.
+     *
+     * @param node nó a avaliar
+     * @return {@link #PRECISA_ROTACAO}, {@link #CORRETO}, ou a nova altura que deve receber
+     */
+    private static int condicao(Node node) {
+        int alturaEsquerda = altura(node.esquerda), alturaDireita = altura(node.direita);
+        int fator = alturaEsquerda - alturaDireita;
+        if (fator < -1 || fator > 1) return PRECISA_ROTACAO;
+        int alturaNova = 1 + Math.max(alturaEsquerda, alturaDireita);
+        return node.altura != alturaNova ? alturaNova : CORRETO;
+    }
+
+    /**
+     * Atualiza a altura de um nó bloqueado, se não precisar de uma rotação.
+     *
+     * @param node nó bloqueado
+     * @return o próximo nó a tratar: o próprio se precisar de rotação, o pai
+     *         se a altura mudou, ou {@code null} se nada mudou
+     */
+    private static Node corrigirAltura(Node node) {
+        int condicao = condicao(node);
+        if (condicao == PRECISA_ROTACAO) return node;
+        if (condicao == CORRETO) return null;
+        node.altura = condicao;
+        return node.pai;
+    }
+
+    /**
+     * Balanceia um nó, com ele e o pai bloqueados.
+     *
+     * @param pai pai bloqueado
+     * @param node nó bloqueado
+     * @return o próximo nó a tratar, ou {@code null} se não houver mais trabalho
+     */
+    private Node balancear(Node pai, Node node) {
+        Node esquerda = node.esquerda, direita = node.direita;
+        int alturaEsquerda = altura(esquerda), alturaDireita = altura(direita);
+        int fator = alturaEsquerda - alturaDireita;
+
+        if (fator > 1) return balancearParaDireita(pai, node, esquerda, alturaDireita);
+        if (fator < -1) return balancearParaEsquerda(pai, node, direita, alturaEsquerda);
+
+        int alturaNova = 1 + Math.max(alturaEsquerda, alturaDireita);
+        if (alturaNova != node.altura) {
+            node.altura = alturaNova;
+            return corrigirAltura(pai);
+        }
+        return null;
+    }
+
+    /**
+     * Trata um nó pesado à esquerda com uma rotação simples ou dupla à direita.
+     */
+    private Node balancearParaDireita(Node pai, Node node, Node esquerda, int alturaDireita) {
+        synchronized (esquerda) {
+            int alturaEsquerda = esquerda.altura;
+            if (alturaEsquerda - alturaDireita <= 1) return node; // Mudou entretanto, volta a avaliar
+
+            Node esquerdaDireita = esquerda.direita;
+            int alturaEE = altura(esquerda.esquerda), alturaED = altura(esquerdaDireita);
+            if (alturaEE >= alturaED) {
+                return rotacaoDireita(pai, node, esquerda, alturaDireita, alturaEE, esquerdaDireita, alturaED);
+            }
+
+            synchronized (esquerdaDireita) {
+                alturaED = esquerdaDireita.altura;
+                if (alturaEE >= alturaED) {
+                    return rotacaoDireita(pai, node, esquerda, alturaDireita, alturaEE, esquerdaDireita, alturaED);
+                }
+                int alturaEDE = altura(esquerdaDireita.esquerda);
+                int fator = alturaEE - alturaEDE;
+                if (fator >= -1 && fator <= 1) {
+                    return rotacaoDuplaDireita(pai, node, esquerda, alturaDireita, alturaEE, esquerdaDireita, alturaEDE);
+                }
+            }
+            // O filho esquerdo também está desequilibrado: trata-se primeiro dele
+            return balancearParaEsquerda(node, esquerda, esquerdaDireita, alturaEE);
+        }
+    }
+
+    /**
+     * Trata um nó pesado à direita com uma rotação simples ou dupla à esquerda.
+     */
+    private Node balancearParaEsquerda(Node pai, Node node, Node direita, int alturaEsquerda) {
+        synchronized (direita) {
+            int alturaDireita = direita.altura;
+            if (alturaEsquerda - alturaDireita >= -1) return node; // Mudou entretanto, volta a avaliar
+
+            Node direitaEsquerda = direita.esquerda;
+            int alturaDD = altura(direita.direita), alturaDE = altura(direitaEsquerda);
+            if (alturaDD >= alturaDE) {
+                return rotacaoEsquerda(pai, node, direita, alturaEsquerda, alturaDD, direitaEsquerda, alturaDE);
+            }
+
+            synchronized (direitaEsquerda) {
+                alturaDE = direitaEsquerda.altura;
+                if (alturaDD >= alturaDE) {
+                    return rotacaoEsquerda(pai, node, direita, alturaEsquerda, alturaDD, direitaEsquerda, alturaDE);
+                }
+                int alturaDED = altura(direitaEsquerda.direita);
+                int fator = alturaDD - alturaDED;
+                if (fator >= -1 && fator <= 1) {
+                    return rotacaoDuplaEsquerda(pai, node, direita, alturaEsquerda, alturaDD, direitaEsquerda, alturaDED);
+                }
+            }
+            // O filho direito também está desequilibrado: trata-se primeiro dele
+            return balancearParaDireita(node, direita, direitaEsquerda, alturaDD);
+        }
+    }
+
+    /**
+     * Rotação simples à direita, com o pai, o nó e o filho esquerdo bloqueados.
+     * O nó que desce fica marcado como em mudança durante a rotação.
+     *
+     * @return o próximo nó a tratar, ou {@code null}
+     */
+    private Node rotacaoDireita(Node pai, Node node, Node esquerda, int alturaDireita,
+                                int alturaEE, Node esquerdaDireita, int alturaED) {
+        rotacoes.increment();
+        long versao = node.versao;
+        node.versao = versao | MUDANDO;
+
+        node.esquerda = esquerdaDireita;
+        if (esquerdaDireita != null) esquerdaDireita.pai = node;
+        esquerda.direita = node;
+        node.pai = esquerda;
+        substituirFilho(pai, node, esquerda);
+
+        int alturaNode = 1 + Math.max(alturaED, alturaDireita);
+        node.altura = alturaNode;
+        esquerda.altura = 1 + Math.max(alturaEE, alturaNode);
+
+        node.versao = (versao | MUDANDO) + 1;
+        return seguinte(pai, node, alturaED - alturaDireita, esquerda, alturaEE - alturaNode);
+    }
+
+    /**
+     * Rotação simples à esquerda, simétrica de {@link #rotacaoDireita}.
+     *
+     * @return o próximo nó a tratar, ou {@code null}
+     */
+    private Node rotacaoEsquerda(Node pai, Node node, Node direita, int alturaEsquerda,
+                                 int alturaDD, Node direitaEsquerda, int alturaDE) {
+        rotacoes.increment();
+        long versao = node.versao;
+        node.versao = versao | MUDANDO;
+
+        node.direita = direitaEsquerda;
+        if (direitaEsquerda != null) direitaEsquerda.pai = node;
+        direita.esquerda = node;
+        node.pai = direita;
+        substituirFilho(pai, node, direita);
+
+        int alturaNode = 1 + Math.max(alturaDE, alturaEsquerda);
+        node.altura = alturaNode;
+        direita.altura = 1 + Math.max(alturaDD, alturaNode);
+
+        node.versao = (versao | MUDANDO) + 1;
+        return seguinte(pai, node, alturaEsquerda - alturaDE, direita, alturaNode - alturaDD);
+    }
+
+    /**
+     * Rotação dupla (esquerda sobre o filho esquerdo e depois direita), feita
+     * de uma só vez com os quatro nós bloqueados. Os dois nós que descem ficam
+     * marcados como em mudança.
+     *
+     * @return o próximo nó a tratar, ou {@code null}
+     */
+    private Node rotacaoDuplaDireita(Node pai, Node node, Node esquerda, int alturaDireita,
+                                     int alturaEE, Node esquerdaDireita, int alturaEDE) {
+        rotacoes.add(2);
+        long versao = node.versao, versaoEsquerda = esquerda.versao;
+        Node edEsquerda = esquerdaDireita.esquerda, edDireita = esquerdaDireita.direita;
+        int alturaEDD = altura(edDireita);
+
+        node.versao = versao | MUDANDO;
+        esquerda.versao = versaoEsquerda | MUDANDO;
+
+        node.esquerda = edDireita;
+        if (edDireita != null) edDireita.pai = node;
+        esquerda.direita = edEsquerda;
+        if (edEsquerda != null) edEsquerda.pai = esquerda;
+        esquerdaDireita.esquerda = esquerda;
+        esquerda.pai = esquerdaDireita;
+        esquerdaDireita.direita = node;
+        node.pai = esquerdaDireita;
+        substituirFilho(pai, node, esquerdaDireita);
+
+        int alturaNode = 1 + Math.max(alturaEDD, alturaDireita);
+        node.altura = alturaNode;
+        int alturaEsquerda = 1 + Math.max(alturaEE, alturaEDE);
+        esquerda.altura = alturaEsquerda;
+        esquerdaDireita.altura = 1 + Math.max(alturaEsquerda, alturaNode);
+
+        node.versao = (versao | MUDANDO) + 1;
+        esquerda.versao = (versaoEsquerda | MUDANDO) + 1;
+        return seguinte(pai, node, alturaEDD - alturaDireita, esquerdaDireita, alturaEsquerda - alturaNode);
+    }
+
+    /**
+     * Rotação dupla (direita sobre o filho direito e depois esquerda),
+     * simétrica de {@link #rotacaoDuplaDireita}.
+     *
+     * @return o próximo nó a tratar, ou {@code null}
+     */
+    private Node rotacaoDuplaEsquerda(Node pai, Node node, Node direita, int alturaEsquerda,
+                                      int alturaDD, Node direitaEsquerda, int alturaDED) {
+        rotacoes.add(2);
+        long versao = node.versao, versaoDireita = direita.versao;
+        Node deEsquerda = direitaEsquerda.esquerda, deDireita = direitaEsquerda.direita;
+        int alturaDEE = altura(deEsquerda);
+
+        node.versao = versao | MUDANDO;
+        direita.versao = versaoDireita | MUDANDO;
+
+        node.direita = deEsquerda;
+        if (deEsquerda != null) deEsquerda.pai = node;
+        direita.esquerda = deDireita;
+        if (deDireita != null) deDireita.pai = direita;
+        direitaEsquerda.direita = direita;
+        direita.pai = direitaEsquerda;
+        direitaEsquerda.esquerda = node;
+        node.pai = direitaEsquerda;
+        substituirFilho(pai, node, direitaEsquerda);
+
+        int alturaNode = 1 + Math.max(alturaDEE, alturaEsquerda);
+        node.altura = alturaNode;
+        int alturaDireita = 1 + Math.max(alturaDD, alturaDED);
+        direita.altura = alturaDireita;
+        direitaEsquerda.altura = 1 + Math.max(alturaDireita, alturaNode);
+
+        node.versao = (versao | MUDANDO) + 1;
+        direita.versao = (versaoDireita | MUDANDO) + 1;
+        return seguinte(pai, node, alturaEsquerda - alturaDEE, direitaEsquerda, alturaNode - alturaDireita);
+    }
+
+    /**
+     * Liga a nova raiz de uma subárvore rodada ao pai, no lugar do nó antigo.
+     */
+    private static void substituirFilho(Node pai, Node antigo, Node novo) {
+        if (pai.esquerda == antigo) pai.esquerda = novo;
+        else pai.direita = novo;
+        novo.pai = pai;
+    }
+
+    /**
+     * Escolhe o próximo nó a tratar depois de uma rotação: um dos nós rodados,
+     * se tiver ficado desequilibrado por causa de alterações concorrentes, ou
+     * caso contrário o pai, cuja altura pode ter mudado.
+     */
+    private static Node seguinte(Node pai, Node baixo, int fatorBaixo, Node cima, int fatorCima) {
+        if (fatorBaixo < -1 || fatorBaixo > 1) return baixo;
+        if (fatorCima < -1 || fatorCima > 1) return cima;
+        return corrigirAltura(pai);
+    }
+
+    /**
+     * Retorna a altura de um nó.
+     *
+     * @param node O nó a ser avaliado.
+     * @return A altura do nó, ou 0 se for {@code null}.
+     */
+    private static int altura(Node node) {
+        return node == null ? 0 : node.altura;
+    }
+
+    /**
+     * Devolve a altura da árvore (número de nós no caminho mais longo).
+     * Só é exata quando não há inserções em curso.
+     *
+     * @return altura da árvore, ou 0 se estiver vazia
+     */
+    public int altura() {
+        return altura(suporte.direita);
+    }
+}
@@ -0,0 +1,307 @@
+import java.util.function.IntConsumer;
+
+/**
+ * Classe que representa uma Árvore B+ de chaves inteiras. Ao contrário das
+ * árvores binárias, cada nó guarda muitas chaves num {@code int[]} contíguo,
+ * pelo que a descida numa árvore de milhões de chaves visita poucos nós e a
+ * pesquisa dentro de cada nó aproveita as linhas de cache já carregadas.
+ *
+ * Todas as chaves ficam nas folhas, que estão ligadas por ordem crescente; os
+ * nós internos guardam apenas separadores. A árvore não faz rotações: quando
+ * um nó excede a ordem é dividido em dois e o separador sobe para o pai, e
+ * essas divisões são contadas em {@link #divisoes}.
+ *
+ * @author Guilherme Rosmaninho
+ * @version 1.0
+ */
+public class BTree {
+
+    /**
+     * Ordem por omissão (número máximo de chaves por nó): 64 inteiros ocupam
+     * 256 bytes, quatro linhas de cache, e a árvore de 5M chaves tem 4 níveis.
+     */
+    public static final int ORDEM = 64;
+
+    /**
+     * Classe interna que representa um nó. Os arrays têm uma posição a mais do
+     * que a ordem, para que o nó possa exceder a ordem antes de ser dividido.
+     */
+    private static class Node {
+        final int[] chaves;
+        int n;
+
+        Node(int capacidade) {
+            chaves = new int[capacidade];
+        }
+    }
+
+    /**
+     * Folha: guarda as chaves e a ligação para a folha seguinte.
+     */
+    private static final class Folha extends Node {
+        Folha seguinte;
+
+        Folha(int ordem) {
+            super(ordem + 1);
+        }
+    }
+
+    /**
+     * Nó interno: {@code n} separadores e {@code n + 1} filhos. O separador
+     * {@code i} é a menor chave da subárvore do filho {@code i + 1}.
+     */
+    private static final class Interno extends Node {
+        final Node[] filhos;
+
+        Interno(int ordem) {
+            super(ordem + 1);
+            filhos = new Node[ordem + 2];
+        }
+    }
+
+    private final int ordem;
+
+    private Node root;
+
+    /** Número de níveis da árvore (0 se estiver vazia). */
+    private int niveis = 0;
+
+    /** Caminho da última descida de uma inserção, reutilizado entre inserções. */
+    private Interno[] caminho = new Interno[4];
+    private int[] indices = new int[4];
+
+    /**
+     * Número total de divisões de nós realizadas durante as inserções.
+     */
+    public int divisoes = 0;
+
+    /**
+     * Número total de comparações de chaves feitas nas descidas das inserções
+     * (e também nas pesquisas, que partilham a pesquisa binária dos nós).
+     */
+    public long comparacoes = 0;
+
+    /**
+     * Cria uma árvore com a ordem por omissão ({@link #ORDEM}).
+     */
+    public BTree() {
+        this(ORDEM);
+    }
+
+    /**
+     * Cria uma árvore com a ordem indicada.
+     *
+     * @param ordem número máximo de chaves por nó (pelo menos 3)
+     */
+    public BTree(int ordem) {
+        if (ordem < 3) throw new IllegalArgumentException("A ordem tem de ser pelo menos 3: " + ordem);
+        this.ordem = ordem;
+    }
+
+    /**
+     * Insere uma chave na árvore, sem recursão. As chaves repetidas são ignoradas.
+     *
+     * @param chave A chave a ser inserida.
+     */
+    public void insert(int chave) {
+        if (root == null) {
+            Folha folha = new Folha(ordem);
+            folha.chaves[0] = chave;
+            folha.n = 1;
+            root = folha;
+            niveis = 1;
+            return;
+        }
+
+        if (caminho.length < niveis) {
+            caminho = new Interno[niveis * 2];
+            indices = new int[niveis * 2];
+        }
+
+        Node node = root;
+        int profundidade = 0;
+        while (node instanceof Interno) {
+            Interno interno = (Interno) node;
+            int i = primeiroMaior(interno, chave);
+            caminho[profundidade] = interno;
+            indices[profundidade++] = i;
+            node = interno.filhos[i];
+        }
+
+        Folha folha = (Folha) node;
+        int posicao = primeiroMaiorOuIgual(folha, chave);
+        if (posicao < folha.n && folha.chaves[posicao] == chave) return;
+
+        inserirNaPosicao(folha.chaves, folha.n, posicao, chave);
+        folha.n++;
+        if (folha.n <= ordem) return;
+
+        // A folha excedeu a ordem: divide-a e propaga o separador para cima
+        Folha nova = dividirFolha(folha);
+        int separador = nova.chaves[0];
+        Node direita = nova;
+
+        while (profundidade > 0) {
+            Interno pai = caminho[--profundidade];
+            int i = indices[profundidade];
+            inserirNaPosicao(pai.chaves, pai.n, i, separador);
+            System.arraycopy(pai.filhos, i + 1, pai.filhos, i + 2, pai.n - i);
+            pai.filhos[i + 1] = direita;
+            pai.n++;
+            if (pai.n <= ordem) return;
+
+            separador = pai.chaves[pai.n / 2];
+            direita = dividirInterno(pai);
+        }
+
+        Interno novaRaiz = new Interno(ordem);
+        novaRaiz.chaves[0] = separador;
+        novaRaiz.filhos[0] = root;
+        novaRaiz.filhos[1] = direita;
+        novaRaiz.n = 1;
+        root = novaRaiz;
+        niveis++;
+    }
+
+    /**
+     * Verifica se uma chave existe na árvore.
+     *
+     * @param chave chave a procurar
+     * @return true se a chave existir, false caso contrário
+     */
+    public boolean contains(int chave) {
+        Node node = root;
+        if (node == null) return false;
+        while (node instanceof Interno) {
+            Interno interno = (Interno) node;
+            node = interno.filhos[primeiroMaior(interno, chave)];
+        }
+        int posicao = primeiroMaiorOuIgual(node, chave);
+        return posicao < node.n && node.chaves[posicao] == chave;
+    }
+
+    /**
+     * Percorre por ordem crescente as chaves do intervalo [de, ate]: desce até
+     * à folha de {@code de} e segue as ligações entre folhas.
+     *
+     * @param de limite inferior (inclusive)
+     * @param ate limite superior (inclusive)
+     * @param acao ação aplicada a cada chave do intervalo
+     * @return o número de chaves visitadas
+     */
+    public int range(int de, int ate, IntConsumer acao) {
+        Node node = root;
+        if (node == null) return 0;
+        while (node instanceof Interno) {
+            Interno interno = (Interno) node;
+            node = interno.filhos[primeiroMaior(interno, de)];
+        }
+
+        int visitadas = 0;
+        Folha folha = (Folha) node;
+        int i = primeiroMaiorOuIgual(folha, de);
+        while (folha != null) {
+            for (; i < folha.n; i++) {
+                if (folha.chaves[i] > ate) return visitadas;
+                acao.accept(folha.chaves[i]);
+                visitadas++;
+            }
+            folha = folha.seguinte;
+            i = 0;
+        }
+        return visitadas;
+    }
+
+    /**
+     * Devolve a altura da árvore (número de níveis de nós).
+     *
+     * @return altura da árvore, ou 0 se estiver vazia
+     */
+    public int altura() {
+        return niveis;
+    }
+
+    /**
+     * Devolve a profundidade média das chaves. Como todas as chaves estão em
+     * folhas ao mesmo nível, é igual à altura.
+     *
+     * @return profundidade média, ou 0 se a árvore estiver vazia
+     */
+    public double profundidadeMedia() {
+        return niveis;
+    }
+
+    /**
+     * Pesquisa binária no nó: devolve a primeira posição cuja chave é maior ou igual à indicada.
+     */
+    private int primeiroMaiorOuIgual(Node node, int chave) {
+        int inicio = 0, fim = node.n;
+        int[] chaves = node.chaves;
+        while (inicio < fim) {
+            int meio = (inicio + fim) >>> 1;
+            comparacoes++;
+            if (chaves[meio] < chave) inicio = meio + 1;
+            else fim = meio;
+        }
+        return inicio;
+    }
+
+    /**
+     * Pesquisa binária no nó: devolve a primeira posição cuja chave é maior do
+     * que a indicada, que é também o índice do filho onde a chave se encontra.
+     */
+    private int primeiroMaior(Node node, int chave) {
+        int inicio = 0, fim = node.n;
+        int[] chaves = node.chaves;
+        while (inicio < fim) {
+            int meio = (inicio + fim) >>> 1;
+            comparacoes++;
+            if (chaves[meio] <= chave) inicio = meio + 1;
+            else fim = meio;
+        }
+        return inicio;
+    }
+
+    /**
+     * Desloca as chaves a partir de uma posição e coloca a nova chave nessa posição.
+     */
+    private static void inserirNaPosicao(int[] chaves, int n, int posicao, int chave) {
+        System.arraycopy(chaves, posicao, chaves, posicao + 1, n - posicao);
+        chaves[posicao] = chave;
+    }
+
+    /**
+     * Divide uma folha cheia ao meio e liga a nova folha, que fica com a metade superior.
+     *
+     * @return a nova folha
+     */
+    private Folha dividirFolha(Folha folha) {
+        Folha nova = new Folha(ordem);
+        int metade = folha.n / 2;
+        nova.n = folha.n - metade;
+        System.arraycopy(folha.chaves, metade, nova.chaves, 0, nova.n);
+        folha.n = metade;
+        nova.seguinte = folha.seguinte;
+        folha.seguinte = nova;
+        divisoes++;
+        return nova;
+    }
+
+    /**
+     * Divide um nó interno cheio: o separador do meio sobe para o pai (o
+     * chamador já o leu) e o novo nó fica com os separadores e filhos seguintes.
+     *
+     * @return o novo nó interno
+     */
+    private Interno dividirInterno(Interno interno) {
+        Interno novo = new Interno(ordem);
+        int meio = interno.n / 2;
+        novo.n = interno.n - meio - 1;
+        System.arraycopy(interno.chaves, meio + 1, novo.chaves, 0, novo.n);
+        System.arraycopy(interno.filhos, meio + 1, novo.filhos, 0, novo.n + 1);
+        for (int i = meio + 1; i <= interno.n; i++) interno.filhos[i] = null;
+        interno.n = meio;
+        divisoes++;
+        return novo;
+    }
+}
@@ -0,0 +1,708 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+import java.util.function.Supplier;
+
+/**
+ * Harness de medição de desempenho para as árvores de pesquisa.
+ *
+ * Segue o modelo de execução do JMH: cada célula (árvore, conjunto, tamanho)
+ * é executada primeiro em iterações de aquecimento, cujos tempos são
+ * descartados, e depois em várias iterações medidas. Entre iterações é
+ * pedida uma recolha de lixo para que o GC de uma construção não seja
+ * contabilizado na seguinte. Para cada célula são calculados a média, o erro
+ * (meio-intervalo de confiança a 99,9%, como no JMH) e os percentis dos tempos.
+ *
+ * O número de iterações pode ser configurado através das propriedades de
+ * sistema {@code bench.aquecimento} e {@code bench.iteracoes}, e o número
+ * máximo de pesquisas por célula com {@code bench.pesquisas}; a latência de
+ * cada inserção só é medida com {@code bench.latencias} (sem ela, as colunas
+ * InsP50 a InsMax ficam vazias).
+ *
+ * @author Guilherme Rosmaninho
+ * @version 1.0
+ */
+public class Benchmark {
+
+    /** Número de iterações de aquecimento por célula. */
+    public static final int AQUECIMENTO = Integer.getInteger("bench.aquecimento", 2);
+
+    /** Número de iterações medidas por célula. */
+    public static final int ITERACOES = Integer.getInteger("bench.iteracoes", 5);
+
+    /** Número máximo de chaves do conjunto pesquisadas em cada célula. */
+    public static final int PESQUISAS = Integer.getInteger("bench.pesquisas", 100_000);
+
+    /**
+     * Número de nós que a passagem de pesquisa pode visitar, em média, numa
+     * célula. Numa árvore degenerada (BST com chaves ordenadas) cada pesquisa
+     * percorre metade das chaves, pelo que a amostra encolhe até caber aqui.
+     */
+    private static final long ORCAMENTO_PESQUISA = 100_000_000L;
+
+    /** Indica se é feita a construção instrumentada que mede a latência de cada inserção. */
+    public static final boolean LATENCIAS = Boolean.getBoolean("bench.latencias");
+
+    /** Quantis 0,9995 da distribuição t de Student para 1 a 30 graus de liberdade. */
+    private static final double[] T_999 = {
+            636.619, 31.599, 12.924, 8.610, 6.869, 5.959, 5.408, 5.041, 4.781, 4.587,
+            4.437, 4.318, 4.221, 4.140, 4.073, 4.015, 3.965, 3.922, 3.883, 3.850,
+            3.819, 3.792, 3.768, 3.745, 3.725, 3.707, 3.690, 3.674, 3.659, 3.646
+    };
+
+    /**
+     * Resultado agregado da medição de uma célula.
+     */
+    public static class Resultado {
+        /** Tempo médio de construção, em segundos. */
+        public double media;
+        /** Meio-intervalo de confiança a 99,9% da média, em segundos. */
+        public double erro;
+        /** Percentis e máximo dos tempos medidos, em segundos. */
+        public double p50, p90, p99, max;
+        /** Rotações realizadas numa construção. */
+        public int rotacoes;
+        /** Latências de uma inserção individual, em nanossegundos (-1 se não medidas). */
+        public long insP50 = -1, insP99 = -1, insP999 = -1, insMax = -1;
+        /** Comparações de chaves por inserção. */
+        public double comparacoesPorInsercao;
+        /** Profundidade média dos nós e altura da árvore final. */
+        public double caminhoMedio;
+        public int altura;
+        /** Tempo médio de uma pesquisa de uma chave do conjunto, numa amostra, em nanossegundos (0 se não medido). */
+        public double pesquisaNs;
+        /** Bytes retidos no heap pela árvore, por chave distinta. */
+        public double bytesRetidosPorChave;
+        /** Bytes alocados pela thread durante a construção, por chave inserida. */
+        public double bytesAlocadosPorInsercao;
+        /** Recolhas de lixo e tempo gasto nelas (ms) durante a construção. */
+        public long gcContagem, gcTempo;
+
+        /**
+         * Calcula a média, o erro e os percentis a partir dos tempos medidos.
+         *
+         * @param tempos tempos de cada iteração medida, em segundos (é ordenado)
+         */
+        public void estatisticas(double[] tempos) {
+            Arrays.sort(tempos);
+            double soma = 0.0;
+            for (double t : tempos) soma += t;
+            media = soma / tempos.length;
+
+            if (tempos.length > 1) {
+                double quadrados = 0.0;
+                for (double t : tempos) quadrados += (t - media) * (t - media);
+                double desvio = Math.sqrt(quadrados / (tempos.length - 1));
+                erro = quantilT(tempos.length - 1) * desvio / Math.sqrt(tempos.length);
+            }
+
+            p50 = percentil(tempos, 0.50);
+            p90 = percentil(tempos, 0.90);
+            p99 = percentil(tempos, 0.99);
+            max = tempos[tempos.length - 1];
+        }
+    }
+
+    /**
+     * Cria uma árvore do tipo indicado inserindo todas as chaves do conjunto.
+     *
+     * @param treeType tipo de árvore (BST, AVL, VP, TREAP, BTREE, ART, SPLAY, SCAPEGOAT ou as variantes -ITER, -FINGER, -BULK, -ARR, -RANK, -PERS e -CONC)
+     * @param dataset chaves a inserir, pela ordem dada
+     * @return a árvore construída
+     */
+    public static Object criar(String treeType, int[] dataset) {
+        switch (treeType) {
+            case "BST":
+                BinaryTree bst = new BinaryTree();
+                for (int key : dataset) bst.inserir(key);
+                return bst;
+
+            case "AVL":
+                AVLTree avl = new AVLTree();
+                for (int key : dataset) avl.insert(key);
+                return avl;
+
+            case "VP":
+                VPTree rb = new VPTree();
+                for (int key : dataset) rb.insert(key);
+                return rb;
+
+            case "TREAP":
+                TreapTree treap = new TreapTree();
+                for (int key : dataset) treap.insert(key);
+                return treap;
+
+            case "BTREE":
+                BTree btree = new BTree();
+                for (int key : dataset) btree.insert(key);
+                return btree;
+
+            case "ART":
+                ARTree art = new ARTree();
+                for (int key : dataset) art.insert(key);
+                return art;
+
+            case "SPLAY":
+                SplayTree splay = new SplayTree();
+                for (int key : dataset) splay.insert(key);
+                return splay;
+
+            case "SCAPEGOAT":
+                ScapegoatTree scapegoat = new ScapegoatTree();
+                for (int key : dataset) scapegoat.insert(key);
+                return scapegoat;
+
+            case "AVL-ITER":
+                AVLTree avlIter = new AVLTree();
+                for (int key : dataset) avlIter.insertIter(key);
+                return avlIter;
+
+            case "VP-ITER":
+                VPTree rbIter = new VPTree();
+                for (int key : dataset) rbIter.insertIter(key);
+                return rbIter;
+
+            case "TREAP-ITER":
+                TreapTree treapIter = new TreapTree();
+                for (int key : dataset) treapIter.insertIter(key);
+                return treapIter;
+
+            case "BST-FINGER":
+                BinaryTree bstFinger = new BinaryTree();
+                for (int key : dataset) bstFinger.inserirFinger(key);
+                return bstFinger;
+
+            case "AVL-FINGER":
+                AVLTree avlFinger = new AVLTree();
+                for (int key : dataset) avlFinger.insertFinger(key);
+                return avlFinger;
+
+            case "VP-FINGER":
+                VPTree rbFinger = new VPTree();
+                for (int key : dataset) rbFinger.insertFinger(key);
+                return rbFinger;
+
+            case "AVL-BULK":
+                return AVLTree.carregar(dataset);
+
+            case "VP-BULK":
+                return VPTree.carregar(dataset);
+
+            case "TREAP-BULK":
+                return TreapTree.carregar(dataset);
+
+            case "AVL-ARR":
+                AVLTreeArray avlArr = new AVLTreeArray();
+                for (int key : dataset) avlArr.insert(key);
+                return avlArr;
+
+            case "VP-ARR":
+                VPTreeArray rbArr = new VPTreeArray();
+                for (int key : dataset) rbArr.insert(key);
+                return rbArr;
+
+            case "TREAP-ARR":
+                TreapTreeArray treapArr = new TreapTreeArray();
+                for (int key : dataset) treapArr.insert(key);
+                return treapArr;
+
+            case "AVL-PERS":
+                AVLTree avlPers = new AVLTree().persistente();
+                for (int key : dataset) avlPers.insert(key);
+                return avlPers;
+
+            case "AVL-CONC":
+                AVLTreeConcurrent avlConc = new AVLTreeConcurrent();
+                for (int key : dataset) avlConc.insert(key);
+                return avlConc;
+
+            case "AVL-RANK":
+                AVLTree avlRank = new AVLTree().comTamanhos();
+                for (int key : dataset) avlRank.insert(key);
+                return avlRank;
+
+            case "VP-RANK":
+                VPTree rbRank = new VPTree().comTamanhos();
+                for (int key : dataset) rbRank.insert(key);
+                return rbRank;
+
+            case "TREAP-RANK":
+                TreapTree treapRank = new TreapTree().comTamanhos();
+                for (int key : dataset) treapRank.insert(key);
+                return treapRank;
+
+            default:
+                throw new IllegalArgumentException("Tipo de árvore desconhecido: " + treeType);
+        }
+    }
+
+    /**
+     * Devolve o número de rotações acumulado numa árvore.
+     *
+     * @param arvore árvore criada por {@link #criar(String, int[])}
+     * @return número de rotações (divisões de nós na {@link BTree}, nós que
+     *         cresceram na {@link ARTree} e subárvores reconstruídas na
+     *         {@link ScapegoatTree}), ou 0 se a árvore não fizer rotações
+     */
+    public static int rotacoes(Object arvore) {
+        if (arvore instanceof AVLTree) return ((AVLTree) arvore).rotacoes;
+        if (arvore instanceof VPTree) return ((VPTree) arvore).rotacoes;
+        if (arvore instanceof TreapTree) return ((TreapTree) arvore).rotacoes;
+        if (arvore instanceof AVLTreeArray) return ((AVLTreeArray) arvore).rotacoes;
+        if (arvore instanceof VPTreeArray) return ((VPTreeArray) arvore).rotacoes;
+        if (arvore instanceof TreapTreeArray) return ((TreapTreeArray) arvore).rotacoes;
+        if (arvore instanceof AVLTreeConcurrent) return (int) ((AVLTreeConcurrent) arvore).rotacoes.sum();
+        if (arvore instanceof ShardedTree) return ((ShardedTree) arvore).rotacoes();
+        if (arvore instanceof BTree) return ((BTree) arvore).divisoes;
+        if (arvore instanceof ARTree) return ((ARTree) arvore).crescimentos;
+        if (arvore instanceof SplayTree) return ((SplayTree) arvore).rotacoes;
+        if (arvore instanceof ScapegoatTree) return ((ScapegoatTree) arvore).reconstrucoes;
+        return 0;
+    }
+
+    /**
+     * Constrói uma árvore do tipo indicado inserindo todas as chaves do conjunto.
+     *
+     * @param treeType tipo de árvore
+     * @param dataset chaves a inserir, pela ordem dada
+     * @return número de rotações realizadas durante a construção
+     */
+    public static int construir(String treeType, int[] dataset) {
+        return rotacoes(criar(treeType, dataset));
+    }
+
+    /**
+     * Mede a construção de uma árvore com aquecimento e várias iterações.
+     * A árvore da última iteração medida é reaproveitada para a memória
+     * retida, as comparações, a forma e a pesquisa, pelo que uma célula custa
+     * {@code AQUECIMENTO + ITERACOES} construções e uma pesquisa por amostragem.
+     * O histograma de latência por inserção obriga a mais uma construção
+     * instrumentada e só é medido com {@code -Dbench.latencias=true}.
+     *
+     * @param treeType tipo de árvore
+     * @param dataset chaves a inserir
+     * @return estatísticas dos tempos medidos
+     */
+    public static Resultado medir(String treeType, int[] dataset) {
+        UltimaConstrucao ultima = new UltimaConstrucao();
+        Resultado resultado = medir(() -> criar(treeType, dataset), ultima);
+
+        int distintas = chavesDistintas(dataset);
+        resultado.bytesRetidosPorChave = distintas == 0 ? 0.0 : (double) ultima.retidos / distintas;
+        resultado.bytesAlocadosPorInsercao = ultima.alocados < 0 || dataset.length == 0
+                ? -1.0 : (double) ultima.alocados / dataset.length;
+        medirOperacoes(ultima.arvore, dataset, resultado);
+        if (LATENCIAS) medirLatencias(treeType, dataset, resultado);
+        return resultado;
+    }
+
+    /**
+     * Árvore da última iteração medida, com a memória que retém e os bytes
+     * alocados pela thread ao construí-la (contador por thread da JVM HotSpot;
+     * -1 se não estiver disponível).
+     */
+    private static final class UltimaConstrucao {
+        Object arvore;
+        long retidos, alocados = -1;
+    }
+
+    /**
+     * Soma o número de recolhas de todos os coletores de lixo.
+     *
+     * @return número total de recolhas desde o arranque da JVM
+     */
+    private static long gcContagem() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionCount());
+        }
+        return total;
+    }
+
+    /**
+     * Soma o tempo gasto por todos os coletores de lixo.
+     *
+     * @return tempo total de recolha, em milissegundos, desde o arranque da JVM
+     */
+    private static long gcTempo() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+
+    /**
+     * Regista no resultado as comparações por inserção e a forma de uma árvore
+     * já construída e, no fim, o tempo médio de pesquisa de uma amostra
+     * aleatória de chaves do conjunto nessa árvore. A amostra tem no máximo
+     * {@link #PESQUISAS} chaves e é reduzida para que o número esperado de nós
+     * visitados (a profundidade média vezes o número de pesquisas) não passe
+     * de {@link #ORCAMENTO_PESQUISA}.
+     *
+     * @param arvore árvore construída com todas as chaves do conjunto
+     * @param dataset chaves inseridas
+     * @param resultado resultado onde são registadas as métricas
+     */
+    public static void medirOperacoes(Object arvore, int[] dataset, Resultado resultado) {
+        long comparacoes = 0;
+        IntPredicate pesquisa;
+        if (arvore instanceof BinaryTree) {
+            BinaryTree t = (BinaryTree) arvore;
+            pesquisa = t::contem;
+            comparacoes = t.comparacoes;
+            resultado.caminhoMedio = t.profundidadeMedia();
+            resultado.altura = t.altura();
+        } else if (arvore instanceof AVLTree) {
+            AVLTree t = (AVLTree) arvore;
+            pesquisa = t::contains;
+            comparacoes = t.comparacoes;
+            resultado.caminhoMedio = t.profundidadeMedia();
+            resultado.altura = t.altura();
+        } else if (arvore instanceof VPTree) {
+            VPTree t = (VPTree) arvore;
+            pesquisa = t::contains;
+            comparacoes = t.comparacoes;
+            resultado.caminhoMedio = t.profundidadeMedia();
+            resultado.altura = t.altura();
+        } else if (arvore instanceof TreapTree) {
+            TreapTree t = (TreapTree) arvore;
+            pesquisa = t::contains;
+            comparacoes = t.comparacoes;
+            resultado.caminhoMedio = t.profundidadeMedia();
+            resultado.altura = t.altura();
+        } else if (arvore instanceof BTree) {
+            BTree t = (BTree) arvore;
+            pesquisa = t::contains;
+            comparacoes = t.comparacoes;
+            resultado.caminhoMedio = t.profundidadeMedia();
+            resultado.altura = t.altura();
+        } else if (arvore instanceof ARTree) {
+            ARTree t = (ARTree) arvore;
+            pesquisa = t::contains;
+            comparacoes = t.comparacoes;
+            resultado.caminhoMedio = t.profundidadeMedia();
+            resultado.altura = t.altura();
+        } else if (arvore instanceof SplayTree) {
+            SplayTree t = (SplayTree) arvore;
+            pesquisa = t::contains;
+            comparacoes = t.comparacoes;
+            resultado.caminhoMedio = t.profundidadeMedia();
+            resultado.altura = t.altura();
+        } else if (arvore instanceof ScapegoatTree) {
+            ScapegoatTree t = (ScapegoatTree) arvore;
+            pesquisa = t::contains;
+            comparacoes = t.comparacoes;
+            resultado.caminhoMedio = t.profundidadeMedia();
+            resultado.altura = t.altura();
+        } else {
+            return; // tipo sem contadores nem pesquisa instrumentáveis
+        }
+        resultado.comparacoesPorInsercao = dataset.length == 0 ? 0.0 : (double) comparacoes / dataset.length;
+
+        if (dataset.length == 0) return;
+        long porOrcamento = (long) (ORCAMENTO_PESQUISA / Math.max(1.0, resultado.caminhoMedio));
+        int[] amostra = new int[(int) Math.max(1, Math.min(Math.min(PESQUISAS, dataset.length), porOrcamento))];
+        Random rand = new Random(GerarChaves.SEMENTE);
+        for (int i = 0; i < amostra.length; i++) {
+            amostra[i] = dataset[rand.nextInt(dataset.length)];
+        }
+
+        int encontradas = 0;
+        long inicioPesquisa = System.nanoTime();
+        for (int key : amostra) {
+            if (pesquisa.test(key)) encontradas++;
+        }
+        long tempoPesquisa = System.nanoTime() - inicioPesquisa;
+        if (encontradas != amostra.length) {
+            throw new IllegalStateException("Chaves em falta na árvore " + arvore.getClass().getSimpleName());
+        }
+        resultado.pesquisaNs = (double) tempoPesquisa / amostra.length;
+    }
+
+    /**
+     * Faz uma construção instrumentada, fora das iterações medidas, e regista
+     * no resultado o histograma de latência por inserção. O ciclo de inserção
+     * não faz alocações além dos próprios nós.
+     *
+     * @param treeType tipo de árvore
+     * @param dataset chaves a inserir
+     * @param resultado resultado onde são registadas as métricas
+     */
+    public static void medirLatencias(String treeType, int[] dataset, Resultado resultado) {
+        IntConsumer insercao;
+        switch (treeType) {
+            case "BST": {
+                BinaryTree t = new BinaryTree();
+                insercao = t::inserir;
+                break;
+            }
+            case "BST-FINGER": {
+                BinaryTree t = new BinaryTree();
+                insercao = t::inserirFinger;
+                break;
+            }
+            case "AVL":
+            case "AVL-ITER":
+            case "AVL-FINGER": {
+                AVLTree t = new AVLTree();
+                insercao = treeType.equals("AVL") ? t::insert
+                        : treeType.equals("AVL-ITER") ? t::insertIter : t::insertFinger;
+                break;
+            }
+            case "VP":
+            case "VP-ITER":
+            case "VP-FINGER": {
+                VPTree t = new VPTree();
+                insercao = treeType.equals("VP") ? t::insert
+                        : treeType.equals("VP-ITER") ? t::insertIter : t::insertFinger;
+                break;
+            }
+            case "TREAP":
+            case "TREAP-ITER": {
+                TreapTree t = new TreapTree();
+                insercao = treeType.equals("TREAP") ? t::insert : t::insertIter;
+                break;
+            }
+            case "BTREE": {
+                BTree t = new BTree();
+                insercao = t::insert;
+                break;
+            }
+            case "ART": {
+                ARTree t = new ARTree();
+                insercao = t::insert;
+                break;
+            }
+            case "SPLAY": {
+                SplayTree t = new SplayTree();
+                insercao = t::insert;
+                break;
+            }
+            case "SCAPEGOAT": {
+                ScapegoatTree t = new ScapegoatTree();
+                insercao = t::insert;
+                break;
+            }
+            default:
+                return; // tipo sem inserção chave a chave instrumentável
+        }
+
+        Histograma histograma = new Histograma();
+        for (int key : dataset) {
+            long inicio = System.nanoTime();
+            insercao.accept(key);
+            histograma.registar(System.nanoTime() - inicio);
+        }
+
+        resultado.insP50 = histograma.percentil(0.50);
+        resultado.insP99 = histograma.percentil(0.99);
+        resultado.insP999 = histograma.percentil(0.999);
+        resultado.insMax = histograma.max();
+    }
+
+    /**
+     * Mede uma construção arbitrária com aquecimento e várias iterações.
+     *
+     * @param construcao função que constrói e devolve uma árvore
+     * @return estatísticas dos tempos medidos
+     */
+    public static Resultado medir(Supplier<Object> construcao) {
+        return medir(construcao, null);
+    }
+
+    /**
+     * Mede uma construção e, se {@code ultima} não for {@code null}, guarda a
+     * árvore da última iteração medida e regista a memória que retém, os
+     * bytes alocados e as recolhas de lixo ocorridas durante essa construção.
+     * As medições de memória são feitas fora do intervalo cronometrado.
+     */
+    private static Resultado medir(Supplier<Object> construcao, UltimaConstrucao ultima) {
+        for (int i = 0; i < AQUECIMENTO; i++) {
+            construcao.get();
+        }
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean alocacoes = threads instanceof com.sun.management.ThreadMXBean
+                ? (com.sun.management.ThreadMXBean) threads : null;
+        Temporizador temporizador = new Temporizador();
+        double[] tempos = new double[ITERACOES];
+        Resultado resultado = new Resultado();
+
+        for (int i = 0; i < ITERACOES; i++) {
+            boolean instrumentada = ultima != null && i == ITERACOES - 1;
+            long antes = 0, gcContagemAntes = 0, gcTempoAntes = 0, alocadosAntes = 0;
+            if (instrumentada) {
+                antes = memoriaUsada();
+                gcContagemAntes = gcContagem();
+                gcTempoAntes = gcTempo();
+                if (alocacoes != null) alocadosAntes = alocacoes.getCurrentThreadAllocatedBytes();
+            } else {
+                System.gc();
+            }
+
+            temporizador.inicio();
+            Object arvore = construcao.get();
+            tempos[i] = temporizador.fim();
+            resultado.rotacoes = rotacoes(arvore);
+
+            if (instrumentada) {
+                if (alocacoes != null) ultima.alocados = alocacoes.getCurrentThreadAllocatedBytes() - alocadosAntes;
+                resultado.gcContagem = gcContagem() - gcContagemAntes;
+                resultado.gcTempo = gcTempo() - gcTempoAntes;
+                ultima.arvore = arvore;
+                ultima.retidos = Math.max(0, memoriaUsada() - antes);
+            }
+        }
+
+        resultado.estatisticas(tempos);
+        return resultado;
+    }
+
+    /**
+     * Mede uma matriz de células e grava-a num ficheiro CSV com as colunas
+     * de {@link #cabecalhoCsv()}. É usada pelas experiências que comparam
+     * variantes de uma mesma árvore.
+     *
+     * @param prefixo identificador da experiência no nome do ficheiro
+     * @param treeTypes tipos de árvore a medir
+     * @param sizes tamanhos dos conjuntos de dados
+     * @throws IOException se não for possível escrever o ficheiro
+     */
+    public static void executarMatriz(String prefixo, String[] treeTypes, int[] sizes) throws IOException {
+        String[] labels = {"A", "B", "C", "D"};
+        String fileName = nomeFicheiro(prefixo);
+
+        try (FileWriter writer = new FileWriter(fileName)) {
+            writer.write(cabecalhoCsv());
+
+            for (int size : sizes) {
+                for (String label : labels) {
+                    int[] dataset = GerarChaves.gerar(label, size);
+                    for (String treeType : treeTypes) {
+                        Resultado r = medir(treeType, dataset);
+                        System.out.printf("  -> %s - Conjunto %s (Size: %d): Tempo = %.4f ± %.4f s, Rotações = %d%n",
+                                treeType, label, size, r.media, r.erro, r.rotacoes);
+                        writer.write(linhaCsv(treeType, label, size, r));
+                    }
+                }
+            }
+        }
+
+        System.out.println("\nProcesso terminado. Resultados foram guardados em: " + fileName);
+    }
+
+    /**
+     * Devolve o cabeçalho do ficheiro CSV. As cinco primeiras colunas são as
+     * mesmas dos ficheiros resultados-*.csv anteriores.
+     *
+     * @return linha de cabeçalho terminada em mudança de linha
+     */
+    public static String cabecalhoCsv() {
+        return "TreeType;Dataset;Size;Time(s);Rotations;Error(s);P50(s);P90(s);P99(s);Max(s)"
+                + ";InsP50(ns);InsP99(ns);InsP999(ns);InsMax(ns);Comparisons/Insert;AvgPath;Height"
+                + ";RetainedBytes/Key;AllocBytes/Insert;GcCount;GcTime(ms);Lookup(ns)\n";
+    }
+
+    /**
+     * Formata uma linha do ficheiro CSV para uma célula medida.
+     *
+     * @param treeType tipo de árvore
+     * @param label rótulo do conjunto de dados
+     * @param size tamanho do conjunto
+     * @param r resultado da medição
+     * @return linha CSV terminada em mudança de linha
+     */
+    public static String linhaCsv(String treeType, String label, int size, Resultado r) {
+        return String.format(Locale.FRANCE, "%s;%s;%d;%.4f;%d;%.4f;%.4f;%.4f;%.4f;%.4f;%s;%s;%s;%s;%.2f;%.2f;%d;%.1f;%.1f;%d;%d;%.1f\n",
+                treeType, label, size, r.media, r.rotacoes, r.erro, r.p50, r.p90, r.p99, r.max,
+                latencia(r.insP50), latencia(r.insP99), latencia(r.insP999), latencia(r.insMax), r.comparacoesPorInsercao, r.caminhoMedio, r.altura,
+                r.bytesRetidosPorChave, r.bytesAlocadosPorInsercao, r.gcContagem, r.gcTempo, r.pesquisaNs);
+    }
+
+    /**
+     * Formata uma latência para o CSV; uma latência não medida fica com o
+     * campo vazio, para não ser confundida com zero.
+     *
+     * @param nanos latência em nanossegundos, ou -1 se não foi medida
+     * @return texto do campo
+     */
+    private static String latencia(long nanos) {
+        return nanos < 0 ? "" : Long.toString(nanos);
+    }
+
+    /**
+     * Calcula um percentil pelo método do posto mais próximo.
+     *
+     * @param ordenados valores ordenados de forma crescente
+     * @param p percentil pretendido, entre 0 e 1
+     * @return valor do percentil
+     */
+    static double percentil(double[] ordenados, double p) {
+        int indice = (int) Math.ceil(p * ordenados.length) - 1;
+        return ordenados[Math.max(0, Math.min(indice, ordenados.length - 1))];
+    }
+
+    /**
+     * Devolve o quantil 0,9995 da distribuição t de Student.
+     *
+     * @param grausLiberdade graus de liberdade
+     * @return quantil correspondente
+     */
+    private static double quantilT(int grausLiberdade) {
+        if (grausLiberdade <= T_999.length) return T_999[grausLiberdade - 1];
+        return 3.291; // aproximação pela distribuição normal
+    }
+
+    /**
+     * Gera o nome de um ficheiro de resultados com a data/hora atual,
+     * no formato resultados-[prefixo-]yyyy-MM-dd_HH-mm-ss.csv.
+     *
+     * @param prefixo identificador da experiência, ou {@code null} para a matriz principal
+     * @return nome do ficheiro
+     */
+    public static String nomeFicheiro(String prefixo) {
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss");
+        String formattedDateTime = LocalDateTime.now().format(formatter);
+        return prefixo == null
+                ? "resultados-" + formattedDateTime + ".csv"
+                : "resultados-" + prefixo + "-" + formattedDateTime + ".csv";
+    }
+
+    /**
+     * Mede a memória ocupada no heap depois de forçar recolhas de lixo.
+     *
+     * @return bytes ocupados no heap
+     */
+    public static long memoriaUsada() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    /**
+     * Conta o número de chaves distintas de um conjunto.
+     *
+     * @param dataset conjunto de chaves
+     * @return número de chaves distintas
+     */
+    public static int chavesDistintas(int[] dataset) {
+        if (dataset.length == 0) return 0;
+        int[] copia = dataset.clone();
+        Arrays.sort(copia);
+        int distintas = 1;
+        for (int i = 1; i < copia.length; i++) {
+            if (copia[i] != copia[i - 1]) distintas++;
+        }
+        return distintas;
+    }
+}
@@ -0,0 +1,67 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Experiência da fábrica adaptativa ({@link SeletorArvore}): compara, em cada
+ * conjunto A a D, o tempo de construção com a escolha adaptativa (incluindo o
+ * perfil das chaves) com o de cada árvore fixa inserindo as chaves uma a uma.
+ *
+ * A coluna Ratio é o tempo de cada linha a dividir pelo da escolha
+ * adaptativa: acima de 1, a escolha adaptativa foi mais rápida. Tal como na
+ * matriz principal, a BST só é medida até 100000 chaves.
+ *
+ * @author Guilherme Rosmaninho
+ * @version 1.0
+ */
+public class BenchmarkAdaptativo {
+
+    /**
+     * Executa a experiência e grava os resultados num ficheiro CSV.
+     *
+     * @throws IOException se não for possível escrever o ficheiro
+     */
+    public static void executar() throws IOException {
+        int[] sizes = {100000, 1000000, 5000000};
+        String[] treeTypes = {"BST", "AVL", "VP", "TREAP"};
+        String[] labels = {"A", "B", "C", "D"};
+        String fileName = Benchmark.nomeFicheiro("adaptativo");
+
+        try (FileWriter writer = new FileWriter(fileName)) {
+            writer.write("TreeType;Dataset;Size;Choice;Inversions;Duplicates;Time(s);Error(s);Rotations;Ratio\n");
+
+            for (int size : sizes) {
+                for (String label : labels) {
+                    int[] dataset = GerarChaves.gerar(label, size);
+
+                    SeletorArvore.Escolha escolha = SeletorArvore.escolher(dataset);
+                    System.out.println("  -> Seleção adaptativa: " + escolha);
+                    Benchmark.Resultado adaptativo = Benchmark.medir(
+                            () -> SeletorArvore.construir(SeletorArvore.escolher(dataset), dataset));
+                    escrever(writer, "ADAPTATIVO", label, size, escolha, adaptativo, adaptativo.media);
+
+                    for (String treeType : treeTypes) {
+                        if (!Main.celulaAtiva(treeType, size)) continue;
+                        Benchmark.Resultado r = Benchmark.medir(() -> Benchmark.criar(treeType, dataset));
+                        escrever(writer, treeType, label, size, escolha, r, adaptativo.media);
+                    }
+                }
+            }
+        }
+
+        System.out.println("\nProcesso terminado. Resultados foram guardados em: " + fileName);
+    }
+
+    /**
+     * Escreve uma linha de resultados no CSV e na consola.
+     */
+    private static void escrever(FileWriter writer, String treeType, String label, int size,
+                                 SeletorArvore.Escolha escolha, Benchmark.Resultado r, double adaptativo) throws IOException {
+        System.out.printf("  -> %s - Conjunto %s (Size: %d): Tempo = %.4f s, rácio = %.2f%n",
+                treeType, label, size, r.media, r.media / adaptativo);
+        writer.write(String.format(Locale.FRANCE, "%s;%s;%d;%s;%.3f;%.3f;%.4f;%.4f;%d;%.2f\n",
+                treeType, label, size, escolha.nome(), escolha.perfil.inversoes, escolha.perfil.repetidas,
+                r.media, r.erro, r.rotacoes, r.media / adaptativo));
+        writer.flush();
+    }
+}
@@ -0,0 +1,53 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Experiência que compara o armazenamento em objetos ({@link AVLTree},
+ * {@link VPTree}, {@link TreapTree}) com o armazenamento em arrays paralelos
+ * ({@link AVLTreeArray}, {@link VPTreeArray}, {@link TreapTreeArray}).
+ *
+ * Para cada célula regista o tempo de inserção, o débito em inserções por
+ * segundo e a memória retida por chave distinta (medida por
+ * {@link Benchmark#medir(String, int[])}).
+ *
+ * @author Guilherme Rosmaninho
+ * @version 1.0
+ */
+public class BenchmarkArmazenamento {
+
+    /**
+     * Executa a experiência e grava os resultados num ficheiro CSV.
+     *
+     * @throws IOException se não for possível escrever o ficheiro
+     */
+    public static void executar() throws IOException {
+        int[] sizes = {100000, 250000, 500000, 750000, 1000000, 2000000, 3000000, 4000000, 5000000};
+        String[] treeTypes = {"AVL", "AVL-ARR", "VP", "VP-ARR", "TREAP", "TREAP-ARR"};
+        String[] labels = {"A", "B", "C", "D"};
+        String fileName = Benchmark.nomeFicheiro("armazenamento");
+
+        try (FileWriter writer = new FileWriter(fileName)) {
+            writer.write("TreeType;Dataset;Size;Time(s);Rotations;Inserts/s;Bytes/Key\n");
+
+            for (int size : sizes) {
+                for (String label : labels) {
+                    int[] dataset = GerarChaves.gerar(label, size);
+
+                    for (String treeType : treeTypes) {
+                        Benchmark.Resultado r = Benchmark.medir(treeType, dataset);
+                        double bytesPorChave = r.bytesRetidosPorChave;
+                        double debito = size / r.media;
+
+                        System.out.printf("  -> %s - Conjunto %s (Size: %d): Tempo = %.4f s, %.0f ins/s, %.1f B/chave%n",
+                                treeType, label, size, r.media, debito, bytesPorChave);
+                        writer.write(String.format(Locale.FRANCE, "%s;%s;%d;%.4f;%d;%.0f;%.1f\n",
+                                treeType, label, size, r.media, r.rotacoes, debito, bytesPorChave));
+                    }
+                }
+            }
+        }
+
+        System.out.println("\nProcesso terminado. Resultados foram guardados em: " + fileName);
+    }
+}
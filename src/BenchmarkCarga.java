@@ -0,0 +1,224 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+/**
+ * Experiência de cargas mistas: cada árvore é carregada com as chaves 1..base
+ * (por ordem aleatória) e depois executa uma sequência de leituras, escritas e
+ * percursos de intervalos gerada por {@link GerarChaves#gerarCarga}.
+ *
+ * Cada mistura varia a proporção de leituras e escritas, a popularidade das
+ * chaves (uniforme ou Zipfiana) e a fração de leituras que acertam. Para cada
+ * célula regista o débito em operações por segundo (média de várias iterações,
+ * com a árvore reconstruída fora da medição) e, numa passagem à parte, a
+ * latência de cada tipo de operação.
+ *
+ * @author Guilherme Rosmaninho
+ * @version 1.0
+ */
+public class BenchmarkCarga {
+
+    /** Número de operações de cada carga. */
+    static final int OPERACOES = 1000000;
+
+    /** Destino da soma dos intervalos, para que o JIT não elimine os percursos. */
+    static volatile long sumidouro;
+
+    /** Nome de cada mistura. */
+    private static final String[] MISTURAS = {
+            "L95-E5-UNIF", "L95-E5-ZIPF", "L50-E50-UNIF", "L50-E50-ZIPF",
+            "L100-ZIPF", "L90-E5-I5-ZIPF", "L95-E5-UNIF-F50"};
+
+    /** Fração de escritas, fração de intervalos, fração de acertos e expoente Zipfiano de cada mistura. */
+    private static final double[][] PARAMETROS = {
+            {0.05, 0.00, 0.9, 0.0}, {0.05, 0.00, 0.9, 0.99}, {0.50, 0.00, 0.9, 0.0}, {0.50, 0.00, 0.9, 0.99},
+            {0.00, 0.00, 0.9, 0.99}, {0.05, 0.05, 0.9, 0.99}, {0.05, 0.00, 0.5, 0.0}};
+
+    /**
+     * Executa a experiência e grava os resultados num ficheiro CSV.
+     *
+     * @throws IOException se não for possível escrever o ficheiro
+     */
+    public static void executar() throws IOException {
+        int[] sizes = {100000, 1000000};
+        String[] treeTypes = {"BST", "AVL", "VP", "TREAP", "SPLAY", "SCAPEGOAT"};
+        String fileName = Benchmark.nomeFicheiro("carga");
+
+        try (FileWriter writer = new FileWriter(fileName)) {
+            writer.write("TreeType;Dataset;Size;Time(s);Rotations;Error(s);Ops/s;HitRate;"
+                    + "ReadP50(ns);ReadP99(ns);WriteP50(ns);WriteP99(ns);ScanP50(ns);ScanP99(ns)\n");
+
+            for (int size : sizes) {
+                int[] base = GerarChaves.generateC(size);
+
+                for (int m = 0; m < MISTURAS.length; m++) {
+                    double[] p = PARAMETROS[m];
+                    GerarChaves.Carga carga = GerarChaves.gerarCarga(size, OPERACOES, p[0], p[1], p[2], p[3],
+                            GerarChaves.SEMENTE + m);
+
+                    for (String treeType : treeTypes) {
+                        medirCelula(writer, treeType, MISTURAS[m], base, carga);
+                    }
+                }
+            }
+        }
+
+        System.out.println("\nProcesso terminado. Resultados foram guardados em: " + fileName);
+    }
+
+    /**
+     * Mede uma árvore numa mistura e escreve a linha de resultados.
+     */
+    private static void medirCelula(FileWriter writer, String treeType, String mistura, int[] base,
+                                    GerarChaves.Carga carga) throws IOException {
+        Temporizador temporizador = new Temporizador();
+        double[] tempos = new double[Benchmark.ITERACOES];
+        int rotacoes = 0;
+        long acertos = 0;
+
+        for (int i = -Benchmark.AQUECIMENTO; i < Benchmark.ITERACOES; i++) {
+            Alvo alvo = preparar(treeType, base);
+            int rotacoesAntes = Benchmark.rotacoes(alvo.arvore);
+            System.gc();
+            temporizador.inicio();
+            acertos = executarCarga(alvo, carga, null);
+            double tempo = temporizador.fim();
+            if (i >= 0) tempos[i] = tempo;
+            rotacoes = Benchmark.rotacoes(alvo.arvore) - rotacoesAntes;
+        }
+
+        // Passagem à parte com o tempo de cada operação, para não pesar no débito
+        Histograma[] latencias = {new Histograma(), new Histograma(), new Histograma()};
+        executarCarga(preparar(treeType, base), carga, latencias);
+
+        Benchmark.Resultado r = new Benchmark.Resultado();
+        r.estatisticas(tempos);
+        double debito = carga.tipos.length / r.media;
+        long leituras = latencias[GerarChaves.LEITURA].total();
+        double taxaAcertos = leituras == 0 ? 0.0 : (double) acertos / leituras;
+
+        System.out.printf("  -> %s - %s (Base: %d): Tempo = %.4f s, %.0f ops/s, leitura p99 = %d ns%n",
+                treeType, mistura, carga.base, r.media, debito, latencias[GerarChaves.LEITURA].percentil(0.99));
+        writer.write(String.format(Locale.FRANCE, "%s;%s;%d;%.4f;%d;%.4f;%.0f;%.3f;%d;%d;%d;%d;%d;%d\n",
+                treeType, mistura, carga.base, r.media, rotacoes, r.erro, debito, taxaAcertos,
+                latencias[GerarChaves.LEITURA].percentil(0.50), latencias[GerarChaves.LEITURA].percentil(0.99),
+                latencias[GerarChaves.ESCRITA].percentil(0.50), latencias[GerarChaves.ESCRITA].percentil(0.99),
+                latencias[GerarChaves.INTERVALO].percentil(0.50), latencias[GerarChaves.INTERVALO].percentil(0.99)));
+        writer.flush();
+    }
+
+    /**
+     * Executa todas as operações de uma carga.
+     *
+     * @param alvo árvore e respetivas operações
+     * @param carga operações a executar
+     * @param latencias histogramas por tipo de operação, ou {@code null} para não medir latências
+     * @return o número de leituras que encontraram a chave
+     */
+    private static long executarCarga(Alvo alvo, GerarChaves.Carga carga, Histograma[] latencias) {
+        byte[] tipos = carga.tipos;
+        int[] chaves = carga.chaves;
+        long acertos = 0;
+
+        for (int i = 0; i < tipos.length; i++) {
+            long inicio = latencias != null ? System.nanoTime() : 0;
+            int chave = chaves[i];
+            switch (tipos[i]) {
+                case GerarChaves.LEITURA:
+                    if (alvo.contem.test(chave)) acertos++;
+                    break;
+                case GerarChaves.ESCRITA:
+                    alvo.inserir.accept(chave);
+                    break;
+                default:
+                    alvo.intervalo.percorrer(chave, chave + GerarChaves.COMPRIMENTO_INTERVALO - 1, alvo.acumulador);
+            }
+            if (latencias != null) latencias[tipos[i]].registar(System.nanoTime() - inicio);
+        }
+        sumidouro = alvo.acumulador.soma;
+        return acertos;
+    }
+
+    /**
+     * Constrói uma árvore do tipo indicado com as chaves base e associa-lhe as operações da carga.
+     *
+     * @param treeType tipo de árvore (BST, AVL, VP, TREAP, SPLAY ou SCAPEGOAT)
+     * @param base chaves a pré-carregar
+     * @return a árvore e as suas operações
+     */
+    private static Alvo preparar(String treeType, int[] base) {
+        switch (treeType) {
+            case "BST": {
+                BinaryTree t = new BinaryTree();
+                for (int key : base) t.inserir(key);
+                return new Alvo(t, t::inserir, t::contem, t::intervalo);
+            }
+            case "AVL": {
+                AVLTree t = new AVLTree();
+                for (int key : base) t.insert(key);
+                return new Alvo(t, t::insert, t::contains, t::range);
+            }
+            case "VP": {
+                VPTree t = new VPTree();
+                for (int key : base) t.insert(key);
+                return new Alvo(t, t::insert, t::contains, t::range);
+            }
+            case "TREAP": {
+                TreapTree t = new TreapTree();
+                for (int key : base) t.insert(key);
+                return new Alvo(t, t::insert, t::contains, t::range);
+            }
+            case "SPLAY": {
+                SplayTree t = new SplayTree();
+                for (int key : base) t.insert(key);
+                return new Alvo(t, t::insert, t::contains, t::range);
+            }
+            case "SCAPEGOAT": {
+                ScapegoatTree t = new ScapegoatTree();
+                for (int key : base) t.insert(key);
+                return new Alvo(t, t::insert, t::contains, t::range);
+            }
+            default:
+                throw new IllegalArgumentException("Tipo de árvore sem carga mista: " + treeType);
+        }
+    }
+
+    /**
+     * Percurso de um intervalo [de, ate] de uma árvore.
+     */
+    private interface Intervalo {
+        int percorrer(int de, int ate, IntConsumer acao);
+    }
+
+    /**
+     * Soma as chaves visitadas pelos percursos de intervalos.
+     */
+    private static final class Acumulador implements IntConsumer {
+        long soma = 0;
+
+        @Override
+        public void accept(int chave) {
+            soma += chave;
+        }
+    }
+
+    /**
+     * Árvore sob medição e as operações usadas pela carga.
+     */
+    private static final class Alvo {
+        final Object arvore;
+        final IntConsumer inserir;
+        final IntPredicate contem;
+        final Intervalo intervalo;
+        final Acumulador acumulador = new Acumulador();
+
+        Alvo(Object arvore, IntConsumer inserir, IntPredicate contem, Intervalo intervalo) {
+            this.arvore = arvore;
+            this.inserir = inserir;
+            this.contem = contem;
+            this.intervalo = intervalo;
+        }
+    }
+}
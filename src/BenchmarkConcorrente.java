@@ -0,0 +1,121 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
+
+/**
+ * Experiência de escalabilidade da inserção concorrente com 1, 2, 4, 8...
+ * threads, até ao número de processadores disponíveis, nos conjuntos A a D.
+ *
+ * Compara a {@link AVLTreeConcurrent} com uma {@link AVLTree} protegida por um
+ * único lock global. Cada thread insere uma fatia contígua do conjunto; o
+ * speedup é calculado em relação à mesma árvore com uma thread.
+ *
+ * @author Guilherme Rosmaninho
+ * @version 1.0
+ */
+public class BenchmarkConcorrente {
+
+    /**
+     * Executa a experiência e grava os resultados num ficheiro CSV.
+     *
+     * @throws IOException se não for possível escrever o ficheiro
+     */
+    public static void executar() throws IOException {
+        int[] sizes = {1000000, 5000000};
+        String[] treeTypes = {"AVL-LOCK", "AVL-CONC"};
+        String[] labels = {"A", "B", "C", "D"};
+        int[] threads = BenchmarkParalelo.contagensThreads(Runtime.getRuntime().availableProcessors());
+        String fileName = Benchmark.nomeFicheiro("concorrente");
+
+        try (FileWriter writer = new FileWriter(fileName)) {
+            writer.write("TreeType;Dataset;Size;Time(s);Rotations;Threads;Inserts/s;Speedup\n");
+
+            for (int size : sizes) {
+                for (String label : labels) {
+                    int[] dataset = GerarChaves.gerar(label, size);
+
+                    for (String treeType : treeTypes) {
+                        double base = 0.0;
+                        for (int t : threads) {
+                            ExecutorService executor = Executors.newFixedThreadPool(t);
+                            try {
+                                Benchmark.Resultado r = Benchmark.medir(() -> construir(treeType, dataset, executor, t));
+                                if (t == 1) base = r.media;
+                                double debito = size / r.media;
+
+                                System.out.printf("  -> %s - Conjunto %s (Size: %d, Threads: %d): Tempo = %.4f s, %.0f ins/s%n",
+                                        treeType, label, size, t, r.media, debito);
+                                writer.write(String.format(Locale.FRANCE, "%s;%s;%d;%.4f;%d;%d;%.0f;%.2f\n",
+                                        treeType, label, size, r.media, r.rotacoes, t, debito, base / r.media));
+                            } finally {
+                                executor.shutdown();
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        System.out.println("\nProcesso terminado. Resultados foram guardados em: " + fileName);
+    }
+
+    /**
+     * Constrói uma árvore repartindo as inserções por várias threads.
+     *
+     * @param treeType tipo de árvore (AVL-LOCK ou AVL-CONC)
+     * @param dataset chaves a inserir
+     * @param executor executor com pelo menos {@code threads} threads
+     * @param threads número de fatias do conjunto
+     * @return a árvore construída
+     */
+    static Object construir(String treeType, int[] dataset, ExecutorService executor, int threads) {
+        Object arvore;
+        IntConsumer insercao;
+        switch (treeType) {
+            case "AVL-LOCK": {
+                AVLTree t = new AVLTree();
+                arvore = t;
+                insercao = key -> {
+                    synchronized (t) {
+                        t.insert(key);
+                    }
+                };
+                break;
+            }
+            case "AVL-CONC": {
+                AVLTreeConcurrent t = new AVLTreeConcurrent();
+                arvore = t;
+                insercao = t::insert;
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Tipo de árvore sem inserção concorrente: " + treeType);
+        }
+
+        List<Future<?>> fatias = new ArrayList<>();
+        for (int p = 0; p < threads; p++) {
+            int inicio = (int) ((long) dataset.length * p / threads);
+            int fim = (int) ((long) dataset.length * (p + 1) / threads);
+            fatias.add(executor.submit(() -> {
+                for (int i = inicio; i < fim; i++) insercao.accept(dataset[i]);
+            }));
+        }
+
+        try {
+            for (Future<?> fatia : fatias) fatia.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Inserção concorrente interrompida", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Falha numa thread de inserção", e.getCause());
+        }
+        return arvore;
+    }
+}
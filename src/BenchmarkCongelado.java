@@ -0,0 +1,118 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+/**
+ * Experiência sobre a forma imutável das árvores ({@code freeze()}): compara o
+ * débito de pesquisa na árvore viva, que segue referências entre nós, com o
+ * das disposições Eytzinger e van Emde Boas de {@link FrozenTree}, com 1M a 5M
+ * chaves aleatórias (conjunto C).
+ *
+ * As chaves procuradas são uniformes em [1, 2n], pelo que cerca de metade das
+ * pesquisas encontra a chave. O tempo de conversão é medido à parte.
+ *
+ * @author Guilherme Rosmaninho
+ * @version 1.0
+ */
+public class BenchmarkCongelado {
+
+    /** Número de pesquisas de cada iteração medida. */
+    static final int CONSULTAS = 1000000;
+
+    /**
+     * Executa a experiência e grava os resultados num ficheiro CSV.
+     *
+     * @throws IOException se não for possível escrever o ficheiro
+     */
+    public static void executar() throws IOException {
+        int[] sizes = {1000000, 2000000, 5000000};
+        String[] treeTypes = {"AVL", "VP", "TREAP"};
+        String fileName = Benchmark.nomeFicheiro("congelado");
+
+        try (FileWriter writer = new FileWriter(fileName)) {
+            writer.write("TreeType;Dataset;Size;Layout;FreezeTime(s);Lookup(ns);Lookups/s;Speedup\n");
+
+            for (int size : sizes) {
+                int[] dataset = GerarChaves.generateC(size);
+                int[] consultas = new int[CONSULTAS];
+                SplittableRandom aleatorio = new SplittableRandom(GerarChaves.SEMENTE);
+                for (int i = 0; i < CONSULTAS; i++) consultas[i] = 1 + aleatorio.nextInt(2 * size);
+
+                for (String treeType : treeTypes) {
+                    Object arvore = Benchmark.criar(treeType, dataset);
+                    double viva = porConsulta(Benchmark.medir(() -> pesquisarViva(arvore, consultas)));
+                    escrever(writer, treeType, size, "LIVE", 0.0, viva, viva);
+
+                    for (boolean vanEmdeBoas : new boolean[]{false, true}) {
+                        Benchmark.Resultado conversao = Benchmark.medir(() -> congelar(arvore, vanEmdeBoas));
+                        FrozenTree congelada = congelar(arvore, vanEmdeBoas);
+                        double tempo = porConsulta(Benchmark.medir(() -> pesquisarCongelada(congelada, consultas)));
+                        escrever(writer, treeType, size, congelada.disposicao(), conversao.media, tempo, viva);
+                    }
+                }
+            }
+        }
+
+        System.out.println("\nProcesso terminado. Resultados foram guardados em: " + fileName);
+    }
+
+    /**
+     * Escreve a linha de resultados de uma disposição.
+     */
+    private static void escrever(FileWriter writer, String treeType, int size, String disposicao,
+                                 double conversao, double tempo, double viva) throws IOException {
+        System.out.printf("  -> %s %s (Size: %d): pesquisa = %.1f ns, speedup = %.2f%n",
+                treeType, disposicao, size, tempo, viva / tempo);
+        writer.write(String.format(Locale.FRANCE, "%s;%s;%d;%s;%.4f;%.1f;%.0f;%.2f\n",
+                treeType, "C", size, disposicao, conversao, tempo, 1e9 / tempo, viva / tempo));
+        writer.flush();
+    }
+
+    /**
+     * Converte o tempo médio de uma iteração em nanossegundos por pesquisa.
+     */
+    private static double porConsulta(Benchmark.Resultado r) {
+        return r.media * 1e9 / CONSULTAS;
+    }
+
+    /**
+     * Converte uma árvore viva na forma imutável.
+     */
+    private static FrozenTree congelar(Object arvore, boolean vanEmdeBoas) {
+        if (arvore instanceof AVLTree) return ((AVLTree) arvore).freeze(vanEmdeBoas);
+        if (arvore instanceof VPTree) return ((VPTree) arvore).freeze(vanEmdeBoas);
+        return ((TreapTree) arvore).freeze(vanEmdeBoas);
+    }
+
+    /**
+     * Procura todas as chaves na árvore viva.
+     *
+     * @return o número de chaves encontradas
+     */
+    private static Object pesquisarViva(Object arvore, int[] consultas) {
+        int encontradas = 0;
+        if (arvore instanceof AVLTree) {
+            AVLTree t = (AVLTree) arvore;
+            for (int chave : consultas) if (t.contains(chave)) encontradas++;
+        } else if (arvore instanceof VPTree) {
+            VPTree t = (VPTree) arvore;
+            for (int chave : consultas) if (t.contains(chave)) encontradas++;
+        } else {
+            TreapTree t = (TreapTree) arvore;
+            for (int chave : consultas) if (t.contains(chave)) encontradas++;
+        }
+        return encontradas;
+    }
+
+    /**
+     * Procura todas as chaves na forma imutável.
+     *
+     * @return o número de chaves encontradas
+     */
+    private static Object pesquisarCongelada(FrozenTree arvore, int[] consultas) {
+        int encontradas = 0;
+        for (int chave : consultas) if (arvore.contains(chave)) encontradas++;
+        return encontradas;
+    }
+}
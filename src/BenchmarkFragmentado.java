@@ -0,0 +1,80 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.StringJoiner;
+
+/**
+ * Experiência da árvore fragmentada por intervalos ({@link ShardedTree}) com
+ * 1, 2, 4, 8... fragmentos, até ao número de processadores disponíveis, nos
+ * conjuntos A a D.
+ *
+ * Os limites dos fragmentos são tirados de uma amostra de 1% do conjunto. Para
+ * cada célula regista o débito agregado, o speedup em relação a um fragmento,
+ * as chaves encaminhadas para cada fragmento e o desequilíbrio (maior carga a
+ * dividir pela carga média).
+ *
+ * @author Guilherme Rosmaninho
+ * @version 1.0
+ */
+public class BenchmarkFragmentado {
+
+    /** Número máximo de chaves da amostra usada para escolher os limites. */
+    static final int TAMANHO_AMOSTRA = 10000;
+
+    /**
+     * Executa a experiência e grava os resultados num ficheiro CSV.
+     *
+     * @throws IOException se não for possível escrever o ficheiro
+     */
+    public static void executar() throws IOException {
+        int[] sizes = {1000000, 5000000};
+        String[] treeTypes = {"AVL", "VP"};
+        String[] labels = {"A", "B", "C", "D"};
+        int[] fragmentos = BenchmarkParalelo.contagensThreads(Runtime.getRuntime().availableProcessors());
+        String fileName = Benchmark.nomeFicheiro("fragmentado");
+
+        try (FileWriter writer = new FileWriter(fileName)) {
+            writer.write("TreeType;Dataset;Size;Time(s);Rotations;Shards;Inserts/s;Speedup;ShardLoads;Imbalance\n");
+
+            for (int size : sizes) {
+                for (String label : labels) {
+                    int[] dataset = GerarChaves.gerar(label, size);
+                    int[] amostra = ShardedTree.amostra(dataset, Math.min(TAMANHO_AMOSTRA, Math.max(1, size / 100)));
+
+                    for (String treeType : treeTypes) {
+                        double base = 0.0;
+                        for (int f : fragmentos) {
+                            ShardedTree[] ultima = new ShardedTree[1];
+                            Benchmark.Resultado r = Benchmark.medir(() -> {
+                                ShardedTree tree = ShardedTree.criar(treeType, f, amostra);
+                                tree.insertAll(dataset);
+                                tree.close();
+                                ultima[0] = tree;
+                                return tree;
+                            });
+                            if (f == 1) base = r.media;
+                            double debito = size / r.media;
+
+                            long[] cargas = ultima[0].cargas();
+                            StringJoiner porFragmento = new StringJoiner("/");
+                            long maximo = 0;
+                            for (long carga : cargas) {
+                                porFragmento.add(Long.toString(carga));
+                                maximo = Math.max(maximo, carga);
+                            }
+                            double desequilibrio = maximo / ((double) size / cargas.length);
+
+                            System.out.printf("  -> SHARD-%s - Conjunto %s (Size: %d, Fragmentos: %d): Tempo = %.4f s, %.0f ins/s, cargas %s%n",
+                                    treeType, label, size, cargas.length, r.media, debito, porFragmento);
+                            writer.write(String.format(Locale.FRANCE, "%s;%s;%d;%.4f;%d;%d;%.0f;%.2f;%s;%.2f\n",
+                                    "SHARD-" + treeType, label, size, r.media, r.rotacoes, cargas.length,
+                                    debito, base / r.media, porFragmento, desequilibrio));
+                        }
+                    }
+                }
+            }
+        }
+
+        System.out.println("\nProcesso terminado. Resultados foram guardados em: " + fileName);
+    }
+}
@@ -0,0 +1,103 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Experiência dos snapshots binários ({@code gravar} e {@code ler}, ver
+ * {@link FormatoArvore}): compara o tempo de reconstruir cada árvore a partir
+ * do array de chaves com o de gravar o snapshot e o de o ler de volta.
+ *
+ * O snapshot é gravado num ficheiro temporário, apagado no fim de cada
+ * célula. As leituras encontram o ficheiro na cache de páginas do sistema,
+ * pelo que medem o custo de refazer os nós e não o do disco.
+ *
+ * @author Guilherme Rosmaninho
+ * @version 1.0
+ */
+public class BenchmarkGravacao {
+
+    /**
+     * Executa a experiência e grava os resultados num ficheiro CSV.
+     *
+     * @throws IOException se não for possível escrever os ficheiros
+     */
+    public static void executar() throws IOException {
+        int[] sizes = {1000000, 5000000};
+        String[] treeTypes = {"AVL", "VP", "TREAP"};
+        String[] labels = {"A", "B", "C", "D"};
+        String fileName = Benchmark.nomeFicheiro("gravacao");
+
+        try (FileWriter writer = new FileWriter(fileName)) {
+            writer.write("TreeType;Dataset;Size;RebuildTime(s);Rotations;WriteTime(s);ReloadTime(s);FileBytes;Bytes/Node;Speedup\n");
+
+            for (int size : sizes) {
+                for (String label : labels) {
+                    int[] dataset = GerarChaves.gerar(label, size);
+
+                    for (String treeType : treeTypes) {
+                        Path ficheiro = Files.createTempFile("arvore-" + treeType + "-", ".bin");
+                        try {
+                            Benchmark.Resultado reconstrucao = Benchmark.medir(() -> Benchmark.criar(treeType, dataset));
+                            Object arvore = Benchmark.criar(treeType, dataset);
+                            Benchmark.Resultado escrita = Benchmark.medir(() -> gravar(arvore, ficheiro));
+                            Benchmark.Resultado leitura = Benchmark.medir(() -> ler(treeType, ficheiro));
+
+                            long bytes = Files.size(ficheiro);
+                            long nos = Math.max(1, Benchmark.chavesDistintas(dataset));
+                            System.out.printf("  -> %s - Conjunto %s (Size: %d): reconstrução = %.4f s, gravação = %.4f s, leitura = %.4f s%n",
+                                    treeType, label, size, reconstrucao.media, escrita.media, leitura.media);
+                            writer.write(String.format(Locale.FRANCE, "%s;%s;%d;%.4f;%d;%.4f;%.4f;%d;%.1f;%.2f\n",
+                                    treeType, label, size, reconstrucao.media, reconstrucao.rotacoes, escrita.media,
+                                    leitura.media, bytes, (double) (bytes - FormatoArvore.CABECALHO) / nos,
+                                    reconstrucao.media / leitura.media));
+                            writer.flush();
+                        } finally {
+                            Files.deleteIfExists(ficheiro);
+                        }
+                    }
+                }
+            }
+        }
+
+        System.out.println("\nProcesso terminado. Resultados foram guardados em: " + fileName);
+    }
+
+    /**
+     * Grava o snapshot de uma árvore.
+     *
+     * @return a árvore gravada
+     */
+    private static Object gravar(Object arvore, Path ficheiro) {
+        try {
+            if (arvore instanceof AVLTree) ((AVLTree) arvore).gravar(ficheiro);
+            else if (arvore instanceof VPTree) ((VPTree) arvore).gravar(ficheiro);
+            else ((TreapTree) arvore).gravar(ficheiro);
+            return arvore;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Lê o snapshot de uma árvore.
+     *
+     * @return a árvore lida
+     */
+    private static Object ler(String treeType, Path ficheiro) {
+        try {
+            switch (treeType) {
+                case "AVL":
+                    return AVLTree.ler(ficheiro);
+                case "VP":
+                    return VPTree.ler(ficheiro);
+                default:
+                    return TreapTree.ler(ficheiro);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
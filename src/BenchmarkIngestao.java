@@ -0,0 +1,123 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.function.IntConsumer;
+
+/**
+ * Experiência de ingestão a partir de um ficheiro de chaves
+ * ({@link FicheiroChaves}): constrói uma árvore com as chaves lidas do
+ * ficheiro por blocos, com a leitura sobreposta à inserção, e regista o
+ * débito, o tempo em que a inserção esperou por blocos e o tempo de leitura.
+ *
+ * Serve para conjuntos maiores do que os gerados em memória, por exemplo:
+ * <pre>
+ *   java Main gerar C 50000000 c50m.bin
+ *   java -Dbench.aquecimento=0 -Dbench.iteracoes=1 Main ingestao AVL c50m.bin
+ * </pre>
+ *
+ * @author Guilherme Rosmaninho
+ * @version 1.0
+ */
+public class BenchmarkIngestao {
+
+    /**
+     * Executa a experiência e grava os resultados num ficheiro CSV.
+     *
+     * @param treeType tipo de árvore (BST, AVL, VP, TREAP ou outro da matriz principal)
+     * @param ficheiro ficheiro de chaves a ingerir
+     * @throws IOException se não for possível ler o ficheiro de chaves ou escrever os resultados
+     */
+    public static void executar(String treeType, Path ficheiro) throws IOException {
+        String fileName = Benchmark.nomeFicheiro("ingestao");
+
+        try (FileWriter writer = new FileWriter(fileName)) {
+            writer.write("TreeType;File;Keys;Time(s);Error(s);Rotations;Keys/s;WaitTime(s);ReadTime(s)\n");
+
+            double[] tempos = new double[Benchmark.ITERACOES];
+            double espera = 0.0, leitura = 0.0;
+            long chaves = 0;
+            int rotacoes = 0;
+
+            for (int i = -Benchmark.AQUECIMENTO; i < Benchmark.ITERACOES; i++) {
+                Object[] arvore = new Object[1];
+                IntConsumer insercao = novaArvore(treeType, arvore);
+                System.gc();
+                FicheiroChaves.Estatisticas e = FicheiroChaves.inserir(ficheiro, insercao);
+                if (i < 0) continue;
+
+                tempos[i] = e.tempoTotal / 1e9;
+                espera += e.tempoEspera / 1e9;
+                leitura += e.tempoLeitura / 1e9;
+                chaves = e.chaves;
+                rotacoes = Benchmark.rotacoes(arvore[0]);
+            }
+
+            Benchmark.Resultado r = new Benchmark.Resultado();
+            r.estatisticas(tempos);
+            r.rotacoes = rotacoes;
+            System.out.printf("  -> %s - %s (Chaves: %d): Tempo = %.4f ± %.4f s, %.0f chaves/s, espera = %.4f s%n",
+                    treeType, ficheiro.getFileName(), chaves, r.media, r.erro, chaves / r.media,
+                    espera / Benchmark.ITERACOES);
+            writer.write(String.format(Locale.FRANCE, "%s;%s;%d;%.4f;%.4f;%d;%.0f;%.4f;%.4f\n",
+                    treeType, ficheiro.getFileName(), chaves, r.media, r.erro, r.rotacoes, chaves / r.media,
+                    espera / Benchmark.ITERACOES, leitura / Benchmark.ITERACOES));
+        }
+
+        System.out.println("\nProcesso terminado. Resultados foram guardados em: " + fileName);
+    }
+
+    /**
+     * Cria uma árvore vazia e devolve a sua inserção.
+     *
+     * @param treeType tipo de árvore
+     * @param arvore array onde é colocada a árvore criada
+     * @return a inserção da árvore
+     */
+    private static IntConsumer novaArvore(String treeType, Object[] arvore) {
+        switch (treeType) {
+            case "BST": {
+                BinaryTree t = new BinaryTree();
+                arvore[0] = t;
+                return t::inserir;
+            }
+            case "AVL": {
+                AVLTree t = new AVLTree();
+                arvore[0] = t;
+                return t::insert;
+            }
+            case "VP": {
+                VPTree t = new VPTree();
+                arvore[0] = t;
+                return t::insert;
+            }
+            case "TREAP": {
+                TreapTree t = new TreapTree();
+                arvore[0] = t;
+                return t::insert;
+            }
+            case "BTREE": {
+                BTree t = new BTree();
+                arvore[0] = t;
+                return t::insert;
+            }
+            case "ART": {
+                ARTree t = new ARTree();
+                arvore[0] = t;
+                return t::insert;
+            }
+            case "SPLAY": {
+                SplayTree t = new SplayTree();
+                arvore[0] = t;
+                return t::insert;
+            }
+            case "SCAPEGOAT": {
+                ScapegoatTree t = new ScapegoatTree();
+                arvore[0] = t;
+                return t::insert;
+            }
+            default:
+                throw new IllegalArgumentException("Tipo de árvore desconhecido: " + treeType);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Experiência que compara a inserção de um lote de chaves numa Treap já
+ * existente através de {@link TreapTree#insertAll(int[])} (construção do lote
+ * e união) com a inserção repetida através de {@link TreapTree#insert(int)}.
+ *
+ * A treap base é reconstruída fora da medição em cada iteração, porque as
+ * duas operações a modificam.
+ *
+ * @author Guilherme Rosmaninho
+ * @version 1.0
+ */
+public class BenchmarkLote {
+
+    /**
+     * Executa a experiência e grava os resultados num ficheiro CSV.
+     *
+     * @throws IOException se não for possível escrever o ficheiro
+     */
+    public static void executar() throws IOException {
+        int baseSize = 1000000;
+        int[] batchSizes = {10000, 100000, 1000000};
+        String fileName = Benchmark.nomeFicheiro("lote");
+
+        try (FileWriter writer = new FileWriter(fileName)) {
+            writer.write("TreeType;Dataset;Size;Time(s);Rotations;BatchSize;Keys/s\n");
+
+            for (int batchSize : batchSizes) {
+                // Base e lote disjuntos, retirados da mesma permutação aleatória
+                int[] todas = GerarChaves.generateC(baseSize + batchSize);
+                int[] base = Arrays.copyOfRange(todas, 0, baseSize);
+                int[] lote = Arrays.copyOfRange(todas, baseSize, todas.length);
+                Arrays.sort(base);
+
+                for (String modo : new String[]{"TREAP-INSERT", "TREAP-BATCH"}) {
+                    Temporizador temporizador = new Temporizador();
+                    double[] tempos = new double[Benchmark.ITERACOES];
+                    int rotacoes = 0;
+
+                    for (int i = -Benchmark.AQUECIMENTO; i < Benchmark.ITERACOES; i++) {
+                        TreapTree treap = TreapTree.fromSorted(base);
+                        System.gc();
+                        temporizador.inicio();
+                        if (modo.equals("TREAP-BATCH")) {
+                            treap.insertAll(lote);
+                        } else {
+                            for (int key : lote) treap.insert(key);
+                        }
+                        double tempo = temporizador.fim();
+                        if (i >= 0) tempos[i] = tempo;
+                        rotacoes = treap.rotacoes;
+                    }
+
+                    Benchmark.Resultado r = new Benchmark.Resultado();
+                    r.estatisticas(tempos);
+                    double debito = batchSize / r.media;
+                    System.out.printf("  -> %s (Base: %d, Lote: %d): Tempo = %.4f s, %.0f chaves/s%n",
+                            modo, baseSize, batchSize, r.media, debito);
+                    writer.write(String.format(Locale.FRANCE, "%s;%s;%d;%.4f;%d;%d;%.0f\n",
+                            modo, "C", baseSize, r.media, rotacoes, batchSize, debito));
+                }
+            }
+        }
+
+        System.out.println("\nProcesso terminado. Resultados foram guardados em: " + fileName);
+    }
+}
@@ -0,0 +1,142 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+/**
+ * Experiência sobre as estatísticas de ordem ({@code comTamanhos()}): compara o
+ * tempo de inserção com e sem a manutenção do tamanho das subárvores e o
+ * custo de {@code countRange}, {@code rank} e {@code select} com o de contar as
+ * chaves de um intervalo percorrendo-as com {@code range}.
+ *
+ * Os tempos das consultas são dados por consulta, em nanossegundos. Como um
+ * percurso visita em média um terço das chaves, são feitas menos consultas
+ * por percurso do que por contagem.
+ *
+ * @author Guilherme Rosmaninho
+ * @version 1.0
+ */
+public class BenchmarkOrdem {
+
+    /** Número de consultas de cada iteração de contagem, rank e select. */
+    static final int CONSULTAS = 100000;
+
+    /** Número de consultas de cada iteração de contagem por percurso. */
+    static final int CONSULTAS_PERCURSO = 100;
+
+    /**
+     * Executa a experiência e grava os resultados num ficheiro CSV.
+     *
+     * @throws IOException se não for possível escrever o ficheiro
+     */
+    public static void executar() throws IOException {
+        int[] sizes = {100000, 1000000, 5000000};
+        String[] treeTypes = {"AVL", "VP", "TREAP"};
+        String fileName = Benchmark.nomeFicheiro("ordem");
+
+        try (FileWriter writer = new FileWriter(fileName)) {
+            writer.write("TreeType;Dataset;Size;Time(s);TimeWithSizes(s);Overhead(%);"
+                    + "CountRange(ns);Rank(ns);Select(ns);ScanCount(ns);Speedup\n");
+
+            for (int size : sizes) {
+                int[] dataset = GerarChaves.generateC(size);
+                int[] de = new int[CONSULTAS], ate = new int[CONSULTAS];
+                SplittableRandom aleatorio = new SplittableRandom(GerarChaves.SEMENTE);
+                for (int i = 0; i < CONSULTAS; i++) {
+                    int a = 1 + aleatorio.nextInt(size), b = 1 + aleatorio.nextInt(size);
+                    de[i] = Math.min(a, b);
+                    ate[i] = Math.max(a, b);
+                }
+
+                for (String treeType : treeTypes) {
+                    Benchmark.Resultado simples = Benchmark.medir(() -> Benchmark.criar(treeType, dataset));
+                    Benchmark.Resultado comTamanhos = Benchmark.medir(() -> Benchmark.criar(treeType + "-RANK", dataset));
+                    double sobrecarga = 100.0 * (comTamanhos.media / simples.media - 1.0);
+
+                    Object arvore = Benchmark.criar(treeType + "-RANK", dataset);
+                    double contagem = porConsulta(Benchmark.medir(() -> contar(arvore, de, ate, CONSULTAS)), CONSULTAS);
+                    double rank = porConsulta(Benchmark.medir(() -> classificar(arvore, de)), CONSULTAS);
+                    double select = porConsulta(Benchmark.medir(() -> selecionar(arvore, de)), CONSULTAS);
+                    double percurso = porConsulta(Benchmark.medir(() -> percorrer(arvore, de, ate)), CONSULTAS_PERCURSO);
+
+                    System.out.printf("  -> %s (Size: %d): inserção %+.1f%%, countRange = %.0f ns, percurso = %.0f ns%n",
+                            treeType, size, sobrecarga, contagem, percurso);
+                    writer.write(String.format(Locale.FRANCE, "%s;%s;%d;%.4f;%.4f;%.1f;%.0f;%.0f;%.0f;%.0f;%.0f\n",
+                            treeType, "C", size, simples.media, comTamanhos.media, sobrecarga,
+                            contagem, rank, select, percurso, percurso / contagem));
+                    writer.flush();
+                }
+            }
+        }
+
+        System.out.println("\nProcesso terminado. Resultados foram guardados em: " + fileName);
+    }
+
+    /**
+     * Converte o tempo médio de uma iteração em nanossegundos por consulta.
+     */
+    private static double porConsulta(Benchmark.Resultado r, int consultas) {
+        return r.media * 1e9 / consultas;
+    }
+
+    /**
+     * Conta as chaves de cada intervalo com {@code countRange}.
+     *
+     * @return a soma das contagens
+     */
+    private static Object contar(Object arvore, int[] de, int[] ate, int consultas) {
+        long total = 0;
+        for (int i = 0; i < consultas; i++) {
+            if (arvore instanceof AVLTree) total += ((AVLTree) arvore).countRange(de[i], ate[i]);
+            else if (arvore instanceof VPTree) total += ((VPTree) arvore).countRange(de[i], ate[i]);
+            else total += ((TreapTree) arvore).countRange(de[i], ate[i]);
+        }
+        return total;
+    }
+
+    /**
+     * Calcula o rank de cada chave com {@code rank}.
+     *
+     * @return a soma dos ranks
+     */
+    private static Object classificar(Object arvore, int[] chaves) {
+        long total = 0;
+        for (int chave : chaves) {
+            if (arvore instanceof AVLTree) total += ((AVLTree) arvore).rank(chave);
+            else if (arvore instanceof VPTree) total += ((VPTree) arvore).rank(chave);
+            else total += ((TreapTree) arvore).rank(chave);
+        }
+        return total;
+    }
+
+    /**
+     * Obtém com {@code select} a chave em cada posição (as chaves são usadas
+     * como posições, dentro do tamanho da árvore).
+     *
+     * @return a soma das chaves obtidas
+     */
+    private static Object selecionar(Object arvore, int[] posicoes) {
+        long total = 0;
+        for (int posicao : posicoes) {
+            if (arvore instanceof AVLTree) total += ((AVLTree) arvore).select(posicao - 1);
+            else if (arvore instanceof VPTree) total += ((VPTree) arvore).select(posicao - 1);
+            else total += ((TreapTree) arvore).select(posicao - 1);
+        }
+        return total;
+    }
+
+    /**
+     * Conta as chaves dos primeiros intervalos percorrendo-as com {@code range}.
+     *
+     * @return a soma das contagens
+     */
+    private static Object percorrer(Object arvore, int[] de, int[] ate) {
+        long total = 0;
+        for (int i = 0; i < CONSULTAS_PERCURSO; i++) {
+            if (arvore instanceof AVLTree) total += ((AVLTree) arvore).range(de[i], ate[i], chave -> { });
+            else if (arvore instanceof VPTree) total += ((VPTree) arvore).range(de[i], ate[i], chave -> { });
+            else total += ((TreapTree) arvore).range(de[i], ate[i], chave -> { });
+        }
+        return total;
+    }
+}
@@ -0,0 +1,109 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Experiência de escalabilidade da construção paralela das árvores AVL, VP
+ * e Treap ({@code carregarParalelo}) com 1, 2, 4, 8... threads, até ao número
+ * de processadores disponíveis.
+ *
+ * Para referência, cada célula inclui também a inserção sequencial chave a
+ * chave. O speedup é calculado em relação à construção paralela com uma thread.
+ *
+ * @author Guilherme Rosmaninho
+ * @version 1.0
+ */
+public class BenchmarkParalelo {
+
+    /**
+     * Executa a experiência e grava os resultados num ficheiro CSV.
+     *
+     * @throws IOException se não for possível escrever o ficheiro
+     */
+    public static void executar() throws IOException {
+        int[] sizes = {1000000, 5000000};
+        String[] treeTypes = {"AVL", "VP", "TREAP"};
+        String[] labels = {"A", "B", "C", "D"};
+        int[] threads = contagensThreads(Runtime.getRuntime().availableProcessors());
+        String fileName = Benchmark.nomeFicheiro("paralelo");
+
+        try (FileWriter writer = new FileWriter(fileName)) {
+            writer.write("TreeType;Dataset;Size;Time(s);Rotations;Threads;Speedup\n");
+
+            for (int size : sizes) {
+                for (String label : labels) {
+                    int[] dataset = GerarChaves.gerar(label, size);
+
+                    for (String treeType : treeTypes) {
+                        Benchmark.Resultado seq = Benchmark.medir(treeType, dataset);
+                        escrever(writer, treeType, label, size, seq, 1, Double.NaN);
+
+                        double base = 0.0;
+                        for (int t : threads) {
+                            ForkJoinPool pool = new ForkJoinPool(t);
+                            try {
+                                Benchmark.Resultado r = Benchmark.medir(() -> construir(treeType, dataset, pool));
+                                if (t == 1) base = r.media;
+                                escrever(writer, treeType + "-PAR", label, size, r, t, base / r.media);
+                            } finally {
+                                pool.shutdown();
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        System.out.println("\nProcesso terminado. Resultados foram guardados em: " + fileName);
+    }
+
+    /**
+     * Constrói em paralelo uma árvore do tipo indicado.
+     *
+     * @param treeType tipo de árvore (AVL, VP ou TREAP)
+     * @param dataset chaves a carregar
+     * @param pool pool onde corre a construção
+     * @return a árvore construída
+     */
+    static Object construir(String treeType, int[] dataset, ForkJoinPool pool) {
+        switch (treeType) {
+            case "AVL":
+                return AVLTree.carregarParalelo(dataset, pool);
+            case "VP":
+                return VPTree.carregarParalelo(dataset, pool);
+            case "TREAP":
+                return TreapTree.carregarParalelo(dataset, pool);
+            default:
+                throw new IllegalArgumentException("Tipo de árvore sem construção paralela: " + treeType);
+        }
+    }
+
+    /**
+     * Gera as contagens de threads 1, 2, 4, 8... até ao máximo indicado,
+     * incluindo sempre o próprio máximo.
+     *
+     * @param maximo número máximo de threads
+     * @return contagens de threads por ordem crescente
+     */
+    static int[] contagensThreads(int maximo) {
+        int n = 0;
+        for (int t = 1; t < maximo; t *= 2) n++;
+        int[] contagens = new int[n + 1];
+        int i = 0;
+        for (int t = 1; t < maximo; t *= 2) contagens[i++] = t;
+        contagens[i] = maximo;
+        return contagens;
+    }
+
+    /**
+     * Escreve uma linha de resultados no CSV e na consola.
+     */
+    private static void escrever(FileWriter writer, String treeType, String label, int size,
+                                 Benchmark.Resultado r, int threads, double speedup) throws IOException {
+        System.out.printf("  -> %s - Conjunto %s (Size: %d, Threads: %d): Tempo = %.4f s%n",
+                treeType, label, size, threads, r.media);
+        writer.write(String.format(Locale.FRANCE, "%s;%s;%d;%.4f;%d;%d;%.2f\n",
+                treeType, label, size, r.media, r.rotacoes, threads, speedup));
+    }
+}
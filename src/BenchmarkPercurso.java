@@ -0,0 +1,128 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.StreamSupport;
+
+/**
+ * Experiência dos percursos em ordem: soma todas as chaves de cada árvore
+ * copiando-as primeiro para um {@code int[]} (com o {@code range}), com o
+ * cursor sem alocações, com o spliterator num stream sequencial e com o
+ * spliterator num stream paralelo, para cada número de threads.
+ *
+ * A soma é só a agregação mais simples: o que se mede é o custo de percorrer
+ * a árvore. O speedup é em relação à cópia para um array.
+ *
+ * @author Guilherme Rosmaninho
+ * @version 1.0
+ */
+public class BenchmarkPercurso {
+
+    /**
+     * Executa a experiência e grava os resultados num ficheiro CSV.
+     *
+     * @throws IOException se não for possível escrever o ficheiro
+     */
+    public static void executar() throws IOException {
+        int[] sizes = {100000, 1000000, 5000000};
+        String[] treeTypes = {"BST", "AVL", "VP", "TREAP"};
+        String[] labels = {"A", "B", "C", "D"};
+        int[] threads = BenchmarkParalelo.contagensThreads(Runtime.getRuntime().availableProcessors());
+        String fileName = Benchmark.nomeFicheiro("percurso");
+
+        try (FileWriter writer = new FileWriter(fileName)) {
+            writer.write("TreeType;Dataset;Size;Mode;Threads;Time(s);Error(s);Keys/s;Speedup\n");
+
+            for (int size : sizes) {
+                for (String label : labels) {
+                    int[] dataset = GerarChaves.gerar(label, size);
+                    long chaves = Benchmark.chavesDistintas(dataset);
+
+                    for (String treeType : treeTypes) {
+                        if (!Main.celulaAtiva(treeType, size)) continue;
+                        Object arvore = Benchmark.criar(treeType, dataset);
+
+                        Benchmark.Resultado copia = Benchmark.medir(() -> somarCopia(arvore));
+                        escrever(writer, treeType, label, size, "COPIA", 1, copia, chaves, copia.media);
+                        Benchmark.Resultado cursor = Benchmark.medir(() -> somarCursor(arvore));
+                        escrever(writer, treeType, label, size, "CURSOR", 1, cursor, chaves, copia.media);
+                        Benchmark.Resultado stream = Benchmark.medir(
+                                () -> StreamSupport.intStream(spliterator(arvore), false).asLongStream().sum());
+                        escrever(writer, treeType, label, size, "STREAM", 1, stream, chaves, copia.media);
+
+                        for (int t : threads) {
+                            ForkJoinPool pool = new ForkJoinPool(t);
+                            try {
+                                Benchmark.Resultado r = Benchmark.medir(() -> pool.submit(
+                                        () -> StreamSupport.intStream(spliterator(arvore), true).asLongStream().sum()).join());
+                                escrever(writer, treeType, label, size, "PARALELO", t, r, chaves, copia.media);
+                            } finally {
+                                pool.shutdown();
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        System.out.println("\nProcesso terminado. Resultados foram guardados em: " + fileName);
+    }
+
+    /**
+     * Escreve uma linha de resultados no CSV e na consola.
+     */
+    private static void escrever(FileWriter writer, String treeType, String label, int size, String modo, int threads,
+                                 Benchmark.Resultado r, long chaves, double base) throws IOException {
+        System.out.printf("  -> %s %s - Conjunto %s (Size: %d, Threads: %d): Tempo = %.4f s%n",
+                treeType, modo, label, size, threads, r.media);
+        writer.write(String.format(Locale.FRANCE, "%s;%s;%d;%s;%d;%.4f;%.4f;%.0f;%.2f\n",
+                treeType, label, size, modo, threads, r.media, r.erro, chaves / r.media, base / r.media));
+        writer.flush();
+    }
+
+    /**
+     * Copia as chaves da árvore para um array e soma-as.
+     *
+     * @return a soma das chaves
+     */
+    private static long somarCopia(Object arvore) {
+        FrozenTree.Recolha recolha = new FrozenTree.Recolha();
+        if (arvore instanceof BinaryTree) ((BinaryTree) arvore).intervalo(Integer.MIN_VALUE, Integer.MAX_VALUE, recolha);
+        else if (arvore instanceof AVLTree) ((AVLTree) arvore).range(Integer.MIN_VALUE, Integer.MAX_VALUE, recolha);
+        else if (arvore instanceof VPTree) ((VPTree) arvore).range(Integer.MIN_VALUE, Integer.MAX_VALUE, recolha);
+        else ((TreapTree) arvore).range(Integer.MIN_VALUE, Integer.MAX_VALUE, recolha);
+
+        long soma = 0;
+        for (int chave : recolha.chaves()) soma += chave;
+        return soma;
+    }
+
+    /**
+     * Soma as chaves da árvore com o cursor.
+     *
+     * @return a soma das chaves
+     */
+    private static long somarCursor(Object arvore) {
+        PrimitiveIterator.OfInt cursor;
+        if (arvore instanceof BinaryTree) cursor = ((BinaryTree) arvore).cursor();
+        else if (arvore instanceof AVLTree) cursor = ((AVLTree) arvore).cursor();
+        else if (arvore instanceof VPTree) cursor = ((VPTree) arvore).cursor();
+        else cursor = ((TreapTree) arvore).cursor();
+
+        long soma = 0;
+        while (cursor.hasNext()) soma += cursor.nextInt();
+        return soma;
+    }
+
+    /**
+     * Devolve o spliterator das chaves da árvore.
+     */
+    private static Spliterator.OfInt spliterator(Object arvore) {
+        if (arvore instanceof BinaryTree) return ((BinaryTree) arvore).spliterator();
+        if (arvore instanceof AVLTree) return ((AVLTree) arvore).spliterator();
+        if (arvore instanceof VPTree) return ((VPTree) arvore).spliterator();
+        return ((TreapTree) arvore).spliterator();
+    }
+}
@@ -0,0 +1,109 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Experiência do modo persistente da {@link AVLTree} ({@link AVLTree#persistente()}).
+ *
+ * A primeira parte compara a inserção com cópia do caminho com a inserção que
+ * altera os nós, com as colunas habituais de {@link Benchmark} (tempo, bytes
+ * alocados por inserção, memória retida). A segunda mede leitores concorrentes:
+ * com metade das chaves já inseridas, uma thread insere a outra metade
+ * enquanto 0, 1, 2, 4... leitores percorrem snapshots completos, e regista o
+ * débito do escritor e o número de chaves lidas por segundo.
+ *
+ * @author Guilherme Rosmaninho
+ * @version 1.0
+ */
+public class BenchmarkPersistente {
+
+    /**
+     * Executa a experiência e grava os resultados em dois ficheiros CSV.
+     *
+     * @throws IOException se não for possível escrever os ficheiros
+     */
+    public static void executar() throws IOException {
+        Benchmark.executarMatriz("persistente", new String[]{"AVL", "AVL-PERS"},
+                new int[]{100000, 1000000, 5000000});
+
+        int[] sizes = {1000000, 5000000};
+        int[] leitores = BenchmarkParalelo.contagensThreads(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+        String fileName = Benchmark.nomeFicheiro("snapshots");
+
+        try (FileWriter writer = new FileWriter(fileName)) {
+            writer.write("TreeType;Dataset;Size;Readers;WriterTime(s);Inserts/s;Snapshots;ReadKeys/s\n");
+
+            for (int size : sizes) {
+                int[] dataset = GerarChaves.generateC(size);
+                medirLeitores(writer, dataset, 0);
+                for (int r : leitores) medirLeitores(writer, dataset, r);
+            }
+        }
+
+        System.out.println("\nProcesso terminado. Resultados foram guardados em: " + fileName);
+    }
+
+    /**
+     * Mede o escritor e um número de leitores de snapshots e escreve a linha de resultados.
+     */
+    private static void medirLeitores(FileWriter writer, int[] dataset, int leitores) throws IOException {
+        int metade = dataset.length / 2;
+        Temporizador temporizador = new Temporizador();
+        double tempoTotal = 0.0, leiturasPorSegundo = 0.0;
+        long snapshotsTotal = 0;
+
+        for (int i = -Benchmark.AQUECIMENTO; i < Benchmark.ITERACOES; i++) {
+            AVLTree tree = new AVLTree().persistente();
+            for (int k = 0; k < metade; k++) tree.insert(dataset[k]);
+
+            LongAdder chavesLidas = new LongAdder(), snapshots = new LongAdder();
+            AtomicBoolean terminado = new AtomicBoolean();
+            Thread[] threads = new Thread[leitores];
+            for (int t = 0; t < leitores; t++) {
+                threads[t] = new Thread(() -> {
+                    while (!terminado.get()) {
+                        long lidas = 0;
+                        for (PrimitiveIterator.OfInt it = tree.snapshot().iterator(); it.hasNext(); it.nextInt()) lidas++;
+                        chavesLidas.add(lidas);
+                        snapshots.increment();
+                    }
+                });
+            }
+            System.gc();
+
+            for (Thread thread : threads) thread.start();
+            temporizador.inicio();
+            for (int k = metade; k < dataset.length; k++) tree.insert(dataset[k]);
+            double tempo = temporizador.fim();
+            terminado.set(true);
+            for (Thread thread : threads) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Espera pelos leitores interrompida", e);
+                }
+            }
+
+            if (i >= 0) {
+                tempoTotal += tempo;
+                leiturasPorSegundo += chavesLidas.sum() / tempo;
+                snapshotsTotal += snapshots.sum();
+            }
+        }
+
+        double tempo = tempoTotal / Benchmark.ITERACOES;
+        double debito = (dataset.length - metade) / tempo;
+        double leituras = leiturasPorSegundo / Benchmark.ITERACOES;
+        long snapshots = snapshotsTotal / Benchmark.ITERACOES;
+
+        System.out.printf("  -> AVL-PERS (Size: %d, Leitores: %d): Tempo = %.4f s, %.0f ins/s, %.0f chaves lidas/s%n",
+                dataset.length, leitores, tempo, debito, leituras);
+        writer.write(String.format(Locale.FRANCE, "%s;%s;%d;%d;%.4f;%.0f;%d;%.0f\n",
+                "AVL-PERS", "C", dataset.length, leitores, tempo, debito, snapshots, leituras));
+        writer.flush();
+    }
+}
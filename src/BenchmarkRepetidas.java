@@ -0,0 +1,125 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+/**
+ * Experiência do {@link FiltroRepetidas}: compara a construção das árvores sem
+ * filtro, com o filtro de repetidas e no modo multiconjunto, no conjunto D
+ * (90% de repetições da chave 1) e no conjunto C (sem repetições), onde mede
+ * o custo do filtro quando não há nada a evitar.
+ *
+ * Para cada modo regista o débito, o número de descidas feitas na árvore e as
+ * que a cache evitou, e o speedup em relação à árvore sem filtro.
+ *
+ * @author Guilherme Rosmaninho
+ * @version 1.0
+ */
+public class BenchmarkRepetidas {
+
+    /** Modos de inserção: sem filtro, com filtro e multiconjunto. */
+    private static final String[] MODOS = {"DIRETO", "FILTRO", "MULTI"};
+
+    /**
+     * Executa a experiência e grava os resultados num ficheiro CSV.
+     *
+     * @throws IOException se não for possível escrever o ficheiro
+     */
+    public static void executar() throws IOException {
+        int[] sizes = {1000000, 5000000};
+        String[] treeTypes = {"AVL", "VP", "TREAP"};
+        String[] labels = {"D", "C"};
+        String fileName = Benchmark.nomeFicheiro("repetidas");
+
+        try (FileWriter writer = new FileWriter(fileName)) {
+            writer.write("TreeType;Dataset;Size;Mode;Time(s);Error(s);Inserts/s;Descents;DescentsAvoided;Avoided(%);Speedup\n");
+
+            for (int size : sizes) {
+                for (String label : labels) {
+                    int[] dataset = GerarChaves.gerar(label, size);
+
+                    for (String treeType : treeTypes) {
+                        double base = 0.0;
+                        for (String modo : MODOS) {
+                            Benchmark.Resultado r = Benchmark.medir(() -> construir(treeType, modo, dataset).arvore);
+                            if (modo.equals("DIRETO")) base = r.media;
+
+                            // Contadores numa construção à parte, fora das iterações medidas
+                            Construcao c = construir(treeType, modo, dataset);
+                            long descidas = c.filtro == null ? dataset.length : c.filtro.descidas;
+                            long evitadas = c.filtro == null ? 0 : c.filtro.descidasEvitadas;
+
+                            System.out.printf("  -> %s %s - Conjunto %s (Size: %d): Tempo = %.4f s, descidas evitadas = %d%n",
+                                    treeType, modo, label, size, r.media, evitadas);
+                            writer.write(String.format(Locale.FRANCE, "%s;%s;%d;%s;%.4f;%.4f;%.0f;%d;%d;%.1f;%.2f\n",
+                                    treeType, label, size, modo, r.media, r.erro, size / r.media, descidas, evitadas,
+                                    100.0 * evitadas / size, base / r.media));
+                            writer.flush();
+                        }
+                    }
+                }
+            }
+        }
+
+        System.out.println("\nProcesso terminado. Resultados foram guardados em: " + fileName);
+    }
+
+    /**
+     * Árvore construída e o filtro usado (ou {@code null} sem filtro).
+     */
+    private static final class Construcao {
+        final Object arvore;
+        final FiltroRepetidas filtro;
+
+        Construcao(Object arvore, FiltroRepetidas filtro) {
+            this.arvore = arvore;
+            this.filtro = filtro;
+        }
+    }
+
+    /**
+     * Constrói uma árvore inserindo o conjunto no modo indicado.
+     *
+     * @param treeType tipo de árvore (AVL, VP ou TREAP)
+     * @param modo DIRETO, FILTRO ou MULTI
+     * @param dataset chaves a inserir
+     * @return a árvore e o filtro usado
+     */
+    private static Construcao construir(String treeType, String modo, int[] dataset) {
+        Object arvore;
+        IntConsumer insercao;
+        IntPredicate pesquisa;
+        switch (treeType) {
+            case "AVL": {
+                AVLTree t = new AVLTree();
+                arvore = t;
+                insercao = t::insert;
+                pesquisa = t::contains;
+                break;
+            }
+            case "VP": {
+                VPTree t = new VPTree();
+                arvore = t;
+                insercao = t::insert;
+                pesquisa = t::contains;
+                break;
+            }
+            case "TREAP": {
+                TreapTree t = new TreapTree();
+                arvore = t;
+                insercao = t::insert;
+                pesquisa = t::contains;
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Tipo de árvore desconhecido: " + treeType);
+        }
+
+        FiltroRepetidas filtro = modo.equals("FILTRO") ? new FiltroRepetidas(insercao)
+                : modo.equals("MULTI") ? FiltroRepetidas.multiconjunto(insercao, pesquisa) : null;
+        IntConsumer destino = filtro != null ? filtro : insercao;
+        for (int key : dataset) destino.accept(key);
+        return new Construcao(arvore, filtro);
+    }
+}
@@ -1,3 +1,13 @@
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
 /**
  * Implementação de uma Árvore Binária (BST) com inserção iterativa.
  * Esta classe permite a inserção de chaves inteiras numa árvore binária,
@@ -11,6 +21,32 @@ public class BinaryTree {
     /** Raiz da árvore binária */
     private Node root;
 
+    /** Número total de comparações de chaves feitas nas descidas das inserções */
+    public long comparacoes = 0;
+
+    /**
+     * Número de níveis guardados no dedo (potência de 2). O dedo é circular:
+     * o nível {@code i} fica na posição {@code i % NIVEIS_DEDO}, pelo que só
+     * os últimos níveis do caminho são guardados e uma árvore degenerada não
+     * obriga a guardar a espinha inteira.
+     */
+    private static final int NIVEIS_DEDO = 64;
+
+    /** Dedo: fim do caminho da raiz até à última chave inserida por {@link #inserirFinger(int)} */
+    private final Node[] dedo = new Node[NIVEIS_DEDO];
+
+    /** Intervalo aberto de chaves que cabe na subárvore de cada nó do dedo */
+    private final long[] dedoInf = new long[NIVEIS_DEDO], dedoSup = new long[NIVEIS_DEDO];
+
+    /** Profundidade da última chave inserida pelo dedo; 0 quando outra inserção o invalidou */
+    private int tamanhoDedo = 0;
+
+    /**
+     * Altura da árvore: sem rotações nem remoções, é a maior profundidade a
+     * que uma inserção já pôs um nó. Dimensiona as pilhas dos percursos.
+     */
+    private int alturaAtual = 0;
+
     /**
      * Insere uma nova chave na árvore binária.
      * A inserção é feita de forma iterativa.
@@ -18,9 +54,83 @@ public class BinaryTree {
      * @param chave valor inteiro a ser inserido
      */
     public void inserir(int chave) {
+        tamanhoDedo = 0;
         root = inserirIter(root, chave);
     }
 
+    /**
+     * Insere uma nova chave partindo da posição da última inserção (finger search).
+     *
+     * Sobe pelo dedo até à subárvore mais funda cujo intervalo de chaves contém
+     * a nova chave e desce a partir daí. Em sequências crescentes ou
+     * decrescentes a nova chave fica logo abaixo do último nó, pelo que a
+     * inserção deixa de ser linear na altura da árvore degenerada. Se a chave
+     * não couber em nenhum dos níveis guardados no dedo, desce desde a raiz.
+     *
+     * @param chave valor inteiro a ser inserido
+     */
+    public void inserirFinger(int chave) {
+        if (root == null) {
+            root = new Node(chave);
+            alturaAtual = 1;
+            tamanhoDedo = empilharDedo(0, root, Long.MIN_VALUE, Long.MAX_VALUE);
+            return;
+        }
+
+        // Sobe pelos níveis guardados; se nenhum servir, recomeça na raiz
+        int nivel = tamanhoDedo - 1, primeiro = Math.max(0, tamanhoDedo - NIVEIS_DEDO);
+        while (nivel >= primeiro && (chave <= dedoInf[nivel & (NIVEIS_DEDO - 1)] || chave >= dedoSup[nivel & (NIVEIS_DEDO - 1)])) nivel--;
+        if (nivel < primeiro) nivel = empilharDedo(0, root, Long.MIN_VALUE, Long.MAX_VALUE) - 1;
+
+        int posicao = nivel & (NIVEIS_DEDO - 1);
+        Node atual = dedo[posicao];
+        long inf = dedoInf[posicao], sup = dedoSup[posicao];
+        while (true) {
+            comparacoes++;
+            if (chave < atual.chave) {
+                if (atual.esquerda == null) {
+                    atual.esquerda = new Node(chave);
+                    tamanhoDedo = empilharDedo(nivel + 1, atual.esquerda, inf, atual.chave);
+                    alturaAtual = Math.max(alturaAtual, tamanhoDedo);
+                    return;
+                }
+                sup = atual.chave;
+                atual = atual.esquerda;
+            } else if (chave > atual.chave) {
+                if (atual.direita == null) {
+                    atual.direita = new Node(chave);
+                    tamanhoDedo = empilharDedo(nivel + 1, atual.direita, atual.chave, sup);
+                    alturaAtual = Math.max(alturaAtual, tamanhoDedo);
+                    return;
+                }
+                inf = atual.chave;
+                atual = atual.direita;
+            } else {
+                tamanhoDedo = nivel + 1;
+                return;
+            }
+            nivel = empilharDedo(nivel + 1, atual, inf, sup) - 1;
+        }
+    }
+
+    /**
+     * Regista um nó num nível do dedo, por cima do nível que está
+     * {@link #NIVEIS_DEDO} níveis acima dele.
+     *
+     * @param nivel nível a escrever
+     * @param node nó a registar
+     * @param inf limite inferior (exclusivo) das chaves da subárvore
+     * @param sup limite superior (exclusivo) das chaves da subárvore
+     * @return o número de níveis após o registo
+     */
+    private int empilharDedo(int nivel, Node node, long inf, long sup) {
+        int posicao = nivel & (NIVEIS_DEDO - 1);
+        dedo[posicao] = node;
+        dedoInf[posicao] = inf;
+        dedoSup[posicao] = sup;
+        return nivel + 1;
+    }
+
     /**
      * Método auxiliar que realiza a inserção iterativa de um nó na árvore.
      *
@@ -31,24 +141,30 @@ public class BinaryTree {
     private Node inserirIter(Node root, int chave) {
         Node newNode = new Node(chave);
         if (root == null) {
+            alturaAtual = 1;
             return newNode;
         }
 
         Node atual = root;
         Node parente = null;
+        int profundidade = 1;
 
         while (true) {
+            comparacoes++;
             parente = atual;
+            profundidade++;
             if (chave < atual.chave) {
                 atual = atual.esquerda;
                 if (atual == null) {
                     parente.esquerda = newNode;
+                    alturaAtual = Math.max(alturaAtual, profundidade);
                     return root;
                 }
             } else if (chave > atual.chave) {
                 atual = atual.direita;
                 if (atual == null) {
                     parente.direita = newNode;
+                    alturaAtual = Math.max(alturaAtual, profundidade);
                     return root;
                 }
             } else {
@@ -57,6 +173,181 @@ public class BinaryTree {
         }
     }
 
+    /**
+     * Verifica se uma chave existe na árvore.
+     *
+     * @param chave chave a procurar
+     * @return true se a chave existir, false caso contrário
+     */
+    public boolean contem(int chave) {
+        Node atual = root;
+        while (atual != null) {
+            if (chave < atual.chave) atual = atual.esquerda;
+            else if (chave > atual.chave) atual = atual.direita;
+            else return true;
+        }
+        return false;
+    }
+
+    /**
+     * Devolve a maior chave da árvore menor ou igual à indicada.
+     *
+     * @param chave chave de referência
+     * @return a chave encontrada, ou {@code null} se não existir
+     */
+    public Integer piso(int chave) {
+        Node atual = root, melhor = null;
+        while (atual != null) {
+            if (chave < atual.chave) {
+                atual = atual.esquerda;
+            } else if (chave > atual.chave) {
+                melhor = atual;
+                atual = atual.direita;
+            } else {
+                return atual.chave;
+            }
+        }
+        return melhor == null ? null : melhor.chave;
+    }
+
+    /**
+     * Devolve a menor chave da árvore maior ou igual à indicada.
+     *
+     * @param chave chave de referência
+     * @return a chave encontrada, ou {@code null} se não existir
+     */
+    public Integer teto(int chave) {
+        Node atual = root, melhor = null;
+        while (atual != null) {
+            if (chave > atual.chave) {
+                atual = atual.direita;
+            } else if (chave < atual.chave) {
+                melhor = atual;
+                atual = atual.esquerda;
+            } else {
+                return atual.chave;
+            }
+        }
+        return melhor == null ? null : melhor.chave;
+    }
+
+    /**
+     * Percorre por ordem crescente as chaves do intervalo [de, ate], sem
+     * recursão e sem visitar as subárvores que ficam fora do intervalo.
+     *
+     * @param de limite inferior (inclusive)
+     * @param ate limite superior (inclusive)
+     * @param acao ação aplicada a cada chave do intervalo
+     * @return o número de chaves visitadas
+     */
+    public int intervalo(int de, int ate, IntConsumer acao) {
+        int visitadas = 0;
+        ArrayDeque<Node> pilha = new ArrayDeque<>();
+        Node atual = root;
+        while (true) {
+            while (atual != null) {
+                if (atual.chave < de) {
+                    atual = atual.direita;
+                } else {
+                    pilha.push(atual);
+                    atual = atual.esquerda;
+                }
+            }
+            if (pilha.isEmpty()) return visitadas;
+
+            Node node = pilha.pop();
+            if (node.chave > ate) return visitadas;
+            acao.accept(node.chave);
+            visitadas++;
+            atual = node.direita;
+        }
+    }
+
+    /**
+     * Devolve um cursor pelas chaves, por ordem crescente. O cursor não aloca
+     * nada por chave e pode ser reposto no início com {@link Cursor#reiniciar()}
+     * para voltar a percorrer a árvore sem criar outro. Deixa de ser válido se
+     * a árvore for alterada.
+     *
+     * @return o cursor, posicionado na menor chave
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Devolve um spliterator pelas chaves, por ordem crescente, que se divide
+     * nas fronteiras das subárvores, para agregações com
+     * {@code IntStream.parallel()}. A árvore não pode ser alterada enquanto
+     * é percorrida.
+     *
+     * @return o spliterator
+     */
+    public Spliterator.OfInt spliterator() {
+        return new Percurso(root, Long.MAX_VALUE);
+    }
+
+    /**
+     * Devolve as chaves como um {@link IntStream}, por ordem crescente.
+     *
+     * @param paralelo true para um stream paralelo
+     * @return o stream das chaves
+     */
+    public IntStream fluxo(boolean paralelo) {
+        return StreamSupport.intStream(spliterator(), paralelo);
+    }
+
+    /**
+     * Devolve a altura da árvore (número de nós no caminho mais longo).
+     *
+     * @return altura da árvore, ou 0 se estiver vazia
+     */
+    public int altura() {
+        return alturaAtual;
+    }
+
+    /**
+     * Devolve a profundidade média dos nós, isto é, o comprimento médio do
+     * caminho desde a raiz (a raiz tem profundidade 1).
+     *
+     * @return profundidade média, ou 0 se a árvore estiver vazia
+     */
+    public double profundidadeMedia() {
+        long[] forma = medirForma();
+        return forma[0] == 0 ? 0.0 : (double) forma[1] / forma[0];
+    }
+
+    /**
+     * Percorre a árvore sem recursão e mede a sua forma.
+     *
+     * @return número de nós, soma das profundidades e altura
+     */
+    private long[] medirForma() {
+        long[] forma = new long[3];
+        if (root == null) return forma;
+
+        ArrayDeque<Node> nos = new ArrayDeque<>();
+        ArrayDeque<Integer> profundidades = new ArrayDeque<>();
+        nos.push(root);
+        profundidades.push(1);
+        while (!nos.isEmpty()) {
+            Node node = nos.pop();
+            int profundidade = profundidades.pop();
+            forma[0]++;
+            forma[1] += profundidade;
+            forma[2] = Math.max(forma[2], profundidade);
+            if (node.esquerda != null) {
+                nos.push(node.esquerda);
+                profundidades.push(profundidade + 1);
+            }
+            if (node.direita != null) {
+                nos.push(node.direita);
+                profundidades.push(profundidade + 1);
+            }
+        }
+        return forma;
+    }
+
     /**
      * Classe interna que representa um nó da árvore binária.
      */
@@ -74,4 +365,143 @@ public class BinaryTree {
             esquerda = direita = null;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Cursor em ordem pelas chaves da árvore. A pilha do percurso é reservada
+     * na criação com a altura da árvore e reutilizada por {@link #reiniciar()};
+     * numa árvore degenerada (chaves inseridas por ordem) tem tantos níveis
+     * como chaves. Só cresce se a árvore tiver ficado mais alta.
+     */
+    public final class Cursor implements PrimitiveIterator.OfInt {
+        private Node[] pilha = new Node[Math.max(1, alturaAtual)];
+        private int topo = 0;
+
+        private Cursor() {
+            descer(root);
+        }
+
+        /**
+         * Volta a posicionar o cursor na menor chave da árvore, reutilizando a pilha.
+         */
+        public void reiniciar() {
+            Arrays.fill(pilha, 0, topo, null);
+            topo = 0;
+            descer(root);
+        }
+
+        private void descer(Node node) {
+            for (; node != null; node = node.esquerda) {
+                if (topo == pilha.length) pilha = Arrays.copyOf(pilha, topo * 2);
+                pilha[topo++] = node;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return topo > 0;
+        }
+
+        @Override
+        public int nextInt() {
+            if (topo == 0) throw new NoSuchElementException();
+            Node node = pilha[--topo];
+            descer(node.direita);
+            return node.chave;
+        }
+
+        @Override
+        public void forEachRemaining(IntConsumer acao) {
+            while (topo > 0) {
+                Node node = pilha[--topo];
+                descer(node.direita);
+                acao.accept(node.chave);
+            }
+        }
+    }
+
+    /**
+     * Spliterator em ordem pelas chaves da árvore. O estado é a pilha do
+     * percurso: cada nó da pilha ainda tem de entregar a sua chave e a sua
+     * subárvore direita, exceto os nós abaixo de {@code corte}, cuja subárvore
+     * direita já foi entregue a outro spliterator. A divisão separa a subárvore
+     * direita do nó mais abaixo na pilha (a maior que resta): essa subárvore e
+     * os nós abaixo dele ficam neste spliterator, e o prefixo (esse nó e os que
+     * estão acima dele) passa para o spliterator devolvido, que só copia a pilha.
+     * As outras árvores usam a mesma divisão.
+     */
+    private final class Percurso implements Spliterator.OfInt {
+        private Node[] pilha;
+        private int topo = 0, corte = 0;
+        private long estimativa;
+
+        Percurso(Node raiz, long estimativa) {
+            this.pilha = new Node[Math.max(1, alturaAtual)];
+            this.estimativa = estimativa;
+            descer(raiz);
+        }
+
+        private Percurso(Node[] pilha, int topo, long estimativa) {
+            this.pilha = pilha;
+            this.topo = topo;
+            this.corte = 1;
+            this.estimativa = estimativa;
+        }
+
+        private void descer(Node node) {
+            for (; node != null; node = node.esquerda) {
+                if (topo == pilha.length) pilha = Arrays.copyOf(pilha, topo * 2);
+                pilha[topo++] = node;
+            }
+        }
+
+        @Override
+        public boolean tryAdvance(IntConsumer acao) {
+            if (topo == 0) return false;
+            Node node = pilha[--topo];
+            if (topo >= corte) descer(node.direita);
+            acao.accept(node.chave);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(IntConsumer acao) {
+            while (topo > 0) {
+                Node node = pilha[--topo];
+                if (topo >= corte) descer(node.direita);
+                acao.accept(node.chave);
+            }
+        }
+
+        @Override
+        public Spliterator.OfInt trySplit() {
+            int c = corte;
+            while (c < topo && pilha[c].direita == null) c++;
+            if (c >= topo) return null;
+
+            // Prefixo: o nó c (já sem a subárvore direita) e os que estão acima dele
+            Node[] prefixo = Arrays.copyOfRange(pilha, c, c + pilha.length);
+            Node direita = pilha[c].direita;
+            Arrays.fill(pilha, c, topo, null);
+            int tamanhoPrefixo = topo - c;
+            topo = corte = c;
+            descer(direita);
+            estimativa >>>= 1;
+            return new Percurso(prefixo, tamanhoPrefixo, estimativa);
+        }
+
+        @Override
+        public long estimateSize() {
+            return estimativa;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SORTED | DISTINCT | NONNULL;
+        }
+
+        @Override
+        public Comparator<? super Integer> getComparator() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+import java.util.Arrays;
+
+/**
+ * Classe utilitária que deteta se um conjunto de chaves já está ordenado,
+ * de forma crescente ou decrescente, para que as árvores possam ser
+ * construídas diretamente a partir dele em tempo linear.
+ *
+ * @author Guilherme Rosmaninho
+ * @version 1.0
+ */
+public class DetetorOrdem {
+
+    /** As chaves estão por ordem crescente (admitindo repetições). */
+    public static final int CRESCENTE = 1;
+
+    /** As chaves estão por ordem decrescente (admitindo repetições). */
+    public static final int DECRESCENTE = -1;
+
+    /** As chaves não seguem nenhuma das duas ordens. */
+    public static final int DESORDENADO = 0;
+
+    /**
+     * Deteta a ordem de um array de chaves numa única passagem.
+     * Um array vazio ou com uma só chave é considerado crescente.
+     *
+     * @param chaves array de chaves
+     * @return {@link #CRESCENTE}, {@link #DECRESCENTE} ou {@link #DESORDENADO}
+     */
+    public static int detetar(int[] chaves) {
+        boolean crescente = true, decrescente = true;
+        for (int i = 1; i < chaves.length && (crescente || decrescente); i++) {
+            if (chaves[i] < chaves[i - 1]) crescente = false;
+            else if (chaves[i] > chaves[i - 1]) decrescente = false;
+        }
+        if (crescente) return CRESCENTE;
+        return decrescente ? DECRESCENTE : DESORDENADO;
+    }
+
+    /**
+     * Devolve as chaves por ordem estritamente crescente, se o array já
+     * estiver ordenado num dos dois sentidos.
+     *
+     * @param chaves array de chaves
+     * @return novo array crescente e sem repetições, ou {@code null} se o
+     *         array não estiver ordenado
+     */
+    public static int[] ordenadasSemDuplicados(int[] chaves) {
+        switch (detetar(chaves)) {
+            case CRESCENTE:
+                return semDuplicados(chaves);
+            case DECRESCENTE:
+                int[] invertidas = new int[chaves.length];
+                for (int i = 0; i < chaves.length; i++) invertidas[i] = chaves[chaves.length - 1 - i];
+                return semDuplicados(invertidas);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Remove as repetições de um array ordenado de forma crescente.
+     *
+     * @param ordenadas array ordenado de forma crescente
+     * @return array estritamente crescente (o próprio array se não houver repetições)
+     * @throws IllegalArgumentException se o array não estiver ordenado de forma crescente
+     */
+    public static int[] semDuplicados(int[] ordenadas) {
+        int distintas = ordenadas.length == 0 ? 0 : 1;
+        for (int i = 1; i < ordenadas.length; i++) {
+            if (ordenadas[i] < ordenadas[i - 1])
+                throw new IllegalArgumentException("As chaves não estão por ordem crescente na posição " + i);
+            if (ordenadas[i] != ordenadas[i - 1]) distintas++;
+        }
+        if (distintas == ordenadas.length) return ordenadas;
+
+        int[] unicas = new int[distintas];
+        int j = 0;
+        for (int i = 0; i < ordenadas.length; i++) {
+            if (i == 0 || ordenadas[i] != ordenadas[i - 1]) unicas[j++] = ordenadas[i];
+        }
+        return unicas;
+    }
+
+    /**
+     * Devolve uma cópia estritamente crescente de qualquer array de chaves,
+     * ordenando-a com {@link Arrays#parallelSort(int[])} quando necessário.
+     * Quando invocado a partir de uma tarefa de um {@code ForkJoinPool}, a
+     * ordenação corre nesse pool.
+     *
+     * @param chaves array de chaves
+     * @return novo array crescente e sem repetições
+     */
+    public static int[] ordenarEmParalelo(int[] chaves) {
+        int[] ordenadas = ordenadasSemDuplicados(chaves);
+        if (ordenadas != null) return ordenadas;
+
+        ordenadas = chaves.clone();
+        Arrays.parallelSort(ordenadas);
+        return semDuplicados(ordenadas);
+    }
+}
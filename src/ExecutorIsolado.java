@@ -0,0 +1,143 @@
+import java.io.BufferedReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Executa a matriz principal de {@link Main} com cada célula (árvore, conjunto,
+ * tamanho) numa JVM própria, para que nenhuma célula herde o heap nem o perfil
+ * do JIT das anteriores.
+ *
+ * As células independentes são distribuídas por um número limitado de
+ * processos em simultâneo ({@code bench.processos}; 1 executa uma célula de
+ * cada vez, para medições com menos ruído). As opções da JVM filha são dadas
+ * por {@code bench.jvm}, e as restantes propriedades {@code bench.*} são
+ * propagadas. Os resultados são agregados num ficheiro resultados-*.csv com
+ * as colunas habituais e as opções da JVM de cada linha.
+ *
+ * @author Guilherme Rosmaninho
+ * @version 1.0
+ */
+public class ExecutorIsolado {
+
+    /** Prefixo da linha de resultado escrita pela JVM filha. */
+    static final String PREFIXO = "RESULTADO;";
+
+    /** Número máximo de JVMs filhas em simultâneo. */
+    public static final int PROCESSOS = Integer.getInteger("bench.processos",
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+
+    /** Opções passadas a cada JVM filha. */
+    public static final String JVM_ARGS = System.getProperty("bench.jvm", "-Xms2g -Xmx2g");
+
+    /**
+     * Executa todas as células da matriz principal e grava os resultados num ficheiro CSV.
+     *
+     * @throws IOException se não for possível escrever o ficheiro
+     */
+    public static void executar() throws IOException {
+        String fileName = Benchmark.nomeFicheiro(null);
+        ExecutorService executor = Executors.newFixedThreadPool(PROCESSOS);
+        List<Future<String>> resultados = new ArrayList<>();
+        List<String> descricoes = new ArrayList<>();
+
+        for (String treeType : Main.TREE_TYPES) {
+            for (int size : Main.SIZES) {
+                if (!Main.celulaAtiva(treeType, size)) continue;
+                for (String label : Main.LABELS) {
+                    resultados.add(executor.submit(() -> executarCelula(treeType, label, size)));
+                    descricoes.add(treeType + " - Conjunto " + label + " (Size: " + size + ")");
+                }
+            }
+        }
+        executor.shutdown();
+
+        try (FileWriter writer = new FileWriter(fileName)) {
+            writer.write(Benchmark.cabecalhoCsv().replace("\n", ";JvmArgs\n"));
+
+            // As linhas são escritas pela ordem da matriz, à medida que as células terminam
+            for (int i = 0; i < resultados.size(); i++) {
+                try {
+                    String linha = resultados.get(i).get();
+                    writer.write(linha);
+                    writer.flush();
+                    System.out.println("  -> " + descricoes.get(i) + ": " + linha.trim());
+                } catch (ExecutionException e) {
+                    System.err.println("  -> " + descricoes.get(i) + " falhou: " + e.getCause().getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+            throw new IOException("Execução interrompida", e);
+        }
+
+        System.out.println("\nProcesso terminado. Resultados foram guardados em: " + fileName);
+    }
+
+    /**
+     * Mede uma única célula na JVM atual e escreve o resultado na saída padrão.
+     * É o ponto de entrada das JVMs filhas ({@code java Main celula TIPO CONJUNTO TAMANHO}).
+     *
+     * @param treeType tipo de árvore
+     * @param label rótulo do conjunto de dados
+     * @param size tamanho do conjunto
+     */
+    static void medirCelula(String treeType, String label, int size) {
+        int[] dataset = GerarChaves.gerar(label, size);
+        Benchmark.Resultado r = Benchmark.medir(treeType, dataset);
+        System.out.print(PREFIXO + Benchmark.linhaCsv(treeType, label, size, r));
+    }
+
+    /**
+     * Lança uma JVM filha para uma célula e devolve a sua linha CSV.
+     *
+     * @param treeType tipo de árvore
+     * @param label rótulo do conjunto de dados
+     * @param size tamanho do conjunto
+     * @return linha CSV com a coluna JvmArgs, terminada em mudança de linha
+     * @throws IOException se a JVM filha falhar ou não produzir resultado
+     * @throws InterruptedException se a espera pela JVM filha for interrompida
+     */
+    static String executarCelula(String treeType, String label, int size) throws IOException, InterruptedException {
+        List<String> comando = new ArrayList<>();
+        comando.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        String jvmArgs = JVM_ARGS.trim();
+        if (!jvmArgs.isEmpty()) comando.addAll(Arrays.asList(jvmArgs.split("\\s+")));
+        for (String nome : System.getProperties().stringPropertyNames()) {
+            if (nome.startsWith("bench.") && !nome.equals("bench.jvm") && !nome.equals("bench.processos")) {
+                comando.add("-D" + nome + "=" + System.getProperty(nome));
+            }
+        }
+        comando.addAll(Arrays.asList("-cp", System.getProperty("java.class.path"),
+                "Main", "celula", treeType, label, Integer.toString(size)));
+
+        Process processo = new ProcessBuilder(comando)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+
+        String resultado = null;
+        try (BufferedReader leitor = new BufferedReader(
+                new InputStreamReader(processo.getInputStream(), StandardCharsets.UTF_8))) {
+            String linha;
+            while ((linha = leitor.readLine()) != null) {
+                if (linha.startsWith(PREFIXO)) resultado = linha.substring(PREFIXO.length());
+            }
+        }
+
+        int saida = processo.waitFor();
+        if (saida != 0 || resultado == null) {
+            throw new IOException("a JVM filha terminou com o código " + saida);
+        }
+        return resultado + ";" + jvmArgs + "\n";
+    }
+}
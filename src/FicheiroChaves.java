@@ -0,0 +1,188 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.IntConsumer;
+
+/**
+ * Ficheiros binários de chaves: uma sequência de inteiros de 32 bits em
+ * little-endian, sem cabeçalho. Permitem medir conjuntos que não cabem no
+ * heap ao lado da árvore (50M chaves ou mais), porque as chaves nunca estão
+ * todas em memória.
+ *
+ * {@link #gravar(String, int, long, Path)} escreve um conjunto de
+ * {@link GerarChaves} em streaming. {@link #inserir(Path, IntConsumer)} mapeia
+ * o ficheiro em memória por regiões de {@link #REGIAO} bytes (o que permite
+ * ficheiros com mais de 2 GB) e uma thread de leitura descodifica o bloco
+ * seguinte de cada região enquanto a thread que chama insere o atual. Os
+ * dois blocos circulam entre as threads por filas; o único objeto criado
+ * durante a ingestão é o mapeamento de cada região, libertado pelo GC.
+ *
+ * @author Guilherme Rosmaninho
+ * @version 1.0
+ */
+public class FicheiroChaves {
+
+    /** Número de chaves de cada bloco (4 MB). */
+    public static final int TAMANHO_BLOCO = 1 << 20;
+
+    /** Tamanho de cada região mapeada, em bytes (múltiplo do tamanho de um bloco). */
+    static final int REGIAO = 1 << 28;
+
+    /** Número de blocos em circulação entre a leitura e a inserção. */
+    static final int BLOCOS = 2;
+
+    /**
+     * Bloco de chaves descodificadas. Um bloco com {@code tamanho} negativo
+     * indica o fim do ficheiro.
+     */
+    private static final class Bloco {
+        final int[] chaves;
+        int tamanho;
+
+        Bloco(int capacidade) {
+            chaves = new int[capacidade];
+        }
+    }
+
+    /**
+     * Tempos de uma ingestão, em nanossegundos.
+     */
+    public static class Estatisticas {
+        /** Número de chaves lidas do ficheiro. */
+        public long chaves;
+        /** Tempo total da ingestão. */
+        public long tempoTotal;
+        /** Tempo em que a thread de inserção esteve à espera de um bloco. */
+        public long tempoEspera;
+        /** Tempo que a thread de leitura passou a mapear e descodificar blocos. */
+        public long tempoLeitura;
+    }
+
+    /**
+     * Escreve um dos conjuntos A a D num ficheiro de chaves, sem o guardar em memória.
+     *
+     * @param conjunto rótulo do conjunto ("A", "B", "C" ou "D")
+     * @param n número de chaves
+     * @param semente semente dos conjuntos aleatórios
+     * @param ficheiro caminho do ficheiro (substituído se existir)
+     * @throws IOException se não for possível escrever o ficheiro
+     */
+    public static void gravar(String conjunto, int n, long semente, Path ficheiro) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(4 * TAMANHO_BLOCO).order(ByteOrder.LITTLE_ENDIAN);
+        PrimitiveIterator.OfInt chaves = GerarChaves.stream(conjunto, n, semente).iterator();
+
+        try (FileChannel canal = FileChannel.open(ficheiro, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (chaves.hasNext()) {
+                buffer.putInt(chaves.nextInt());
+                if (!buffer.hasRemaining()) escrever(canal, buffer);
+            }
+            escrever(canal, buffer);
+        }
+    }
+
+    /**
+     * Escreve o conteúdo do buffer no canal e limpa-o.
+     */
+    private static void escrever(FileChannel canal, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) canal.write(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * Insere todas as chaves de um ficheiro, pela ordem em que estão, com a
+     * leitura do bloco seguinte sobreposta à inserção do atual.
+     *
+     * @param ficheiro caminho do ficheiro de chaves
+     * @param insercao inserção da árvore (por exemplo {@code arvore::insert})
+     * @return os tempos da ingestão
+     * @throws IOException se o ficheiro não puder ser lido ou o seu tamanho não for múltiplo de 4
+     */
+    public static Estatisticas inserir(Path ficheiro, IntConsumer insercao) throws IOException {
+        Estatisticas estatisticas = new Estatisticas();
+        long inicio = System.nanoTime();
+
+        try (FileChannel canal = FileChannel.open(ficheiro, StandardOpenOption.READ)) {
+            long tamanho = canal.size();
+            if (tamanho % 4 != 0) throw new IOException("O tamanho do ficheiro não é múltiplo de 4: " + ficheiro);
+
+            BlockingQueue<Bloco> livres = new ArrayBlockingQueue<>(BLOCOS);
+            BlockingQueue<Bloco> cheios = new ArrayBlockingQueue<>(BLOCOS + 1);
+            for (int i = 0; i < BLOCOS; i++) livres.add(new Bloco(TAMANHO_BLOCO));
+            IOException[] erro = new IOException[1];
+
+            Thread leitor = new Thread(() -> ler(canal, tamanho, livres, cheios, erro, estatisticas), "leitor-chaves");
+            leitor.setDaemon(true);
+            leitor.start();
+
+            try {
+                while (true) {
+                    long espera = System.nanoTime();
+                    Bloco bloco = cheios.take();
+                    estatisticas.tempoEspera += System.nanoTime() - espera;
+                    if (bloco.tamanho < 0) break;
+
+                    int[] chaves = bloco.chaves;
+                    for (int i = 0; i < bloco.tamanho; i++) insercao.accept(chaves[i]);
+                    estatisticas.chaves += bloco.tamanho;
+                    livres.put(bloco);
+                }
+                leitor.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Ingestão interrompida", e);
+            } finally {
+                // Se a inserção falhou, a leitura não pode ficar à espera de um bloco livre
+                if (leitor.isAlive()) leitor.interrupt();
+            }
+            if (erro[0] != null) throw erro[0];
+        }
+
+        estatisticas.tempoTotal = System.nanoTime() - inicio;
+        return estatisticas;
+    }
+
+    /**
+     * Ciclo da thread de leitura: mapeia cada região do ficheiro uma vez,
+     * descodifica-a bloco a bloco para os blocos livres e entrega-os à
+     * inserção. No fim (ou num erro) entrega um bloco de fim.
+     */
+    private static void ler(FileChannel canal, long tamanho, BlockingQueue<Bloco> livres, BlockingQueue<Bloco> cheios,
+                            IOException[] erro, Estatisticas estatisticas) {
+        Bloco fim = new Bloco(0);
+        fim.tamanho = -1;
+        try {
+            for (long posicao = 0; posicao < tamanho; posicao += REGIAO) {
+                long inicio = System.nanoTime();
+                int bytes = (int) Math.min(REGIAO, tamanho - posicao);
+                MappedByteBuffer mapa = canal.map(FileChannel.MapMode.READ_ONLY, posicao, bytes);
+                IntBuffer inteiros = mapa.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+                estatisticas.tempoLeitura += System.nanoTime() - inicio;
+
+                while (inteiros.hasRemaining()) {
+                    Bloco bloco = livres.take();
+                    inicio = System.nanoTime();
+                    bloco.tamanho = Math.min(TAMANHO_BLOCO, inteiros.remaining());
+                    inteiros.get(bloco.chaves, 0, bloco.tamanho);
+                    estatisticas.tempoLeitura += System.nanoTime() - inicio;
+                    cheios.put(bloco);
+                }
+            }
+        } catch (IOException e) {
+            erro[0] = e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            cheios.offer(fim);
+        }
+    }
+}
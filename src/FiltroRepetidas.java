@@ -0,0 +1,179 @@
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+/**
+ * Filtro de chaves repetidas colocado à frente de qualquer árvore, para que
+ * as chaves já inseridas não obriguem a uma descida inútil até ao nó igual.
+ *
+ * Guarda as chaves inseridas mais recentemente numa cache de mapeamento
+ * direto, com uma posição por valor de hash. Como as árvores não removem
+ * chaves, uma chave encontrada na cache está certamente na árvore e é
+ * rejeitada sem a consultar; uma chave que não está na cache é entregue à
+ * árvore, que a ignora se já existir. A cache tem poucas posições (por
+ * omissão, 256 entradas de 8 bytes) para caber na cache L1.
+ *
+ * No modo multiconjunto ({@link #multiconjunto(IntConsumer, IntPredicate)}),
+ * as repetições não são descartadas: o número de ocorrências de cada chave
+ * repetida fica numa tabela de dispersão à parte, e a árvore continua a ter
+ * uma só cópia de cada chave. Uma chave que não está na cache é primeiro
+ * procurada na árvore, para saber se é nova ou repetida.
+ *
+ * @author Guilherme Rosmaninho
+ * @version 1.0
+ */
+public class FiltroRepetidas implements IntConsumer {
+
+    /** Número de entradas da cache por omissão. */
+    public static final int CAPACIDADE = 256;
+
+    /** Bit que marca uma entrada da cache como ocupada, acima dos 32 bits da chave. */
+    private static final long OCUPADA = 1L << 32;
+
+    private final IntConsumer insercao;
+    private final IntPredicate pesquisa;
+
+    /** Cache de mapeamento direto: cada entrada é a chave com o bit {@link #OCUPADA}. */
+    private final long[] cache;
+    private final int deslocamento;
+
+    /** Tabela de ocorrências do modo multiconjunto, ou {@code null}. */
+    private final TabelaOcorrencias ocorrencias;
+
+    /**
+     * Número de inserções rejeitadas pela cache, sem descer na árvore.
+     */
+    public long descidasEvitadas = 0;
+
+    /**
+     * Número de chaves entregues à árvore (inserções ou, no modo multiconjunto, pesquisas).
+     */
+    public long descidas = 0;
+
+    /**
+     * Cria um filtro com a capacidade por omissão.
+     *
+     * @param insercao inserção da árvore protegida
+     */
+    public FiltroRepetidas(IntConsumer insercao) {
+        this(insercao, null, CAPACIDADE);
+    }
+
+    /**
+     * Cria um filtro.
+     *
+     * @param insercao inserção da árvore protegida
+     * @param pesquisa pesquisa da árvore, apenas para o modo multiconjunto ({@code null} caso contrário)
+     * @param capacidade número de entradas da cache (arredondado para uma potência de 2)
+     */
+    public FiltroRepetidas(IntConsumer insercao, IntPredicate pesquisa, int capacidade) {
+        int bits = Math.max(1, 32 - Integer.numberOfLeadingZeros(Math.max(1, capacidade) - 1));
+        this.insercao = insercao;
+        this.pesquisa = pesquisa;
+        this.cache = new long[1 << bits];
+        this.deslocamento = 32 - bits;
+        this.ocorrencias = pesquisa == null ? null : new TabelaOcorrencias();
+    }
+
+    /**
+     * Cria um filtro em modo multiconjunto, que conta as ocorrências de cada chave.
+     *
+     * @param insercao inserção da árvore protegida
+     * @param pesquisa pesquisa da árvore protegida
+     * @return o filtro
+     */
+    public static FiltroRepetidas multiconjunto(IntConsumer insercao, IntPredicate pesquisa) {
+        return new FiltroRepetidas(insercao, pesquisa, CAPACIDADE);
+    }
+
+    /**
+     * Insere uma chave, a não ser que a cache mostre que já existe.
+     *
+     * @param chave A chave a ser inserida.
+     */
+    @Override
+    public void accept(int chave) {
+        int i = (chave * 0x9E3779B9) >>> deslocamento;
+        long entrada = (chave & 0xFFFFFFFFL) | OCUPADA;
+        if (cache[i] == entrada) {
+            descidasEvitadas++;
+            if (ocorrencias != null) ocorrencias.incrementar(chave);
+            return;
+        }
+
+        descidas++;
+        if (ocorrencias != null && pesquisa.test(chave)) ocorrencias.incrementar(chave);
+        else insercao.accept(chave);
+        cache[i] = entrada;
+    }
+
+    /**
+     * Devolve o número de ocorrências de uma chave no modo multiconjunto.
+     *
+     * @param chave chave a consultar
+     * @return número de vezes que a chave foi inserida
+     * @throws IllegalStateException se o filtro não estiver em modo multiconjunto
+     */
+    public int ocorrencias(int chave) {
+        if (ocorrencias == null) throw new IllegalStateException("O filtro não está em modo multiconjunto");
+        if (!pesquisa.test(chave)) return 0;
+        return 1 + ocorrencias.obter(chave);
+    }
+
+    /**
+     * Tabela de dispersão de endereçamento aberto (sondagem linear) de chave
+     * para o número de ocorrências além da primeira, em dois arrays de inteiros.
+     */
+    private static final class TabelaOcorrencias {
+        private int[] chaves = new int[16];
+        private int[] contagens = new int[16];
+        private int n = 0;
+
+        /** Soma uma ocorrência a uma chave. */
+        void incrementar(int chave) {
+            int mascara = chaves.length - 1;
+            int i = posicao(chave, mascara);
+            while (contagens[i] != 0) {
+                if (chaves[i] == chave) {
+                    contagens[i]++;
+                    return;
+                }
+                i = (i + 1) & mascara;
+            }
+            chaves[i] = chave;
+            contagens[i] = 1;
+            if (++n * 2 > chaves.length) crescer();
+        }
+
+        /** Devolve as ocorrências de uma chave além da primeira. */
+        int obter(int chave) {
+            int mascara = chaves.length - 1;
+            int i = posicao(chave, mascara);
+            while (contagens[i] != 0) {
+                if (chaves[i] == chave) return contagens[i];
+                i = (i + 1) & mascara;
+            }
+            return 0;
+        }
+
+        /** Posição inicial de uma chave, com os bits altos do hash misturados nos baixos. */
+        private static int posicao(int chave, int mascara) {
+            int h = chave * 0x9E3779B9;
+            return (h ^ (h >>> 16)) & mascara;
+        }
+
+        /** Duplica a tabela e volta a colocar as entradas. */
+        private void crescer() {
+            int[] chavesAntigas = chaves, contagensAntigas = contagens;
+            chaves = new int[chavesAntigas.length * 2];
+            contagens = new int[chavesAntigas.length * 2];
+            int mascara = chaves.length - 1;
+            for (int j = 0; j < chavesAntigas.length; j++) {
+                if (contagensAntigas[j] == 0) continue;
+                int i = posicao(chavesAntigas[j], mascara);
+                while (contagens[i] != 0) i = (i + 1) & mascara;
+                chaves[i] = chavesAntigas[j];
+                contagens[i] = contagensAntigas[j];
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Formato binário dos ficheiros de snapshot das árvores ({@code gravar} e
+ * {@code ler} em {@link AVLTree}, {@link VPTree} e {@link TreapTree}).
+ *
+ * O ficheiro tem um cabeçalho de 12 bytes (assinatura, tipo de árvore,
+ * opções e número de nós) seguido dos nós em pré-ordem, em little-endian.
+ * Cada nó guarda a chave, a informação de equilíbrio da árvore (altura, cor
+ * ou prioridade) e dois bits que indicam se tem filho esquerdo e direito.
+ * Com a pré-ordem e esses bits, a árvore é refeita com a mesma forma numa só
+ * passagem, sem comparações nem rotações.
+ *
+ * A escrita é feita por um {@link FileChannel} com um buffer direto e a
+ * leitura mapeia o ficheiro em memória, o que limita os ficheiros a 2 GB.
+ *
+ * @author Guilherme Rosmaninho
+ * @version 1.0
+ */
+public class FormatoArvore {
+
+    /** Assinatura do ficheiro ("ARV1"). */
+    static final int ASSINATURA = 0x41525631;
+
+    /** Tamanho do cabeçalho, em bytes. */
+    static final int CABECALHO = 12;
+
+    /** Tipos de árvore. */
+    static final byte AVL = 1, VP = 2, TREAP = 3;
+
+    /** Opção: a árvore mantinha o tamanho das subárvores. */
+    static final byte TAMANHOS = 1;
+
+    /** Bits de filhos de cada nó. */
+    static final int ESQUERDA = 1, DIREITA = 2;
+
+    /** Tamanho do buffer de escrita. */
+    private static final int BUFFER = 1 << 20;
+
+    /**
+     * Escritor sequencial de um ficheiro de snapshot. O cabeçalho é reservado
+     * na abertura e escrito no fim, quando o número de nós já é conhecido.
+     */
+    static final class Escritor implements AutoCloseable {
+        private final FileChannel canal;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+        private final byte tipo, opcoes;
+        private int nos = 0;
+
+        /**
+         * Cria o ficheiro (substituindo-o se existir).
+         *
+         * @param ficheiro caminho do ficheiro
+         * @param tipo tipo de árvore
+         * @param opcoes opções da árvore
+         * @throws IOException se não for possível criar o ficheiro
+         */
+        Escritor(Path ficheiro, byte tipo, byte opcoes) throws IOException {
+            this.canal = FileChannel.open(ficheiro, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            this.tipo = tipo;
+            this.opcoes = opcoes;
+            canal.position(CABECALHO);
+        }
+
+        /**
+         * Garante espaço no buffer para o próximo nó e conta-o.
+         *
+         * @param bytes tamanho do registo do nó
+         * @return o buffer onde o nó deve ser escrito
+         * @throws IOException se não for possível escrever o buffer cheio
+         */
+        ByteBuffer no(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) despejar();
+            nos++;
+            return buffer;
+        }
+
+        private void despejar() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) canal.write(buffer);
+            buffer.clear();
+        }
+
+        /**
+         * Escreve o que falta e o cabeçalho e fecha o ficheiro.
+         *
+         * @throws IOException se não for possível escrever
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                despejar();
+                ByteBuffer cabecalho = ByteBuffer.allocate(CABECALHO).order(ByteOrder.LITTLE_ENDIAN);
+                cabecalho.putInt(ASSINATURA).put(tipo).put(opcoes).putShort((short) 0).putInt(nos).flip();
+                long posicao = 0;
+                while (cabecalho.hasRemaining()) posicao += canal.write(cabecalho, posicao);
+            } finally {
+                canal.close();
+            }
+        }
+    }
+
+    /**
+     * Mapeia um ficheiro de snapshot em memória e valida o cabeçalho.
+     *
+     * @param ficheiro caminho do ficheiro
+     * @param tipo tipo de árvore esperado
+     * @param bytesPorNo tamanho do registo de cada nó
+     * @return o ficheiro mapeado, posicionado no primeiro nó
+     * @throws IOException se o ficheiro não puder ser lido ou não for um snapshot do tipo esperado
+     */
+    static MappedByteBuffer mapear(Path ficheiro, byte tipo, int bytesPorNo) throws IOException {
+        try (FileChannel canal = FileChannel.open(ficheiro, StandardOpenOption.READ)) {
+            long tamanho = canal.size();
+            if (tamanho < CABECALHO || tamanho > Integer.MAX_VALUE) {
+                throw new IOException("Tamanho inválido para um snapshot: " + tamanho + " bytes");
+            }
+            MappedByteBuffer mapa = canal.map(FileChannel.MapMode.READ_ONLY, 0, tamanho);
+            mapa.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (mapa.getInt() != ASSINATURA) throw new IOException("O ficheiro não é um snapshot de árvore: " + ficheiro);
+            if (mapa.get() != tipo) throw new IOException("O snapshot é de outro tipo de árvore: " + ficheiro);
+            mapa.get();
+            mapa.getShort();
+            long nos = mapa.getInt() & 0xFFFFFFFFL;
+            if (CABECALHO + nos * bytesPorNo != tamanho) throw new IOException("Snapshot truncado: " + ficheiro);
+            return mapa;
+        }
+    }
+
+    /**
+     * Devolve as opções guardadas no cabeçalho de um ficheiro mapeado.
+     *
+     * @param mapa ficheiro mapeado por {@link #mapear(Path, byte, int)}
+     * @return as opções
+     */
+    static byte opcoes(ByteBuffer mapa) {
+        return mapa.get(5);
+    }
+
+    /**
+     * Devolve o número de nós guardado no cabeçalho de um ficheiro mapeado.
+     *
+     * @param mapa ficheiro mapeado por {@link #mapear(Path, byte, int)}
+     * @return número de nós
+     */
+    static int nos(ByteBuffer mapa) {
+        return mapa.getInt(8);
+    }
+}
@@ -0,0 +1,230 @@
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Forma imutável de uma árvore de pesquisa para fases só de leitura, obtida
+ * com {@code freeze()} em {@link AVLTree}, {@link VPTree} ou {@link TreapTree}.
+ *
+ * As chaves ficam num único {@code int[]}, sem nós nem referências, com uma de
+ * duas disposições da árvore binária de pesquisa perfeitamente equilibrada:
+ * <ul>
+ *   <li><b>Eytzinger</b> (por largura): os filhos da posição {@code k} estão em
+ *   {@code 2k} e {@code 2k + 1}. Os primeiros níveis ficam juntos no início do
+ *   array e os 16 descendentes de um nó a 4 níveis de distância são
+ *   contíguos, o que favorece a pré-busca do hardware. A descida não tem
+ *   saltos condicionais: o filho é escolhido com o bit de sinal da diferença.</li>
+ *   <li><b>van Emde Boas</b>: a árvore é dividida recursivamente numa árvore de
+ *   topo com metade da altura e nas árvores de baixo, cada uma guardada num
+ *   bloco contíguo, pelo que qualquer tamanho de linha de cache ou página
+ *   contém subárvores inteiras. As tabelas de Brodal, Fagerberg e Jacob só
+ *   são usadas na construção; a pesquisa segue a própria divisão recursiva
+ *   (topo e depois a árvore de baixo por onde sai) e, ao contrário da
+ *   Eytzinger, tem um salto condicional por nível, porque termina logo que
+ *   encontra a chave. Uma versão que descia sempre até ao fundo, sem saltos,
+ *   foi mais lenta nas medições.</li>
+ * </ul>
+ *
+ * O Java não expõe instruções de pré-busca por software; a disposição
+ * Eytzinger é a que permite ao hardware antecipar os acessos seguintes.
+ *
+ * @author Guilherme Rosmaninho
+ * @version 1.0
+ */
+public final class FrozenTree {
+
+    /**
+     * Recolhe por ordem crescente as chaves de uma árvore num array que cresce
+     * conforme necessário. É passada ao {@code range} das árvores.
+     */
+    static final class Recolha implements IntConsumer {
+        private int[] chaves = new int[1024];
+        private int n = 0;
+
+        @Override
+        public void accept(int chave) {
+            if (n == chaves.length) chaves = Arrays.copyOf(chaves, n * 2);
+            chaves[n++] = chave;
+        }
+
+        /**
+         * Devolve as chaves recolhidas.
+         *
+         * @return array com as chaves, pela ordem em que foram recolhidas
+         */
+        int[] chaves() {
+            return Arrays.copyOf(chaves, n);
+        }
+    }
+
+    /** Chaves na disposição escolhida (na Eytzinger, a posição 0 não é usada). */
+    private final int[] chaves;
+
+    /** Número de chaves distintas. */
+    private final int tamanho;
+
+    /** Indica se a disposição é van Emde Boas (caso contrário é Eytzinger). */
+    private final boolean vanEmdeBoas;
+
+    /** Altura da árvore completa da disposição van Emde Boas. */
+    private final int altura;
+
+    private FrozenTree(int[] chaves, int tamanho, boolean vanEmdeBoas, int altura) {
+        this.chaves = chaves;
+        this.tamanho = tamanho;
+        this.vanEmdeBoas = vanEmdeBoas;
+        this.altura = altura;
+    }
+
+    /**
+     * Cria a forma imutável com disposição Eytzinger.
+     *
+     * @param ordenadas chaves distintas, por ordem crescente
+     * @return a árvore imutável
+     */
+    public static FrozenTree eytzinger(int[] ordenadas) {
+        int[] chaves = new int[ordenadas.length + 1];
+        preencherEytzinger(ordenadas, chaves, 0, 1);
+        return new FrozenTree(chaves, ordenadas.length, false, 0);
+    }
+
+    /**
+     * Cria a forma imutável com disposição van Emde Boas. A árvore é
+     * completada até 2^h - 1 nós com cópias da maior chave, que não alteram
+     * o resultado das pesquisas.
+     *
+     * @param ordenadas chaves distintas, por ordem crescente
+     * @return a árvore imutável
+     */
+    public static FrozenTree vanEmdeBoas(int[] ordenadas) {
+        int n = ordenadas.length;
+        int altura = 32 - Integer.numberOfLeadingZeros(n);
+        int completa = (1 << altura) - 1;
+        int[] preenchidas = Arrays.copyOf(ordenadas, completa);
+        if (n > 0) Arrays.fill(preenchidas, n, completa, ordenadas[n - 1]);
+
+        int[] porLargura = new int[completa + 1];
+        preencherEytzinger(preenchidas, porLargura, 0, 1);
+
+        // Por profundidade: tamanho da árvore de topo de que o nó é filho, tamanho
+        // da árvore de baixo que começa no nó e profundidade da raiz dessa árvore de topo
+        int[] topo = new int[Math.max(1, altura)], baixo = new int[Math.max(1, altura)], raizTopo = new int[Math.max(1, altura)];
+        dividir(0, altura, topo, baixo, raizTopo);
+
+        // Cada nó vai para a posição van Emde Boas calculada a partir do seu índice por largura
+        int[] chaves = new int[completa];
+        int[] posicoes = new int[Math.max(1, altura)];
+        for (int i = 1; i <= completa; i++) {
+            int profundidade = 31 - Integer.numberOfLeadingZeros(i);
+            for (int d = 1; d <= profundidade; d++) {
+                int ancestral = i >>> (profundidade - d);
+                posicoes[d] = posicoes[raizTopo[d]] + topo[d] + (ancestral & topo[d]) * baixo[d];
+            }
+            chaves[profundidade == 0 ? 0 : posicoes[profundidade]] = porLargura[i];
+        }
+        return new FrozenTree(chaves, n, true, altura);
+    }
+
+    /**
+     * Verifica se uma chave existe.
+     *
+     * @param chave chave a procurar
+     * @return true se a chave existir, false caso contrário
+     */
+    public boolean contains(int chave) {
+        return vanEmdeBoas ? containsVanEmdeBoas(chave) : containsEytzinger(chave);
+    }
+
+    /**
+     * Devolve o número de chaves.
+     *
+     * @return número de chaves
+     */
+    public int tamanho() {
+        return tamanho;
+    }
+
+    /**
+     * Indica a disposição das chaves.
+     *
+     * @return "VEB" ou "EYTZINGER"
+     */
+    public String disposicao() {
+        return vanEmdeBoas ? "VEB" : "EYTZINGER";
+    }
+
+    /**
+     * Descida sem saltos condicionais na disposição Eytzinger: em cada nível
+     * avança para {@code 2k + (chaves[k] < chave)}. No fim, os bits a 1 menos
+     * significativos de {@code k} correspondem às descidas para a direita
+     * depois do último nó maior ou igual à chave, que é o único candidato.
+     */
+    private boolean containsEytzinger(int chave) {
+        int[] chaves = this.chaves;
+        int n = tamanho;
+        int k = 1;
+        while (k <= n) {
+            k = 2 * k + (int) (((long) chaves[k] - chave) >>> 63);
+        }
+        k >>>= Integer.numberOfTrailingZeros(~k) + 1;
+        return k != 0 && chaves[k] == chave;
+    }
+
+    /**
+     * Descida na disposição van Emde Boas, sem alocações: a pesquisa segue a
+     * própria divisão recursiva da disposição (ver {@link #descer(int, int, int)})
+     * e, ao contrário de {@link #containsEytzinger(int)}, termina com um salto
+     * condicional assim que encontra a chave.
+     */
+    private boolean containsVanEmdeBoas(int chave) {
+        return tamanho != 0 && descer(0, altura, chave) < 0;
+    }
+
+    /**
+     * Procura a chave na subárvore completa de altura {@code h} guardada a
+     * partir da posição {@code base}: primeiro na árvore de topo, com metade
+     * da altura, e depois na árvore de baixo pela qual a descida sai do topo.
+     * A recursão tem no máximo 2·31 - 1 chamadas.
+     *
+     * @return -1 se a chave for encontrada; caso contrário, o índice (de 0 a
+     *         2^h - 1) da saída da descida pelo fundo da subárvore
+     */
+    private int descer(int base, int h, int chave) {
+        if (h == 1) {
+            int valor = chaves[base];
+            return valor == chave ? -1 : (int) (((long) valor - chave) >>> 63);
+        }
+        int hTopo = h / 2, hBaixo = h - hTopo;
+        int saida = descer(base, hTopo, chave);
+        if (saida < 0) return -1;
+        int resto = descer(base + (1 << hTopo) - 1 + saida * ((1 << hBaixo) - 1), hBaixo, chave);
+        return resto < 0 ? -1 : saida << hBaixo | resto;
+    }
+
+    /**
+     * Preenche a disposição Eytzinger com uma travessia em ordem da árvore
+     * implícita (a recursão tem a profundidade da árvore, no máximo 31 níveis).
+     *
+     * @return a posição seguinte de {@code ordenadas}
+     */
+    private static int preencherEytzinger(int[] ordenadas, int[] destino, int i, int k) {
+        if (k >= destino.length) return i;
+        i = preencherEytzinger(ordenadas, destino, i, 2 * k);
+        destino[k] = ordenadas[i++];
+        return preencherEytzinger(ordenadas, destino, i, 2 * k + 1);
+    }
+
+    /**
+     * Divide recursivamente uma árvore de altura {@code h} que começa na
+     * profundidade {@code d}: a árvore de topo fica com metade da altura e as
+     * árvores de baixo começam na profundidade {@code d + hTopo}.
+     */
+    private static void dividir(int d, int h, int[] topo, int[] baixo, int[] raizTopo) {
+        if (h <= 1) return;
+        int hTopo = h / 2, hBaixo = h - hTopo;
+        topo[d + hTopo] = (1 << hTopo) - 1;
+        baixo[d + hTopo] = (1 << hBaixo) - 1;
+        raizTopo[d + hTopo] = d;
+        dividir(d, hTopo, topo, baixo, raizTopo);
+        dividir(d + hTopo, hBaixo, topo, baixo, raizTopo);
+    }
+}
@@ -1,16 +1,25 @@
-import java.util.*;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
 
 /**
  * Classe utilitária responsável por gerar diferentes conjuntos de chaves inteiras
  * com padrões variados para testes de desempenho em árvores de pesquisa.
  *
  * Os métodos fornecem sequências ordenadas, reversas, aleatórias e com repetições.
+ * Os conjuntos aleatórios são determinados por uma semente: cada posição é
+ * calculada de forma independente a partir de chaves sorteadas por um
+ * {@link SplittableRandom}, pelo que podem ser gerados em streaming, por
+ * qualquer ordem ou em paralelo, obtendo sempre o mesmo resultado.
+ * A semente por omissão pode ser definida com a propriedade {@code bench.semente}.
  *
  * @author Guilherme Rosmaninho
  * @version 1.0
  */
 public class GerarChaves {
 
+    /** Semente usada pelos métodos que não recebem uma semente explícita. */
+    public static final long SEMENTE = Long.getLong("bench.semente", 20250406L);
+
     /**
      * Gera um conjunto de chaves ordenadas de 1 até n.
      *
@@ -40,9 +49,19 @@ public class GerarChaves {
      * @return array embaralhado com inteiros de 1 até n
      */
     public static int[] generateC(int n) {
-        int[] arr = range(1, n);
-        shuffle(arr);
-        return arr;
+        return generateC(n, SEMENTE);
+    }
+
+    /**
+     * Gera um conjunto de chaves aleatoriamente embaralhadas no intervalo de 1 até n,
+     * determinado pela semente indicada. A geração corre em paralelo.
+     *
+     * @param n tamanho do conjunto
+     * @param semente semente da permutação
+     * @return array embaralhado com inteiros de 1 até n
+     */
+    public static int[] generateC(int n, long semente) {
+        return stream("C", n, semente).parallel().toArray();
     }
 
     /**
@@ -53,18 +72,152 @@ public class GerarChaves {
      * @return array com muitos valores repetidos e alguns distintos
      */
     public static int[] generateD(int n) {
-        Random rand = new Random();
-        int[] arr = new int[n];
-        int numeroRepetidos = (int) (0.9 * n);
-        for (int i = 0; i < n; i++) {
-            if (i <= numeroRepetidos) {
-                arr[i] = 1;
+        return generateD(n, SEMENTE);
+    }
+
+    /**
+     * Gera um conjunto de chaves com 90% dos elementos repetidos (valor 1)
+     * e os restantes com números aleatórios entre 2 e n, determinado pela
+     * semente indicada. A geração corre em paralelo.
+     *
+     * @param n tamanho do conjunto
+     * @param semente semente dos valores e da permutação
+     * @return array com muitos valores repetidos e alguns distintos
+     */
+    public static int[] generateD(int n, long semente) {
+        return stream("D", n, semente).parallel().toArray();
+    }
+
+    /**
+     * Gera um dos conjuntos A a D com a semente por omissão.
+     *
+     * @param conjunto rótulo do conjunto ("A", "B", "C" ou "D")
+     * @param n tamanho do conjunto
+     * @return array com as chaves do conjunto
+     */
+    public static int[] gerar(String conjunto, int n) {
+        return stream(conjunto, n, SEMENTE).parallel().toArray();
+    }
+
+    /**
+     * Produz as chaves de um dos conjuntos A a D em streaming, sem as guardar.
+     *
+     * Cada posição é calculada de forma independente, pelo que a stream pode ser
+     * paralela ou percorrida por um {@code PrimitiveIterator.OfInt} e produz
+     * sempre a mesma sequência para a mesma semente.
+     *
+     * @param conjunto rótulo do conjunto ("A", "B", "C" ou "D")
+     * @param n tamanho do conjunto
+     * @param semente semente dos conjuntos aleatórios (ignorada em A e B)
+     * @return stream ordenada com as n chaves do conjunto
+     */
+    public static IntStream stream(String conjunto, int n, long semente) {
+        switch (conjunto) {
+            case "A":
+                return IntStream.rangeClosed(1, n);
+            case "B":
+                return IntStream.range(0, n).map(i -> n - i);
+            case "C": {
+                Permutacao permutacao = new Permutacao(n, semente);
+                return IntStream.range(0, n).map(i -> (int) permutacao.aplicar(i) + 1);
+            }
+            case "D": {
+                Permutacao permutacao = new Permutacao(n, semente);
+                long chaveValores = new SplittableRandom(~semente).nextLong();
+                int numeroRepetidos = (int) (0.9 * n);
+                return IntStream.range(0, n).map(i -> {
+                    long posicao = permutacao.aplicar(i);
+                    if (posicao <= numeroRepetidos) return 1;
+                    return (int) Math.floorMod(misturar(chaveValores + posicao), (long) (n - 1)) + 2; // Número entre 2 e n
+                });
+            }
+            default:
+                throw new IllegalArgumentException("Conjunto desconhecido: " + conjunto);
+        }
+    }
+
+    /** Operação de uma carga mista: pesquisa de uma chave. */
+    public static final byte LEITURA = 0;
+
+    /** Operação de uma carga mista: inserção de uma chave. */
+    public static final byte ESCRITA = 1;
+
+    /** Operação de uma carga mista: percurso de um intervalo de chaves. */
+    public static final byte INTERVALO = 2;
+
+    /** Número de chaves consecutivas abrangidas por cada operação {@link #INTERVALO}. */
+    public static final int COMPRIMENTO_INTERVALO = 100;
+
+    /**
+     * Sequência de operações sobre uma árvore previamente carregada com as
+     * chaves 1 até {@code base}.
+     */
+    public static class Carga {
+        /** Número de chaves da árvore antes da primeira operação. */
+        public final int base;
+        /** Tipo de cada operação ({@link #LEITURA}, {@link #ESCRITA} ou {@link #INTERVALO}). */
+        public final byte[] tipos;
+        /** Chave de cada operação (início do intervalo nas operações {@link #INTERVALO}). */
+        public final int[] chaves;
+
+        Carga(int base, byte[] tipos, int[] chaves) {
+            this.base = base;
+            this.tipos = tipos;
+            this.chaves = chaves;
+        }
+    }
+
+    /**
+     * Gera uma carga mista de leituras, escritas e percursos de intervalos.
+     *
+     * As leituras que acertam e os intervalos escolhem uma das chaves 1..base
+     * segundo a popularidade indicada: uniforme quando {@code teta} é 0, ou
+     * Zipfiana com esse expoente (0.99 é o valor habitual do YCSB). Os postos de
+     * popularidade são espalhados pelo espaço de chaves por uma permutação, para
+     * que as chaves mais procuradas não sejam vizinhas. As leituras que falham
+     * procuram chaves entre 2*base+1 e 3*base, que nunca são inseridas, e as
+     * escritas inserem chaves novas entre base+1 e 2*base.
+     *
+     * @param base número de chaves pré-carregadas
+     * @param operacoes número de operações
+     * @param fracaoEscritas fração de escritas, entre 0 e 1
+     * @param fracaoIntervalos fração de percursos de intervalos, entre 0 e 1
+     * @param fracaoAcertos fração das leituras que procuram uma chave existente
+     * @param teta expoente da distribuição Zipfiana, em [0, 1); 0 para uniforme
+     * @param semente semente da carga
+     * @return a carga gerada
+     */
+    public static Carga gerarCarga(int base, int operacoes, double fracaoEscritas, double fracaoIntervalos,
+                                   double fracaoAcertos, double teta, long semente) {
+        if (base < 1 || base > Integer.MAX_VALUE / 3) {
+            throw new IllegalArgumentException("Base fora do intervalo suportado: " + base);
+        }
+        if (teta < 0.0 || teta >= 1.0) {
+            throw new IllegalArgumentException("Expoente Zipfiano fora de [0, 1): " + teta);
+        }
+
+        SplittableRandom aleatorio = new SplittableRandom(semente);
+        Permutacao popularidade = new Permutacao(base, aleatorio.nextLong());
+        Zipf zipf = teta > 0.0 ? new Zipf(base, teta) : null;
+        byte[] tipos = new byte[operacoes];
+        int[] chaves = new int[operacoes];
+
+        for (int i = 0; i < operacoes; i++) {
+            double sorteio = aleatorio.nextDouble();
+            if (sorteio < fracaoEscritas) {
+                tipos[i] = ESCRITA;
+                chaves[i] = base + 1 + aleatorio.nextInt(base);
             } else {
-                arr[i] = rand.nextInt(n - 1) + 2; // Número entre 2 e n
+                tipos[i] = sorteio < fracaoEscritas + fracaoIntervalos ? INTERVALO : LEITURA;
+                if (tipos[i] == LEITURA && aleatorio.nextDouble() >= fracaoAcertos) {
+                    chaves[i] = 2 * base + 1 + aleatorio.nextInt(base);
+                } else {
+                    long posto = zipf != null ? zipf.sortear(aleatorio.nextDouble()) : aleatorio.nextInt(base);
+                    chaves[i] = (int) popularidade.aplicar(posto) + 1;
+                }
             }
         }
-        shuffle(arr);
-        return arr;
+        return new Carga(base, tipos, chaves);
     }
 
     /**
@@ -81,14 +234,12 @@ public class GerarChaves {
     }
 
     /**
-     * Embaralha aleatoriamente os elementos de um array.
+     * Inverte a ordem dos elementos de um array.
      *
-     * @param arr array de inteiros a ser embaralhado
+     * @param arr array de inteiros a ser invertido
      */
-    private static void shuffle(int[] arr) {
-        Random rand = new Random();
-        for (int i = arr.length - 1; i > 0; i--) {
-            int j = rand.nextInt(i + 1);
+    private static void inverter(int[] arr) {
+        for (int i = 0, j = arr.length - 1; i < j; i++, j--) {
             int tmp = arr[i];
             arr[i] = arr[j];
             arr[j] = tmp;
@@ -96,15 +247,104 @@ public class GerarChaves {
     }
 
     /**
-     * Inverte a ordem dos elementos de um array.
+     * Função de mistura de 64 bits (a mesma usada pelo {@link SplittableRandom}).
      *
-     * @param arr array de inteiros a ser invertido
+     * @param z valor a misturar
+     * @return valor com os bits bem distribuídos
      */
-    private static void inverter(int[] arr) {
-        for (int i = 0, j = arr.length - 1; i < j; i++, j--) {
-            int tmp = arr[i];
-            arr[i] = arr[j];
-            arr[j] = tmp;
+    private static long misturar(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Permutação pseudoaleatória de [0, n) calculável posição a posição.
+     *
+     * É uma rede de Feistel de quatro voltas sobre o menor domínio 2^2k que
+     * contém n; as posições que caem fora de [0, n) voltam a ser cifradas até
+     * lá entrarem (cycle walking), o que mantém a bijeção.
+     */
+    private static class Permutacao {
+        private final int n;
+        private final int meiaLargura;
+        private final long mascara;
+        private final long[] chaves = new long[4];
+
+        /**
+         * Cria a permutação de [0, n) determinada pela semente.
+         *
+         * @param n tamanho do domínio
+         * @param semente semente das chaves das voltas
+         */
+        Permutacao(int n, long semente) {
+            this.n = n;
+            int bits = Math.max(2, 64 - Long.numberOfLeadingZeros(Math.max(1, n - 1)));
+            this.meiaLargura = (bits + 1) / 2;
+            this.mascara = (1L << meiaLargura) - 1;
+            SplittableRandom aleatorio = new SplittableRandom(semente);
+            for (int i = 0; i < chaves.length; i++) chaves[i] = aleatorio.nextLong();
+        }
+
+        /**
+         * Devolve a imagem de uma posição.
+         *
+         * @param i posição em [0, n)
+         * @return posição permutada em [0, n)
+         */
+        long aplicar(long i) {
+            long x = i;
+            do {
+                long esquerda = x >>> meiaLargura, direita = x & mascara;
+                for (long chave : chaves) {
+                    long nova = esquerda ^ (misturar(direita ^ chave) & mascara);
+                    esquerda = direita;
+                    direita = nova;
+                }
+                x = (esquerda << meiaLargura) | direita;
+            } while (x >= n);
+            return x;
+        }
+    }
+
+    /**
+     * Distribuição Zipfiana sobre os postos [0, n), amostrada pelo método de
+     * Gray et al. ("Quickly Generating Billion-Record Synthetic Databases"),
+     * o mesmo do YCSB: a constante de normalização é calculada uma vez e cada
+     * amostra custa apenas uma potência.
+     */
+    private static class Zipf {
+        private final long n;
+        private final double teta, zetaN, alfa, eta;
+
+        /**
+         * Prepara a distribuição.
+         *
+         * @param n número de postos
+         * @param teta expoente, em (0, 1)
+         */
+        Zipf(long n, double teta) {
+            this.n = n;
+            this.teta = teta;
+            double zeta = 0.0;
+            for (long i = 1; i <= n; i++) zeta += 1.0 / Math.pow(i, teta);
+            this.zetaN = zeta;
+            double zeta2 = 1.0 + Math.pow(0.5, teta);
+            this.alfa = 1.0 / (1.0 - teta);
+            this.eta = (1.0 - Math.pow(2.0 / n, 1.0 - teta)) / (1.0 - zeta2 / zetaN);
+        }
+
+        /**
+         * Converte um valor uniforme num posto; o posto 0 é o mais popular.
+         *
+         * @param u valor uniforme em [0, 1)
+         * @return posto em [0, n)
+         */
+        long sortear(double u) {
+            double uz = u * zetaN;
+            if (uz < 1.0) return 0;
+            if (uz < 1.0 + Math.pow(0.5, teta)) return Math.min(1, n - 1);
+            return Math.min(n - 1, (long) (n * Math.pow(eta * u - eta + 1.0, alfa)));
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,97 @@
+/**
+ * Histograma de latências com buckets log-lineares, no estilo do HdrHistogram.
+ *
+ * Os valores até 63 são guardados exatamente; acima disso cada potência de 2
+ * é dividida em 64 buckets, o que limita o erro relativo dos percentis a
+ * cerca de 1,6%. Todos os buckets são reservados na construção, pelo que
+ * {@link #registar(long)} não faz alocações e pode ser usado em cada operação.
+ *
+ * @author Guilherme Rosmaninho
+ * @version 1.0
+ */
+public class Histograma {
+
+    /** Bits significativos guardados por valor. */
+    private static final int BITS_SUB = 6;
+
+    /** Número de buckets por potência de 2. */
+    private static final int SUB = 1 << BITS_SUB;
+
+    private final long[] contagens = new long[(64 - BITS_SUB + 1) * SUB];
+    private long total = 0;
+    private long max = 0;
+
+    /**
+     * Regista um valor (por exemplo, uma latência em nanossegundos).
+     *
+     * @param valor valor a registar; valores negativos contam como 0
+     */
+    public void registar(long valor) {
+        if (valor < 0) valor = 0;
+        contagens[indice(valor)]++;
+        total++;
+        if (valor > max) max = valor;
+    }
+
+    /**
+     * Devolve o número de valores registados.
+     *
+     * @return número de valores
+     */
+    public long total() {
+        return total;
+    }
+
+    /**
+     * Devolve o maior valor registado.
+     *
+     * @return valor máximo, ou 0 se o histograma estiver vazio
+     */
+    public long max() {
+        return max;
+    }
+
+    /**
+     * Devolve um percentil dos valores registados, arredondado para o limite
+     * superior do bucket onde cai.
+     *
+     * @param p percentil pretendido, entre 0 e 1
+     * @return valor do percentil, ou 0 se o histograma estiver vazio
+     */
+    public long percentil(double p) {
+        if (total == 0) return 0;
+        long alvo = Math.max(1, (long) Math.ceil(p * total));
+        long acumulado = 0;
+        for (int i = 0; i < contagens.length; i++) {
+            acumulado += contagens[i];
+            if (acumulado >= alvo) return Math.min(limiteSuperior(i), max);
+        }
+        return max;
+    }
+
+    /**
+     * Calcula o bucket de um valor não negativo.
+     *
+     * @param valor valor a classificar
+     * @return índice do bucket
+     */
+    private static int indice(long valor) {
+        if (valor < SUB) return (int) valor;
+        int expoente = 63 - Long.numberOfLeadingZeros(valor);
+        int mantissa = (int) (valor >>> (expoente - BITS_SUB));
+        return (expoente - BITS_SUB + 1) * SUB + (mantissa - SUB);
+    }
+
+    /**
+     * Devolve o maior valor que cai num bucket.
+     *
+     * @param indice índice do bucket
+     * @return limite superior do bucket
+     */
+    private static long limiteSuperior(int indice) {
+        if (indice < SUB) return indice;
+        int expoente = indice / SUB + BITS_SUB - 1;
+        long mantissa = indice % SUB + SUB;
+        return ((mantissa + 1) << (expoente - BITS_SUB)) - 1;
+    }
+}
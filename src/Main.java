@@ -1,106 +1,65 @@
 import java.io.FileWriter;
 import java.io.IOException;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.Locale;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 /**
  * Classe principal responsável por realizar testes de desempenho
- * com os diferentes tipos de árvores (BST, AVL, VP, TREAP),
- * inserindo diferentes conjuntos de dados e registrando os tempos
- * e rotações num ficheiro CSV.
+ * com os diferentes tipos de árvores (BST, AVL, VP, TREAP, BTREE, ART,
+ * SPLAY, SCAPEGOAT), inserindo diferentes conjuntos de dados e registrando os tempos
+ * e rotações num ficheiro CSV. Cada célula é medida através de {@link Benchmark},
+ * com iterações de aquecimento e estatísticas sobre várias iterações.
  *
  * @author Guilherme Rosmaninho
  * @version 1.0
  */
 public class Main {
 
+    /** Tamanhos dos conjuntos de dados da matriz principal. */
+    static final int[] SIZES = {10000, 25000, 50000, 75000, 100000, 250000, 500000, 750000, 1000000, 2000000, 3000000, 4000000, 5000000};
+
+    /** Tipos de árvore da matriz principal. */
+    static final String[] TREE_TYPES = {"BST", "AVL", "VP", "TREAP", "BTREE", "ART", "SPLAY", "SCAPEGOAT"};
+
+    /** Rótulos dos conjuntos de dados gerados por {@link GerarChaves}. */
+    static final String[] LABELS = {"A", "B", "C", "D"};
+
     /**
      * Método principal que executa os testes e gera o ficheiro CSV com os resultados.
      *
-     * @param args argumentos da linha de comandos (não utilizados).
+     * Se forem indicados argumentos, executa apenas a experiência com esse nome
+     * (ver {@link #executarExperiencia(String[])}).
+     *
+     * @param args argumentos da linha de comandos (opcionalmente, o nome de uma experiência).
      */
     public static void main(String[] args) {
-        int[] sizes = {10000, 25000, 50000, 75000, 100000, 250000, 500000, 750000, 1000000, 2000000, 3000000, 4000000, 5000000};
-        String[] treeTypes = {"BST", "AVL", "VP", "TREAP"};
-        String[] labels = {"A", "B", "C", "D"};
+        if (args.length > 0) {
+            executarExperiencia(args);
+            return;
+        }
 
         // Obter data/hora atual e formatar para nome do ficheiro
-        LocalDateTime now = LocalDateTime.now();
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss");
-        String formattedDateTime = now.format(formatter);
-        String fileName = "resultados-" + formattedDateTime + ".csv";
+        String fileName = Benchmark.nomeFicheiro(null);
 
         try (FileWriter writer = new FileWriter(fileName)) {
-            writer.write("TreeType;Dataset;Size;Time(s);Rotations\n");
+            writer.write(Benchmark.cabecalhoCsv());
 
-            for (String treeType : treeTypes) {
+            for (String treeType : TREE_TYPES) {
                 System.out.printf("Tree Type: %s%n", treeType);
 
-                for (int size : sizes) {
-                    if (treeType.equals("BST") && size > 100000) {
+                for (int size : SIZES) {
+                    if (!celulaAtiva(treeType, size)) {
                         continue;
                     }
 
-                    if (!treeType.equals("BST") && size < 100000) {
-                        continue;
-                    }
+                    // Cada conjunto é gerado só quando é usado, para que apenas um esteja no heap
+                    for (String label : LABELS) {
+                        int[] dataset = GerarChaves.gerar(label, size);
 
-                    int[][] datasets = {
-                            GerarChaves.generateA(size),
-                            GerarChaves.generateB(size),
-                            GerarChaves.generateC(size),
-                            GerarChaves.generateD(size)
-                    };
-
-                    for (int i = 0; i < datasets.length; i++) {
-                        int[] dataset = datasets[i];
-                        String label = labels[i];
-
-                        Temporizador temporizador = new Temporizador();
-                        double time = 0.0;
-                        int rotations = 0;
-
-                        switch (treeType) {
-                            case "BST":
-                                BinaryTree bst = new BinaryTree();
-                                temporizador.inicio();
-                                for (int key : dataset) bst.inserir(key);
-                                time = temporizador.fim();
-                                System.out.printf("  -> BST - Conjunto %s (Size: %d): Tempo = %.4f s%n", label, size, time);
-                                writer.write(String.format(Locale.FRANCE, "%s;%s;%d;%.4f;%d\n", treeType, label, size, time, 0));
-                                break;
-
-                            case "AVL":
-                                AVLTree avl = new AVLTree();
-                                temporizador.inicio();
-                                for (int key : dataset) avl.insert(key);
-                                time = temporizador.fim();
-                                rotations = avl.rotacoes;
-                                System.out.printf("  -> AVL - Conjunto %s (Size: %d): Tempo = %.4f s, Rotações = %d%n", label, size, time, rotations);
-                                writer.write(String.format(Locale.FRANCE, "%s;%s;%d;%.4f;%d\n", treeType, label, size, time, rotations));
-                                break;
-
-                            case "VP":
-                                VPTree rb = new VPTree();
-                                temporizador.inicio();
-                                for (int key : dataset) rb.insert(key);
-                                time = temporizador.fim();
-                                rotations = rb.rotacoes;
-                                System.out.printf("  -> VP - Conjunto %s (Size: %d): Tempo = %.4f s, Rotações = %d%n", label, size, time, rotations);
-                                writer.write(String.format(Locale.FRANCE, "%s;%s;%d;%.4f;%d\n", treeType, label, size, time, rotations));
-                                break;
-
-                            case "TREAP":
-                                TreapTree treap = new TreapTree();
-                                temporizador.inicio();
-                                for (int key : dataset) treap.insert(key);
-                                time = temporizador.fim();
-                                rotations = treap.rotacoes;
-                                System.out.printf("  -> TREAP - Conjunto %s (Size: %d): Tempo = %.4f s, Rotações = %d%n", label, size, time, rotations);
-                                writer.write(String.format(Locale.FRANCE, "%s;%s;%d;%.4f;%d\n", treeType, label, size, time, rotations));
-                                break;
-                        }
+                        Benchmark.Resultado r = Benchmark.medir(treeType, dataset);
+                        System.out.printf("  -> %s - Conjunto %s (Size: %d): Tempo = %.4f ± %.4f s, Rotações = %d%n",
+                                treeType, label, size, r.media, r.erro, r.rotacoes);
+                        writer.write(Benchmark.linhaCsv(treeType, label, size, r));
                     }
                 }
             }
@@ -111,4 +70,124 @@ public class Main {
             System.err.println("Erro ao escrever no ficheiro: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Indica se uma célula (árvore, tamanho) faz parte da matriz principal:
+     * a BST só é medida até 100000 chaves e as restantes árvores a partir daí.
+     *
+     * @param treeType tipo de árvore
+     * @param size tamanho do conjunto
+     * @return {@code true} se a célula deve ser medida
+     */
+    static boolean celulaAtiva(String treeType, int size) {
+        if (treeType.equals("BST")) return size <= 100000;
+        return size >= 100000;
+    }
+
+    /**
+     * Executa uma experiência adicional, que grava o seu próprio ficheiro CSV.
+     *
+     * @param args nome da experiência seguido dos seus argumentos
+     */
+    private static void executarExperiencia(String[] args) {
+        String nome = args[0];
+        Path ficheiro = null; // ficheiro de chaves indicado na linha de comandos, se houver
+        try {
+            switch (nome) {
+                case "armazenamento":
+                    BenchmarkArmazenamento.executar();
+                    break;
+                case "iterativo":
+                    Benchmark.executarMatriz("iterativo",
+                            new String[]{"AVL", "AVL-ITER", "VP", "VP-ITER", "TREAP", "TREAP-ITER"},
+                            new int[]{100000, 1000000, 5000000});
+                    break;
+                case "bulk":
+                    Benchmark.executarMatriz("bulk",
+                            new String[]{"AVL", "AVL-BULK", "VP", "VP-BULK", "TREAP", "TREAP-BULK"},
+                            new int[]{100000, 500000, 1000000, 2000000, 5000000});
+                    break;
+                case "paralelo":
+                    BenchmarkParalelo.executar();
+                    break;
+                case "finger":
+                    Benchmark.executarMatriz("finger",
+                            new String[]{"BST-FINGER", "AVL", "AVL-FINGER", "VP", "VP-FINGER"},
+                            new int[]{100000, 500000, 1000000, 2000000, 5000000});
+                    break;
+                case "lote":
+                    BenchmarkLote.executar();
+                    break;
+                case "carga":
+                    BenchmarkCarga.executar();
+                    break;
+                case "ordem":
+                    BenchmarkOrdem.executar();
+                    break;
+                case "concorrente":
+                    BenchmarkConcorrente.executar();
+                    break;
+                case "fragmentado":
+                    BenchmarkFragmentado.executar();
+                    break;
+                case "persistente":
+                    BenchmarkPersistente.executar();
+                    break;
+                case "congelado":
+                    BenchmarkCongelado.executar();
+                    break;
+                case "repetidas":
+                    BenchmarkRepetidas.executar();
+                    break;
+                case "gravacao":
+                    BenchmarkGravacao.executar();
+                    break;
+                case "percurso":
+                    BenchmarkPercurso.executar();
+                    break;
+                case "adaptativo":
+                    BenchmarkAdaptativo.executar();
+                    break;
+                case "gerar":
+                    if (!argumentos(args, 4, "gerar <conjunto> <n> <ficheiro>")) return;
+                    ficheiro = Paths.get(args[3]);
+                    FicheiroChaves.gravar(args[1], Integer.parseInt(args[2]), GerarChaves.SEMENTE, ficheiro);
+                    break;
+                case "ingestao":
+                    if (!argumentos(args, 3, "ingestao <tipo> <ficheiro>")) return;
+                    ficheiro = Paths.get(args[2]);
+                    BenchmarkIngestao.executar(args[1], ficheiro);
+                    break;
+                case "isolado":
+                    ExecutorIsolado.executar();
+                    break;
+                case "celula":
+                    if (!argumentos(args, 4, "celula <tipo> <conjunto> <n>")) return;
+                    ExecutorIsolado.medirCelula(args[1], args[2], Integer.parseInt(args[3]));
+                    break;
+                default:
+                    System.err.println("Experiência desconhecida: " + nome);
+            }
+        } catch (NumberFormatException e) {
+            System.err.println("Número inválido: " + e.getMessage());
+        } catch (IOException e) {
+            System.err.println("Erro de entrada/saída" + (ficheiro != null ? " em " + ficheiro : "") + ": "
+                    + e.getClass().getSimpleName() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Verifica se uma experiência recebeu os argumentos de que precisa e,
+     * se não recebeu, mostra a forma de a invocar.
+     *
+     * @param args argumentos da linha de comandos, começando pelo nome da experiência
+     * @param n número de argumentos necessários, incluindo o nome
+     * @param uso forma de invocar a experiência
+     * @return true se houver argumentos suficientes
+     */
+    private static boolean argumentos(String[] args, int n, String uso) {
+        if (args.length >= n) return true;
+        System.err.println("Uso: java Main " + uso);
+        return false;
+    }
+}
@@ -0,0 +1,297 @@
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Classe que representa uma Árvore Scapegoat (Galperin e Rivest), uma árvore
+ * binária de busca equilibrada cujos nós guardam apenas a chave e os dois
+ * filhos, sem altura, cor, prioridade ou tamanho, e por isso ocupam menos
+ * memória do que os das outras árvores equilibradas.
+ *
+ * Não há rotações: quando uma inserção fica mais funda do que
+ * log<sub>1/α</sub>(n), sobe-se pelo caminho até ao primeiro antepassado
+ * desequilibrado (o "bode expiatório", cujo filho tem mais de α do seu
+ * tamanho) e essa subárvore é reconstruída perfeitamente equilibrada. Os
+ * tamanhos só são contados nessa altura, percorrendo as subárvores.
+ *
+ * @author Guilherme Rosmaninho
+ * @version 1.0
+ */
+public class ScapegoatTree {
+
+    /** Fator de equilíbrio α = 2/3, expresso como numerador e denominador. */
+    private static final int ALFA_NUMERADOR = 2, ALFA_DENOMINADOR = 3;
+
+    /**
+     * Classe interna que representa um nó da Árvore Scapegoat.
+     */
+    private static class Node {
+        int chave;
+        Node esquerda, direita;
+
+        /**
+         * Construtor do nó.
+         *
+         * @param chave A chave inteira a ser armazenada no nó.
+         */
+        Node(int chave) {
+            this.chave = chave;
+        }
+    }
+
+    private Node root;
+
+    /** Número de chaves da árvore. */
+    private int tamanho = 0;
+
+    /** Profundidade máxima permitida, floor(log<sub>3/2</sub>(tamanho)), e o tamanho a partir do qual aumenta. */
+    private int limiteProfundidade = 0;
+    private double proximoLimite = 1.5;
+
+    /** Caminho da raiz até ao ponto de inserção, reutilizado entre inserções. */
+    private Node[] caminho = new Node[64];
+
+    /** Nós da subárvore a reconstruir, por ordem, reutilizado entre reconstruções. */
+    private Node[] ordenados = new Node[64];
+
+    /** Pilha dos percursos de contagem e reconstrução, reutilizada para não alocar. */
+    private Node[] pilha = new Node[64];
+
+    /**
+     * Número total de subárvores reconstruídas durante as inserções.
+     */
+    public int reconstrucoes = 0;
+
+    /**
+     * Número total de nós religados pelas reconstruções.
+     */
+    public long nosReconstruidos = 0;
+
+    /**
+     * Número total de comparações de chaves feitas nas descidas das inserções.
+     */
+    public long comparacoes = 0;
+
+    /**
+     * Insere uma chave na árvore, sem recursão, e reconstrói a subárvore do
+     * bode expiatório se o novo nó ficar demasiado fundo. As chaves repetidas
+     * são ignoradas.
+     *
+     * @param chave A chave a ser inserida.
+     */
+    public void insert(int chave) {
+        if (root == null) {
+            root = new Node(chave);
+            tamanho = 1;
+            return;
+        }
+
+        Node atual = root;
+        int profundidade = 0;
+        while (true) {
+            if (profundidade == caminho.length) caminho = Arrays.copyOf(caminho, profundidade * 2);
+            caminho[profundidade++] = atual;
+            comparacoes++;
+            if (chave < atual.chave) {
+                if (atual.esquerda == null) {
+                    atual.esquerda = new Node(chave);
+                    break;
+                }
+                atual = atual.esquerda;
+            } else if (chave > atual.chave) {
+                if (atual.direita == null) {
+                    atual.direita = new Node(chave);
+                    break;
+                }
+                atual = atual.direita;
+            } else {
+                return;
+            }
+        }
+
+        tamanho++;
+        while (tamanho >= proximoLimite) {
+            limiteProfundidade++;
+            proximoLimite *= 1.5;
+        }
+        if (profundidade <= limiteProfundidade) return;
+
+        // O novo nó está na profundidade 'profundidade': procura o bode expiatório a subir
+        Node filho = chave < caminho[profundidade - 1].chave ? caminho[profundidade - 1].esquerda : caminho[profundidade - 1].direita;
+        int tamanhoFilho = 1;
+        for (int i = profundidade - 1; i >= 0; i--) {
+            Node node = caminho[i];
+            Node irmao = node.esquerda == filho ? node.direita : node.esquerda;
+            int tamanhoNode = tamanhoFilho + 1 + contar(irmao);
+            if ((long) tamanhoFilho * ALFA_DENOMINADOR > (long) tamanhoNode * ALFA_NUMERADOR) {
+                Node reconstruida = reconstruir(node, tamanhoNode);
+                if (i == 0) root = reconstruida;
+                else if (caminho[i - 1].esquerda == node) caminho[i - 1].esquerda = reconstruida;
+                else caminho[i - 1].direita = reconstruida;
+                return;
+            }
+            filho = node;
+            tamanhoFilho = tamanhoNode;
+        }
+    }
+
+    /**
+     * Verifica se uma chave existe na árvore.
+     *
+     * @param chave chave a procurar
+     * @return true se a chave existir, false caso contrário
+     */
+    public boolean contains(int chave) {
+        Node atual = root;
+        while (atual != null) {
+            if (chave < atual.chave) atual = atual.esquerda;
+            else if (chave > atual.chave) atual = atual.direita;
+            else return true;
+        }
+        return false;
+    }
+
+    /**
+     * Percorre por ordem crescente as chaves do intervalo [de, ate], sem
+     * recursão e sem visitar as subárvores que ficam fora do intervalo.
+     *
+     * @param de limite inferior (inclusive)
+     * @param ate limite superior (inclusive)
+     * @param acao ação aplicada a cada chave do intervalo
+     * @return o número de chaves visitadas
+     */
+    public int range(int de, int ate, IntConsumer acao) {
+        int visitadas = 0;
+        ArrayDeque<Node> pilha = new ArrayDeque<>();
+        Node atual = root;
+        while (true) {
+            while (atual != null) {
+                if (atual.chave < de) {
+                    atual = atual.direita;
+                } else {
+                    pilha.push(atual);
+                    atual = atual.esquerda;
+                }
+            }
+            if (pilha.isEmpty()) return visitadas;
+
+            Node node = pilha.pop();
+            if (node.chave > ate) return visitadas;
+            acao.accept(node.chave);
+            visitadas++;
+            atual = node.direita;
+        }
+    }
+
+    /**
+     * Conta os nós de uma subárvore sem recursão.
+     */
+    private int contar(Node node) {
+        if (node == null) return 0;
+        int total = 0, topo = 0;
+        pilha[topo++] = node;
+        while (topo > 0) {
+            Node atual = pilha[--topo];
+            total++;
+            if (topo + 2 > pilha.length) pilha = Arrays.copyOf(pilha, pilha.length * 2);
+            if (atual.esquerda != null) pilha[topo++] = atual.esquerda;
+            if (atual.direita != null) pilha[topo++] = atual.direita;
+        }
+        return total;
+    }
+
+    /**
+     * Reconstrói uma subárvore perfeitamente equilibrada com os mesmos nós.
+     *
+     * @param raiz raiz da subárvore
+     * @param n número de nós da subárvore
+     * @return a raiz da subárvore reconstruída
+     */
+    private Node reconstruir(Node raiz, int n) {
+        if (ordenados.length < n) ordenados = new Node[Math.max(n, ordenados.length * 2)];
+
+        // Percurso em ordem sem recursão
+        Node atual = raiz;
+        int i = 0, topo = 0;
+        while (atual != null || topo > 0) {
+            while (atual != null) {
+                if (topo == pilha.length) pilha = Arrays.copyOf(pilha, topo * 2);
+                pilha[topo++] = atual;
+                atual = atual.esquerda;
+            }
+            atual = pilha[--topo];
+            ordenados[i++] = atual;
+            atual = atual.direita;
+        }
+
+        Node nova = ligar(0, n - 1);
+        Arrays.fill(ordenados, 0, n, null);
+        reconstrucoes++;
+        nosReconstruidos += n;
+        return nova;
+    }
+
+    /**
+     * Liga os nós ordenados entre {@code inicio} e {@code fim} numa árvore
+     * perfeitamente equilibrada (a recursão tem profundidade logarítmica).
+     */
+    private Node ligar(int inicio, int fim) {
+        if (inicio > fim) return null;
+        int meio = (inicio + fim) >>> 1;
+        Node node = ordenados[meio];
+        node.esquerda = ligar(inicio, meio - 1);
+        node.direita = ligar(meio + 1, fim);
+        return node;
+    }
+
+    /**
+     * Devolve a altura da árvore (número de nós no caminho mais longo).
+     *
+     * @return altura da árvore, ou 0 se estiver vazia
+     */
+    public int altura() {
+        return (int) medirForma()[2];
+    }
+
+    /**
+     * Devolve a profundidade média dos nós, isto é, o comprimento médio do
+     * caminho desde a raiz (a raiz tem profundidade 1).
+     *
+     * @return profundidade média, ou 0 se a árvore estiver vazia
+     */
+    public double profundidadeMedia() {
+        long[] forma = medirForma();
+        return forma[0] == 0 ? 0.0 : (double) forma[1] / forma[0];
+    }
+
+    /**
+     * Percorre a árvore sem recursão e mede a sua forma.
+     *
+     * @return número de nós, soma das profundidades e altura
+     */
+    private long[] medirForma() {
+        long[] forma = new long[3];
+        if (root == null) return forma;
+
+        ArrayDeque<Node> nos = new ArrayDeque<>();
+        ArrayDeque<Integer> profundidades = new ArrayDeque<>();
+        nos.push(root);
+        profundidades.push(1);
+        while (!nos.isEmpty()) {
+            Node node = nos.pop();
+            int profundidade = profundidades.pop();
+            forma[0]++;
+            forma[1] += profundidade;
+            forma[2] = Math.max(forma[2], profundidade);
+            if (node.esquerda != null) {
+                nos.push(node.esquerda);
+                profundidades.push(profundidade + 1);
+            }
+            if (node.direita != null) {
+                nos.push(node.direita);
+                profundidades.push(profundidade + 1);
+            }
+        }
+        return forma;
+    }
+}
@@ -0,0 +1,298 @@
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.PrimitiveIterator;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Fábrica adaptativa de árvores: amostra as chaves recebidas, estima a
+ * ordenação, a fração de repetidas e o tamanho, e escolhe a árvore e a forma
+ * de carregamento que melhor servem esse perfil.
+ *
+ * As regras, por esta ordem:
+ * <ul>
+ *   <li>Chaves quase ordenadas (num dos sentidos): carregamento ordenado
+ *       ({@link AVLTree#carregar(int[])}, ou ordenação de uma cópia e
+ *       {@link AVLTree#fromSorted(int[])}), porque a inserção chave a chave
+ *       degenera a BST e obriga as árvores balanceadas a rodar em cada
+ *       inserção. Num stream, em que não se pode ordenar sem guardar tudo,
+ *       é usada a inserção com dedo da AVL.</li>
+ *   <li>Muitas repetidas: um {@link FiltroRepetidas} à frente da árvore, que
+ *       é escolhida pela regra seguinte para as chaves distintas.</li>
+ *   <li>Chaves em ordem aleatória: a BST, que não faz rotações e tem
+ *       profundidade esperada logarítmica, até {@link #LIMITE_BST} chaves
+ *       distintas; acima disso, ou num stream de tamanho desconhecido, a
+ *       Árvore Vermelho-Preto, que a garante no pior caso.</li>
+ *   <li>Qualquer outro caso: a Árvore Vermelho-Preto.</li>
+ * </ul>
+ *
+ * A amostra tem {@link #AMOSTRA} posições espaçadas por igual, pelo que o
+ * perfil custa o mesmo qualquer que seja o tamanho do conjunto.
+ *
+ * @author Guilherme Rosmaninho
+ * @version 1.0
+ */
+public class SeletorArvore {
+
+    /** Número de posições amostradas. */
+    public static final int AMOSTRA = 4096;
+
+    /** Número máximo de chaves distintas para a escolha da BST. */
+    public static final int LIMITE_BST = 1000000;
+
+    /** Fração de inversões abaixo da qual (ou acima do complemento) as chaves são tratadas como ordenadas. */
+    static final double LIMITE_ORDEM = 0.1;
+
+    /** Desvio máximo de 1/2 das frações de descidas e de inversões de chaves em ordem aleatória. */
+    static final double DESVIO_ALEATORIO = 0.1;
+
+    /** Fração de repetidas a partir da qual é usado o filtro de repetidas. */
+    static final double LIMITE_REPETIDAS = 0.5;
+
+    /**
+     * Perfil estimado de um conjunto de chaves.
+     */
+    public static final class Perfil {
+        /** Número de chaves, ou -1 num stream de tamanho desconhecido. */
+        public final long tamanho;
+        /** Fração de pares de posições vizinhas em que a chave desce (entre os pares diferentes). */
+        public final double descidas;
+        /** Fração de pares de posições distantes (meio conjunto) que estão invertidos. */
+        public final double inversoes;
+        /** Fração das chaves amostradas que repetem outra chave da amostra. */
+        public final double repetidas;
+
+        Perfil(long tamanho, double descidas, double inversoes, double repetidas) {
+            this.tamanho = tamanho;
+            this.descidas = descidas;
+            this.inversoes = inversoes;
+            this.repetidas = repetidas;
+        }
+
+        /**
+         * Indica se as chaves parecem ordenadas, de forma crescente ou decrescente.
+         *
+         * @return true se as chaves parecerem ordenadas
+         */
+        public boolean ordenadas() {
+            return inversoes <= LIMITE_ORDEM || inversoes >= 1 - LIMITE_ORDEM;
+        }
+
+        /**
+         * Indica se as chaves parecem estar em ordem aleatória, tanto à escala
+         * local (vizinhas) como à global (meio conjunto de distância).
+         *
+         * @return true se as chaves parecerem estar em ordem aleatória
+         */
+        public boolean aleatorias() {
+            return Math.abs(descidas - 0.5) <= DESVIO_ALEATORIO && Math.abs(inversoes - 0.5) <= DESVIO_ALEATORIO;
+        }
+    }
+
+    /**
+     * Árvore e forma de carregamento escolhidas para um perfil.
+     */
+    public static final class Escolha {
+        /** Tipo de árvore (BST, AVL ou VP). */
+        public final String arvore;
+        /** Forma de carregamento (INSERCAO, ORDENADA, DEDO ou FILTRO). */
+        public final String carga;
+        /** Perfil em que a escolha se baseou. */
+        public final Perfil perfil;
+
+        Escolha(String arvore, String carga, Perfil perfil) {
+            this.arvore = arvore;
+            this.carga = carga;
+            this.perfil = perfil;
+        }
+
+        /**
+         * Devolve a escolha no formato {@code ARVORE-CARGA}, como na coluna TreeType dos CSV.
+         *
+         * @return o nome da escolha
+         */
+        public String nome() {
+            return arvore + "-" + carga;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%s (n=%d, descidas=%.3f, inversoes=%.3f, repetidas=%.3f)",
+                    nome(), perfil.tamanho, perfil.descidas, perfil.inversoes, perfil.repetidas);
+        }
+    }
+
+    /**
+     * Amostra um array de chaves e estima o seu perfil.
+     *
+     * @param chaves chaves a analisar
+     * @return o perfil estimado
+     */
+    public static Perfil perfilar(int[] chaves) {
+        return perfilar(chaves, chaves.length, chaves.length);
+    }
+
+    /**
+     * Estima o perfil das primeiras {@code n} chaves de um array.
+     *
+     * @param chaves array de chaves
+     * @param n número de chaves a considerar
+     * @param tamanho tamanho a registar no perfil (-1 se for desconhecido)
+     * @return o perfil estimado
+     */
+    private static Perfil perfilar(int[] chaves, int n, long tamanho) {
+        if (n < 2) return new Perfil(tamanho, 0.0, 0.0, 0.0);
+
+        int m = Math.min(AMOSTRA, n - 1);
+        int[] amostra = new int[m];
+        long subidas = 0, descidas = 0;
+        for (int k = 0; k < m; k++) {
+            int i = (int) ((long) k * (n - 1) / m);
+            amostra[k] = chaves[i];
+            if (chaves[i] < chaves[i + 1]) subidas++;
+            else if (chaves[i] > chaves[i + 1]) descidas++;
+        }
+
+        // Inversões entre cada posição da primeira metade da amostra e a correspondente da segunda
+        int metade = m / 2;
+        long inversoes = 0, pares = 0;
+        for (int k = 0; k < metade; k++) {
+            if (amostra[k] == amostra[k + metade]) continue;
+            pares++;
+            if (amostra[k] > amostra[k + metade]) inversoes++;
+        }
+
+        int[] ordenada = amostra.clone();
+        Arrays.sort(ordenada);
+        long repetidas = 0;
+        for (int k = 1; k < m; k++) if (ordenada[k] == ordenada[k - 1]) repetidas++;
+
+        return new Perfil(tamanho,
+                subidas + descidas == 0 ? 0.0 : (double) descidas / (subidas + descidas),
+                pares == 0 ? 0.0 : (double) inversoes / pares,
+                (double) repetidas / m);
+    }
+
+    /**
+     * Escolhe a árvore e a forma de carregamento para um perfil.
+     *
+     * @param perfil perfil das chaves
+     * @param array true se as chaves estiverem num array (que pode ser ordenado), false num stream
+     * @return a escolha
+     */
+    public static Escolha escolher(Perfil perfil, boolean array) {
+        if (perfil.ordenadas()) return new Escolha("AVL", array ? "ORDENADA" : "DEDO", perfil);
+
+        boolean filtro = perfil.repetidas >= LIMITE_REPETIDAS;
+        double distintas = perfil.tamanho * (1 - perfil.repetidas);
+        boolean bst = perfil.tamanho >= 0 && distintas <= LIMITE_BST && perfil.aleatorias();
+        return new Escolha(bst ? "BST" : "VP", filtro ? "FILTRO" : "INSERCAO", perfil);
+    }
+
+    /**
+     * Amostra um array de chaves e escolhe a árvore e a forma de carregamento.
+     *
+     * @param chaves chaves a carregar
+     * @return a escolha
+     */
+    public static Escolha escolher(int[] chaves) {
+        return escolher(perfilar(chaves), true);
+    }
+
+    /**
+     * Constrói uma árvore com as chaves de um array, escolhendo-a pelo perfil
+     * das chaves. A escolha e o perfil são registados na consola.
+     *
+     * @param chaves chaves a carregar
+     * @return a árvore construída (BinaryTree, AVLTree ou VPTree)
+     */
+    public static Object criar(int[] chaves) {
+        Escolha escolha = escolher(chaves);
+        System.out.println("  -> Seleção adaptativa: " + escolha);
+        return construir(escolha, chaves);
+    }
+
+    /**
+     * Constrói uma árvore com as chaves de um stream. O perfil é estimado com
+     * as primeiras {@link #AMOSTRA} chaves, guardadas enquanto não há escolha;
+     * as restantes são inseridas à medida que chegam. A escolha e o perfil
+     * são registados na consola.
+     *
+     * @param chaves stream das chaves a carregar
+     * @return a árvore construída (BinaryTree, AVLTree ou VPTree)
+     */
+    public static Object criar(IntStream chaves) {
+        PrimitiveIterator.OfInt iterador = chaves.iterator();
+        int[] inicio = new int[AMOSTRA + 1];
+        int n = 0;
+        while (n < inicio.length && iterador.hasNext()) inicio[n++] = iterador.nextInt();
+
+        // Se o stream acabou dentro da amostra, o tamanho é conhecido
+        Escolha escolha = escolher(perfilar(inicio, n, iterador.hasNext() ? -1 : n), false);
+        System.out.println("  -> Seleção adaptativa: " + escolha);
+
+        Object arvore = novaArvore(escolha.arvore);
+        IntConsumer insercao = insercao(arvore, escolha.carga);
+        for (int i = 0; i < n; i++) insercao.accept(inicio[i]);
+        while (iterador.hasNext()) insercao.accept(iterador.nextInt());
+        return arvore;
+    }
+
+    /**
+     * Constrói uma árvore com as chaves de um array segundo uma escolha.
+     *
+     * @param escolha árvore e forma de carregamento
+     * @param chaves chaves a carregar
+     * @return a árvore construída
+     */
+    public static Object construir(Escolha escolha, int[] chaves) {
+        if (escolha.carga.equals("ORDENADA")) {
+            int[] ordenadas = DetetorOrdem.ordenadasSemDuplicados(chaves);
+            if (ordenadas == null) {
+                // Quase ordenadas: a ordenação aproveita as sequências já ordenadas
+                ordenadas = chaves.clone();
+                Arrays.sort(ordenadas);
+            }
+            return AVLTree.fromSorted(ordenadas);
+        }
+
+        Object arvore = novaArvore(escolha.arvore);
+        IntConsumer insercao = insercao(arvore, escolha.carga);
+        for (int chave : chaves) insercao.accept(chave);
+        return arvore;
+    }
+
+    /**
+     * Cria uma árvore vazia do tipo indicado.
+     */
+    private static Object novaArvore(String arvore) {
+        switch (arvore) {
+            case "BST":
+                return new BinaryTree();
+            case "AVL":
+                return new AVLTree();
+            case "VP":
+                return new VPTree();
+            default:
+                throw new IllegalArgumentException("Tipo de árvore desconhecido: " + arvore);
+        }
+    }
+
+    /**
+     * Devolve a inserção de uma árvore para a forma de carregamento indicada.
+     */
+    private static IntConsumer insercao(Object arvore, String carga) {
+        IntConsumer insercao;
+        if (arvore instanceof BinaryTree) {
+            BinaryTree t = (BinaryTree) arvore;
+            insercao = carga.equals("DEDO") ? t::inserirFinger : t::inserir;
+        } else if (arvore instanceof AVLTree) {
+            AVLTree t = (AVLTree) arvore;
+            insercao = carga.equals("DEDO") ? t::insertFinger : t::insert;
+        } else {
+            VPTree t = (VPTree) arvore;
+            insercao = carga.equals("DEDO") ? t::insertFinger : t::insert;
+        }
+        return carga.equals("FILTRO") ? new FiltroRepetidas(insercao) : insercao;
+    }
+}
@@ -0,0 +1,373 @@
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+/**
+ * Árvore fragmentada por intervalos de chaves: o espaço das chaves é dividido
+ * em N intervalos contíguos e cada um tem a sua própria {@link AVLTree} ou
+ * {@link VPTree}, que só é modificada pela thread dedicada a esse fragmento.
+ *
+ * As chaves são encaminhadas pela thread que chama {@link #insert(int)} para
+ * lotes por fragmento; cada lote cheio é entregue à thread do fragmento por uma
+ * fila limitada, que trava o produtor quando um fragmento fica para trás. Como
+ * cada árvore tem um único escritor, não há locks nos nós.
+ *
+ * Os limites dos fragmentos são escolhidos a partir de uma amostra das chaves
+ * (ver {@link #criar(String, int, int[])}), para que conjuntos enviesados não
+ * concentrem a carga num só fragmento.
+ *
+ * Apenas uma thread pode inserir de cada vez. As pesquisas só veem as
+ * inserções anteriores ao último {@link #aguardar()}. Se a inserção falhar
+ * na thread de um fragmento, essa thread deixa de inserir mas continua a
+ * esvaziar a fila, e a falha é relançada pelo {@link #aguardar()} seguinte.
+ *
+ * @author Guilherme Rosmaninho
+ * @version 1.0
+ */
+public class ShardedTree implements AutoCloseable {
+
+    /** Número de chaves de cada lote entregue a um fragmento. */
+    static final int TAMANHO_LOTE = 1024;
+
+    /** Número máximo de lotes à espera em cada fragmento. */
+    static final int CAPACIDADE_FILA = 16;
+
+    /** Lote que indica à thread do fragmento que deve terminar. */
+    private static final Lote FIM = new Lote(new int[0], 0, null);
+
+    /**
+     * Lote de chaves para um fragmento. Um lote com sinal é uma barreira: a
+     * thread do fragmento assinala-o depois de inserir todos os anteriores.
+     */
+    private static final class Lote {
+        final int[] chaves;
+        final int tamanho;
+        final CountDownLatch sinal;
+
+        Lote(int[] chaves, int tamanho, CountDownLatch sinal) {
+            this.chaves = chaves;
+            this.tamanho = tamanho;
+            this.sinal = sinal;
+        }
+    }
+
+    /** Maior chave de cada fragmento, exceto o último (estritamente crescentes). */
+    private final int[] limites;
+
+    private final Object[] arvores;
+    private final IntPredicate[] pesquisas;
+    private final BlockingQueue<Lote>[] filas;
+    private final Thread[] threads;
+
+    /** Lote em preenchimento de cada fragmento e número de chaves já lá postas. */
+    private final int[][] buffers;
+    private final int[] ocupados;
+
+    /** Número de chaves encaminhadas para cada fragmento. */
+    private final long[] cargas;
+
+    /** Tempo, em nanossegundos, que a thread de cada fragmento passou a inserir. */
+    private final long[] temposOcupados;
+
+    /**
+     * Primeira falha da thread de cada fragmento, ou {@code null}. Cada posição
+     * só é escrita pela sua thread, antes de assinalar a barreira seguinte.
+     */
+    private final Throwable[] falhas;
+
+    /**
+     * Cria uma árvore fragmentada com os limites indicados e arranca as
+     * threads dos fragmentos.
+     *
+     * @param treeType tipo das árvores dos fragmentos ("AVL" ou "VP")
+     * @param limites maior chave de cada fragmento exceto o último, estritamente crescentes
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public ShardedTree(String treeType, int[] limites) {
+        for (int i = 1; i < limites.length; i++) {
+            if (limites[i] <= limites[i - 1]) throw new IllegalArgumentException("Os limites têm de ser estritamente crescentes");
+        }
+
+        int n = limites.length + 1;
+        this.limites = limites.clone();
+        arvores = new Object[n];
+        pesquisas = new IntPredicate[n];
+        filas = new BlockingQueue[n];
+        threads = new Thread[n];
+        buffers = new int[n][TAMANHO_LOTE];
+        ocupados = new int[n];
+        cargas = new long[n];
+        temposOcupados = new long[n];
+        falhas = new Throwable[n];
+
+        for (int i = 0; i < n; i++) {
+            IntConsumer insercao;
+            switch (treeType) {
+                case "AVL": {
+                    AVLTree t = new AVLTree();
+                    arvores[i] = t;
+                    insercao = t::insert;
+                    pesquisas[i] = t::contains;
+                    break;
+                }
+                case "VP": {
+                    VPTree t = new VPTree();
+                    arvores[i] = t;
+                    insercao = t::insert;
+                    pesquisas[i] = t::contains;
+                    break;
+                }
+                default:
+                    throw new IllegalArgumentException("Tipo de árvore sem fragmentação: " + treeType);
+            }
+
+            BlockingQueue<Lote> fila = new ArrayBlockingQueue<>(CAPACIDADE_FILA);
+            filas[i] = fila;
+            int fragmento = i;
+            threads[i] = new Thread(() -> consumir(fragmento, fila, insercao), "fragmento-" + i);
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+    }
+
+    /**
+     * Cria uma árvore fragmentada com limites tirados de uma amostra das chaves.
+     *
+     * Os limites são escolhidos de forma gulosa sobre a amostra ordenada: cada
+     * fragmento recebe a sua parte da amostra que falta distribuir e o limite
+     * avança para lá de todas as cópias da última chave, porque chaves iguais
+     * têm de ficar no mesmo fragmento. Uma chave muito repetida (como o 1 do
+     * conjunto D) fica assim num fragmento próprio e as restantes são repartidas
+     * pelos outros. Se a amostra tiver poucas chaves distintas, são criados menos
+     * fragmentos.
+     *
+     * @param treeType tipo das árvores dos fragmentos ("AVL" ou "VP")
+     * @param fragmentos número de fragmentos pretendido
+     * @param amostra amostra das chaves a inserir, por qualquer ordem
+     * @return a árvore fragmentada
+     */
+    public static ShardedTree criar(String treeType, int fragmentos, int[] amostra) {
+        int[] ordenada = amostra.clone();
+        Arrays.sort(ordenada);
+
+        int[] limites = new int[Math.max(0, fragmentos - 1)];
+        int n = 0, posicao = 0;
+        while (n < limites.length && posicao < ordenada.length) {
+            int restantes = fragmentos - n;
+            int alvo = posicao + Math.max(1, (ordenada.length - posicao) / restantes) - 1;
+            int limite = ordenada[alvo];
+            posicao = alvo + 1;
+            while (posicao < ordenada.length && ordenada[posicao] == limite) posicao++;
+            if (posicao == ordenada.length) break; // O último fragmento fica com o resto
+            limites[n++] = limite;
+        }
+        return new ShardedTree(treeType, Arrays.copyOf(limites, n));
+    }
+
+    /**
+     * Tira uma amostra com posições igualmente espaçadas de um conjunto de chaves.
+     *
+     * @param chaves chaves de onde é tirada a amostra
+     * @param tamanho número máximo de chaves da amostra
+     * @return a amostra
+     */
+    public static int[] amostra(int[] chaves, int tamanho) {
+        int n = Math.min(tamanho, chaves.length);
+        int[] amostra = new int[n];
+        for (int i = 0; i < n; i++) amostra[i] = chaves[(int) ((long) i * chaves.length / n)];
+        return amostra;
+    }
+
+    /**
+     * Encaminha uma chave para o lote do seu fragmento, entregando o lote à
+     * thread do fragmento quando fica cheio.
+     *
+     * @param chave A chave a ser inserida.
+     */
+    public void insert(int chave) {
+        int i = fragmento(chave);
+        int[] buffer = buffers[i];
+        buffer[ocupados[i]++] = chave;
+        cargas[i]++;
+        if (ocupados[i] == TAMANHO_LOTE) {
+            entregar(i, new Lote(buffer, TAMANHO_LOTE, null));
+            buffers[i] = new int[TAMANHO_LOTE];
+            ocupados[i] = 0;
+        }
+    }
+
+    /**
+     * Encaminha todas as chaves de um array, pela ordem dada.
+     *
+     * @param chaves As chaves a inserir.
+     */
+    public void insertAll(int[] chaves) {
+        for (int chave : chaves) insert(chave);
+    }
+
+    /**
+     * Entrega os lotes incompletos e espera que todos os fragmentos tenham
+     * inserido tudo o que lhes foi encaminhado.
+     *
+     * @throws IllegalStateException se a inserção falhou na thread de algum
+     *         fragmento (a causa é a falha original)
+     */
+    public void aguardar() {
+        CountDownLatch sinal = new CountDownLatch(filas.length);
+        for (int i = 0; i < filas.length; i++) {
+            if (ocupados[i] > 0) {
+                entregar(i, new Lote(buffers[i], ocupados[i], null));
+                buffers[i] = new int[TAMANHO_LOTE];
+                ocupados[i] = 0;
+            }
+            entregar(i, new Lote(null, 0, sinal));
+        }
+        try {
+            sinal.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Espera pelos fragmentos interrompida", e);
+        }
+        for (int i = 0; i < falhas.length; i++) {
+            if (falhas[i] != null) throw new IllegalStateException("Falha ao inserir no fragmento " + i, falhas[i]);
+        }
+    }
+
+    /**
+     * Verifica se uma chave existe, considerando as inserções anteriores ao
+     * último {@link #aguardar()}.
+     *
+     * @param chave chave a procurar
+     * @return true se a chave existir, false caso contrário
+     */
+    public boolean contains(int chave) {
+        return pesquisas[fragmento(chave)].test(chave);
+    }
+
+    /**
+     * Espera pelas inserções pendentes e termina as threads dos fragmentos,
+     * mesmo que a espera relance a falha de um fragmento.
+     */
+    @Override
+    public void close() {
+        try {
+            aguardar();
+        } finally {
+            for (int i = 0; i < filas.length; i++) entregar(i, FIM);
+            try {
+                for (Thread thread : threads) thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Devolve o número de fragmentos.
+     *
+     * @return número de fragmentos
+     */
+    public int fragmentos() {
+        return arvores.length;
+    }
+
+    /**
+     * Devolve o número de chaves encaminhadas para cada fragmento, contando as repetidas.
+     *
+     * @return carga de cada fragmento
+     */
+    public long[] cargas() {
+        return cargas.clone();
+    }
+
+    /**
+     * Devolve o tempo que a thread de cada fragmento passou a inserir, até ao
+     * último {@link #aguardar()}.
+     *
+     * @return tempo ocupado de cada fragmento, em nanossegundos
+     */
+    public long[] temposOcupados() {
+        return temposOcupados.clone();
+    }
+
+    /**
+     * Devolve o total de rotações feitas pelas árvores dos fragmentos, até ao
+     * último {@link #aguardar()}.
+     *
+     * @return número de rotações
+     */
+    public int rotacoes() {
+        int total = 0;
+        for (Object arvore : arvores) {
+            total += arvore instanceof AVLTree ? ((AVLTree) arvore).rotacoes : ((VPTree) arvore).rotacoes;
+        }
+        return total;
+    }
+
+    /**
+     * Calcula o fragmento de uma chave: o primeiro cujo limite é maior ou igual a ela.
+     *
+     * @param chave chave a encaminhar
+     * @return índice do fragmento
+     */
+    private int fragmento(int chave) {
+        int inicio = 0, fim = limites.length;
+        while (inicio < fim) {
+            int meio = (inicio + fim) >>> 1;
+            if (limites[meio] < chave) inicio = meio + 1;
+            else fim = meio;
+        }
+        return inicio;
+    }
+
+    /**
+     * Põe um lote na fila de um fragmento, esperando se estiver cheia.
+     */
+    private void entregar(int fragmento, Lote lote) {
+        try {
+            filas[fragmento].put(lote);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Entrega ao fragmento " + fragmento + " interrompida", e);
+        }
+    }
+
+    /**
+     * Ciclo da thread de um fragmento: insere os lotes pela ordem de chegada
+     * até receber {@link #FIM}. Depois de uma falha a inserção guarda-a e
+     * passa a descartar os lotes, mas continua a assinalar as barreiras, para
+     * que nem o produtor nem {@link #aguardar()} fiquem à espera para sempre.
+     * Se a thread sair por outro motivo, assinala as barreiras que ficaram na fila.
+     */
+    private void consumir(int fragmento, BlockingQueue<Lote> fila, IntConsumer insercao) {
+        try {
+            while (true) {
+                Lote lote = fila.take();
+                if (lote == FIM) return;
+                if (lote.sinal != null) {
+                    lote.sinal.countDown();
+                    continue;
+                }
+                if (falhas[fragmento] != null) continue;
+
+                long inicio = System.nanoTime();
+                int[] chaves = lote.chaves;
+                try {
+                    for (int i = 0; i < lote.tamanho; i++) insercao.accept(chaves[i]);
+                } catch (RuntimeException | Error e) {
+                    falhas[fragmento] = e;
+                }
+                temposOcupados[fragmento] += System.nanoTime() - inicio;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            for (Lote lote; (lote = fila.poll()) != null; ) {
+                if (lote.sinal != null) lote.sinal.countDown();
+            }
+        }
+    }
+}
@@ -0,0 +1,240 @@
+import java.util.ArrayDeque;
+import java.util.function.IntConsumer;
+
+/**
+ * Classe que representa uma Árvore Splay, uma árvore binária de busca
+ * autoajustável: cada inserção e cada pesquisa traz a chave procurada (ou a
+ * última chave visitada) para a raiz. As chaves acedidas com frequência ficam
+ * assim perto da raiz, o que favorece cargas com popularidade enviesada,
+ * e os nós não guardam qualquer informação de equilíbrio.
+ *
+ * O splay é feito de cima para baixo (Sleator e Tarjan): numa só descida, a
+ * árvore é partida numa árvore esquerda, com as chaves menores, e numa árvore
+ * direita, com as maiores, que no fim passam a ser as subárvores do nó alcançado.
+ *
+ * Como as pesquisas alteram a árvore, nem as leituras podem ser feitas por
+ * várias threads em simultâneo.
+ *
+ * @author Guilherme Rosmaninho
+ * @version 1.0
+ */
+public class SplayTree {
+
+    /**
+     * Classe interna que representa um nó da Árvore Splay.
+     */
+    private static class Node {
+        int chave;
+        Node esquerda, direita;
+
+        /**
+         * Construtor do nó.
+         *
+         * @param chave A chave inteira a ser armazenada no nó.
+         */
+        Node(int chave) {
+            this.chave = chave;
+        }
+    }
+
+    private Node root;
+
+    /** Nó auxiliar onde são penduradas as árvores esquerda e direita durante o splay. */
+    private final Node cabeca = new Node(0);
+
+    /**
+     * Número total de rotações realizadas pelos splays (inserções e pesquisas).
+     */
+    public int rotacoes = 0;
+
+    /**
+     * Número total de comparações de chaves feitas nos splays (inserções e pesquisas).
+     */
+    public long comparacoes = 0;
+
+    /**
+     * Insere uma chave na árvore: faz o splay da chave e, se não existir,
+     * coloca-a na raiz entre as duas metades. As chaves repetidas são ignoradas.
+     *
+     * @param chave A chave a ser inserida.
+     */
+    public void insert(int chave) {
+        if (root == null) {
+            root = new Node(chave);
+            return;
+        }
+
+        Node t = splay(chave, root);
+        if (t.chave == chave) {
+            root = t;
+            return;
+        }
+
+        Node novo = new Node(chave);
+        if (chave < t.chave) {
+            novo.esquerda = t.esquerda;
+            novo.direita = t;
+            t.esquerda = null;
+        } else {
+            novo.direita = t.direita;
+            novo.esquerda = t;
+            t.direita = null;
+        }
+        root = novo;
+    }
+
+    /**
+     * Verifica se uma chave existe na árvore, trazendo-a para a raiz (ou a
+     * última chave visitada, se não existir).
+     *
+     * @param chave chave a procurar
+     * @return true se a chave existir, false caso contrário
+     */
+    public boolean contains(int chave) {
+        if (root == null) return false;
+        root = splay(chave, root);
+        return root.chave == chave;
+    }
+
+    /**
+     * Percorre por ordem crescente as chaves do intervalo [de, ate], sem
+     * recursão e sem visitar as subárvores que ficam fora do intervalo. O
+     * percurso não altera a árvore.
+     *
+     * @param de limite inferior (inclusive)
+     * @param ate limite superior (inclusive)
+     * @param acao ação aplicada a cada chave do intervalo
+     * @return o número de chaves visitadas
+     */
+    public int range(int de, int ate, IntConsumer acao) {
+        int visitadas = 0;
+        ArrayDeque<Node> pilha = new ArrayDeque<>();
+        Node atual = root;
+        while (true) {
+            while (atual != null) {
+                if (atual.chave < de) {
+                    atual = atual.direita;
+                } else {
+                    pilha.push(atual);
+                    atual = atual.esquerda;
+                }
+            }
+            if (pilha.isEmpty()) return visitadas;
+
+            Node node = pilha.pop();
+            if (node.chave > ate) return visitadas;
+            acao.accept(node.chave);
+            visitadas++;
+            atual = node.direita;
+        }
+    }
+
+    /**
+     * Splay de cima para baixo: desce à procura da chave fazendo uma rotação
+     * nos passos zig-zig e zag-zag e ligando os nós ultrapassados às árvores
+     * esquerda (chaves menores) e direita (chaves maiores).
+     *
+     * @param chave chave procurada
+     * @param t raiz da árvore (não nula)
+     * @return a nova raiz, com a chave procurada ou a última chave visitada
+     */
+    private Node splay(int chave, Node t) {
+        Node esquerda = cabeca, direita = cabeca;
+        cabeca.esquerda = cabeca.direita = null;
+
+        while (true) {
+            comparacoes++;
+            if (chave < t.chave) {
+                if (t.esquerda == null) break;
+                comparacoes++;
+                if (chave < t.esquerda.chave) {
+                    // Zig-zig: rotação à direita antes de ligar
+                    Node y = t.esquerda;
+                    t.esquerda = y.direita;
+                    y.direita = t;
+                    t = y;
+                    rotacoes++;
+                    if (t.esquerda == null) break;
+                }
+                direita.esquerda = t;
+                direita = t;
+                t = t.esquerda;
+            } else if (chave > t.chave) {
+                if (t.direita == null) break;
+                comparacoes++;
+                if (chave > t.direita.chave) {
+                    // Zag-zag: rotação à esquerda antes de ligar
+                    Node y = t.direita;
+                    t.direita = y.esquerda;
+                    y.esquerda = t;
+                    t = y;
+                    rotacoes++;
+                    if (t.direita == null) break;
+                }
+                esquerda.direita = t;
+                esquerda = t;
+                t = t.direita;
+            } else {
+                break;
+            }
+        }
+
+        esquerda.direita = t.esquerda;
+        direita.esquerda = t.direita;
+        t.esquerda = cabeca.direita;
+        t.direita = cabeca.esquerda;
+        cabeca.esquerda = cabeca.direita = null;
+        return t;
+    }
+
+    /**
+     * Devolve a altura da árvore (número de nós no caminho mais longo).
+     *
+     * @return altura da árvore, ou 0 se estiver vazia
+     */
+    public int altura() {
+        return (int) medirForma()[2];
+    }
+
+    /**
+     * Devolve a profundidade média dos nós, isto é, o comprimento médio do
+     * caminho desde a raiz (a raiz tem profundidade 1).
+     *
+     * @return profundidade média, ou 0 se a árvore estiver vazia
+     */
+    public double profundidadeMedia() {
+        long[] forma = medirForma();
+        return forma[0] == 0 ? 0.0 : (double) forma[1] / forma[0];
+    }
+
+    /**
+     * Percorre a árvore sem recursão e mede a sua forma.
+     *
+     * @return número de nós, soma das profundidades e altura
+     */
+    private long[] medirForma() {
+        long[] forma = new long[3];
+        if (root == null) return forma;
+
+        ArrayDeque<Node> nos = new ArrayDeque<>();
+        ArrayDeque<Integer> profundidades = new ArrayDeque<>();
+        nos.push(root);
+        profundidades.push(1);
+        while (!nos.isEmpty()) {
+            Node node = nos.pop();
+            int profundidade = profundidades.pop();
+            forma[0]++;
+            forma[1] += profundidade;
+            forma[2] = Math.max(forma[2], profundidade);
+            if (node.esquerda != null) {
+                nos.push(node.esquerda);
+                profundidades.push(profundidade + 1);
+            }
+            if (node.direita != null) {
+                nos.push(node.direita);
+                profundidades.push(profundidade + 1);
+            }
+        }
+        return forma;
+    }
+}
@@ -1,4 +1,21 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
 import java.util.Random;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
 
 /**
  * Classe que representa uma Treap, uma árvore binária de busca que mantém as
@@ -17,17 +34,35 @@ public class TreapTree {
         Node esquerda, direita;
 
         /**
-         * Construtor do nó.
+         * Construtor do nó com uma prioridade já sorteada.
          *
          * @param chave A chave inteira a ser armazenada no nó.
+         * @param prioridade A prioridade do nó no heap.
          */
-        Node(int chave) {
+        Node(int chave, int prioridade) {
             this.chave = chave;
-            this.prioridade = rand.nextInt();
+            this.prioridade = prioridade;
         }
     }
 
+    /**
+     * Nó com o tamanho da sua subárvore, criado só com os tamanhos ativos
+     * (ver {@link #comTamanhos()}).
+     */
+    private class NoContado extends Node {
+        int tamanho = 1;
+
+        NoContado(int chave, int prioridade) {
+            super(chave, prioridade);
+        }
+    }
+
+    /** Tamanho abaixo do qual a construção paralela passa a ser sequencial. */
+    private static final int LIMIAR_PARALELO = 1 << 13;
+
     private Node root;
+    /** Altura calculada por {@link #altura()}, ou -1 se a árvore mudou desde então. */
+    private int alturaGuardada = -1;
     private Random rand = new Random();
 
     /**
@@ -35,15 +70,493 @@ public class TreapTree {
      */
     public int rotacoes = 0;
 
+    /**
+     * Número total de comparações de chaves feitas nas descidas das inserções.
+     */
+    public long comparacoes = 0;
+
+    /** Indica se o tamanho de cada subárvore é mantido (ver {@link #comTamanhos()}). */
+    private boolean contarTamanhos = false;
+
+    /** Caminho da raiz até ao ponto de inserção, reutilizado por {@link #insertIter(int)}. */
+    private Node[] caminho = new Node[64];
+
+    /**
+     * Constrói em tempo linear uma Treap a partir de chaves ordenadas de forma
+     * crescente, sem qualquer rotação.
+     *
+     * Cada chave recebe uma prioridade aleatória e a árvore cartesiana é
+     * montada com uma pilha sobre a espinha direita, pelo que o resultado tem
+     * a mesma distribuição de formas que a inserção das chaves uma a uma.
+     * As chaves repetidas são ignoradas.
+     *
+     * @param ordenadas chaves por ordem crescente
+     * @return a treap construída
+     * @throws IllegalArgumentException se as chaves não estiverem ordenadas
+     */
+    public static TreapTree fromSorted(int[] ordenadas) {
+        int[] chaves = DetetorOrdem.semDuplicados(ordenadas);
+        TreapTree tree = new TreapTree();
+        tree.root = tree.construirCartesiana(chaves, 0, chaves.length);
+        return tree;
+    }
+
+    /**
+     * Constrói uma Treap a partir de um conjunto de chaves qualquer.
+     * Se as chaves já estiverem ordenadas (crescente ou decrescente) usa
+     * {@link #fromSorted(int[])}; caso contrário insere-as uma a uma.
+     *
+     * @param chaves chaves a carregar
+     * @return a treap construída
+     */
+    public static TreapTree carregar(int[] chaves) {
+        int[] ordenadas = DetetorOrdem.ordenadasSemDuplicados(chaves);
+        if (ordenadas != null) return fromSorted(ordenadas);
+
+        TreapTree tree = new TreapTree();
+        for (int chave : chaves) tree.insert(chave);
+        return tree;
+    }
+
+    /**
+     * Constrói em paralelo uma Treap com as chaves indicadas, por qualquer ordem.
+     *
+     * As chaves são ordenadas e deduplicadas com uma ordenação paralela e
+     * divididas em blocos contíguos; cada bloco é montado como árvore
+     * cartesiana numa tarefa do pool e os blocos vizinhos são depois unidos
+     * pela espinha, por prioridade. Como todas as chaves de um bloco são menores
+     * do que as do seguinte, a união não precisa de rotações e o resultado tem
+     * a mesma distribuição de formas que a inserção sequencial.
+     *
+     * @param chaves chaves a carregar
+     * @param pool pool onde correm a ordenação e a construção
+     * @return a treap construída
+     */
+    public static TreapTree carregarParalelo(int[] chaves, ForkJoinPool pool) {
+        TreapTree tree = new TreapTree();
+        tree.root = pool.invoke(ForkJoinTask.adapt(() -> {
+            int[] ordenadas = DetetorOrdem.ordenarEmParalelo(chaves);
+            return tree.new ConstrucaoParalela(ordenadas, 0, ordenadas.length).invoke();
+        }));
+        return tree;
+    }
+
+    /**
+     * Tarefa que constrói a treap de um intervalo de chaves ordenadas, dividindo-o
+     * ao meio enquanto for grande e unindo as duas metades no regresso.
+     */
+    @SuppressWarnings("serial") // as tarefas nunca são serializadas
+    private class ConstrucaoParalela extends RecursiveTask<Node> {
+        private final int[] chaves;
+        private final int inicio, fim;
+
+        ConstrucaoParalela(int[] chaves, int inicio, int fim) {
+            this.chaves = chaves;
+            this.inicio = inicio;
+            this.fim = fim;
+        }
+
+        @Override
+        protected Node compute() {
+            if (fim - inicio <= LIMIAR_PARALELO) return construirCartesiana(chaves, inicio, fim);
+
+            int meio = (inicio + fim) >>> 1;
+            ConstrucaoParalela esquerda = new ConstrucaoParalela(chaves, inicio, meio);
+            esquerda.fork();
+            Node direita = new ConstrucaoParalela(chaves, meio, fim).compute();
+            return juntar(esquerda.join(), direita);
+        }
+    }
+
+    /**
+     * Monta a árvore cartesiana de um intervalo de chaves ordenadas, com
+     * prioridades sorteadas pelo gerador da thread atual.
+     *
+     * @param chaves chaves estritamente crescentes
+     * @param inicio primeira posição do intervalo (inclusive)
+     * @param fim última posição do intervalo (exclusive)
+     * @return a raiz da subárvore, ou {@code null} se o intervalo for vazio
+     */
+    private Node construirCartesiana(int[] chaves, int inicio, int fim) {
+        ThreadLocalRandom aleatorio = ThreadLocalRandom.current();
+        Node[] espinha = new Node[Math.max(1, fim - inicio)];
+        int topo = 0;
+
+        for (int i = inicio; i < fim; i++) {
+            Node novo = novoNo(chaves[i], aleatorio.nextInt());
+            Node ultimo = null;
+            while (topo > 0 && espinha[topo - 1].prioridade < novo.prioridade) {
+                ultimo = espinha[--topo];
+            }
+            novo.esquerda = ultimo;
+            if (topo > 0) espinha[topo - 1].direita = novo;
+            espinha[topo++] = novo;
+        }
+        return topo > 0 ? espinha[0] : null;
+    }
+
+    /**
+     * Une duas treaps em que todas as chaves da primeira são menores do que
+     * as da segunda, descendo pela espinha direita de uma e esquerda da outra.
+     *
+     * @param a Treap com as chaves menores.
+     * @param b Treap com as chaves maiores.
+     * @return A raiz da treap unida.
+     */
+    private Node juntar(Node a, Node b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        if (a.prioridade > b.prioridade) {
+            a.direita = juntar(a.direita, b);
+            if (contarTamanhos) atualizarTamanho(a);
+            return a;
+        }
+        b.esquerda = juntar(a, b.esquerda);
+        if (contarTamanhos) atualizarTamanho(b);
+        return b;
+    }
+
+    /**
+     * Divide esta treap em duas: uma com as chaves menores do que {@code chave}
+     * e outra com as restantes. Os nós são reaproveitados, sem rotações, e
+     * esta treap fica vazia.
+     *
+     * @param chave A chave de corte.
+     * @return Um array com a treap das chaves menores e a das chaves maiores ou iguais.
+     */
+    public TreapTree[] split(int chave) {
+        Node[] partes = dividir(root, chave);
+        if (partes[1] != null) partes[2] = juntar(partes[1], partes[2]);
+        root = null;
+
+        TreapTree menores = new TreapTree(), maiores = new TreapTree();
+        menores.root = partes[0];
+        maiores.root = partes[2];
+        menores.contarTamanhos = maiores.contarTamanhos = contarTamanhos;
+        return new TreapTree[]{menores, maiores};
+    }
+
+    /**
+     * Une duas treaps em que todas as chaves da primeira são menores do que as
+     * da segunda. As duas treaps de entrada ficam vazias.
+     *
+     * @param esquerda Treap com as chaves menores.
+     * @param direita Treap com as chaves maiores.
+     * @return A treap unida.
+     * @throws IllegalArgumentException se as chaves das duas treaps se sobrepuserem
+     */
+    public static TreapTree join(TreapTree esquerda, TreapTree direita) {
+        if (esquerda.root != null && direita.root != null) {
+            Node maximo = esquerda.root, minimo = direita.root;
+            while (maximo.direita != null) maximo = maximo.direita;
+            while (minimo.esquerda != null) minimo = minimo.esquerda;
+            if (maximo.chave >= minimo.chave)
+                throw new IllegalArgumentException("As chaves da primeira treap têm de ser menores do que as da segunda");
+        }
+
+        TreapTree tree = TreapTree.paraResultado(esquerda, direita);
+        tree.root = tree.juntar(esquerda.root, direita.root);
+        esquerda.root = direita.root = null;
+        return tree.acertarTamanhos(esquerda, direita);
+    }
+
+    /**
+     * Calcula a união de duas treaps. Os níveis superiores da recursão correm
+     * em paralelo no pool indicado. As duas treaps de entrada ficam vazias.
+     *
+     * @param a Primeira treap.
+     * @param b Segunda treap.
+     * @param pool Pool onde corre a operação.
+     * @return Uma treap com as chaves presentes em pelo menos uma das treaps.
+     */
+    public static TreapTree union(TreapTree a, TreapTree b, ForkJoinPool pool) {
+        TreapTree tree = TreapTree.paraResultado(a, b);
+        tree.root = pool.invoke(ForkJoinTask.adapt(() -> tree.uniao(a.root, b.root, niveisParalelos(pool))));
+        a.root = b.root = null;
+        return tree.acertarTamanhos(a, b);
+    }
+
+    /**
+     * Calcula a interseção de duas treaps. Os níveis superiores da recursão
+     * correm em paralelo no pool indicado. As duas treaps de entrada ficam vazias.
+     *
+     * @param a Primeira treap.
+     * @param b Segunda treap.
+     * @param pool Pool onde corre a operação.
+     * @return Uma treap com as chaves presentes em ambas as treaps.
+     */
+    public static TreapTree intersection(TreapTree a, TreapTree b, ForkJoinPool pool) {
+        TreapTree tree = TreapTree.paraResultado(a, b);
+        tree.root = pool.invoke(ForkJoinTask.adapt(() -> tree.intersecao(a.root, b.root, niveisParalelos(pool))));
+        a.root = b.root = null;
+        return tree.acertarTamanhos(a, b);
+    }
+
+    /**
+     * Calcula a diferença entre duas treaps. Os níveis superiores da recursão
+     * correm em paralelo no pool indicado. As duas treaps de entrada ficam vazias.
+     *
+     * @param a Treap de onde são retiradas as chaves.
+     * @param b Treap com as chaves a retirar.
+     * @param pool Pool onde corre a operação.
+     * @return Uma treap com as chaves de {@code a} que não estão em {@code b}.
+     */
+    public static TreapTree difference(TreapTree a, TreapTree b, ForkJoinPool pool) {
+        TreapTree tree = TreapTree.paraResultado(a, b);
+        tree.root = pool.invoke(ForkJoinTask.adapt(() -> tree.diferenca(a.root, b.root, niveisParalelos(pool))));
+        a.root = b.root = null;
+        return tree.acertarTamanhos(a, b);
+    }
+
+    /**
+     * Insere um lote de chaves: constrói uma treap com o lote e une-a a esta,
+     * em vez de fazer uma descida por chave. Usa o pool comum.
+     *
+     * @param chaves As chaves a inserir, por qualquer ordem.
+     */
+    public void insertAll(int[] chaves) {
+        insertAll(chaves, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Insere um lote de chaves: constrói uma treap com o lote e une-a a esta,
+     * em vez de fazer uma descida por chave.
+     *
+     * @param chaves As chaves a inserir, por qualquer ordem.
+     * @param pool Pool onde correm a construção do lote e a união.
+     */
+    public void insertAll(int[] chaves, ForkJoinPool pool) {
+        TreapTree arvoreLote = carregarParalelo(chaves, pool);
+        if (contarTamanhos) arvoreLote.comTamanhos();
+        Node lote = arvoreLote.root;
+        Node atual = root;
+        root = pool.invoke(ForkJoinTask.adapt(() -> uniao(atual, lote, niveisParalelos(pool))));
+        alturaGuardada = -1;
+    }
+
+    /**
+     * Cria a treap que recebe o resultado de uma operação entre duas treaps.
+     * Os tamanhos são mantidos durante a operação só se ambas os mantiverem,
+     * porque só então os das subárvores reaproveitadas estão corretos.
+     *
+     * @param a Primeira treap de entrada.
+     * @param b Segunda treap de entrada.
+     * @return A treap vazia para o resultado.
+     */
+    private static TreapTree paraResultado(TreapTree a, TreapTree b) {
+        TreapTree tree = new TreapTree();
+        tree.contarTamanhos = a.contarTamanhos && b.contarTamanhos;
+        return tree;
+    }
+
+    /**
+     * Ativa os tamanhos no resultado de uma operação quando apenas uma das
+     * treaps de entrada os mantinha, recalculando-os numa só passagem.
+     *
+     * @param a Primeira treap de entrada.
+     * @param b Segunda treap de entrada.
+     * @return Esta treap.
+     */
+    private TreapTree acertarTamanhos(TreapTree a, TreapTree b) {
+        return a.contarTamanhos || b.contarTamanhos ? comTamanhos() : this;
+    }
+
+    /**
+     * Número de níveis da recursão em que as operações de conjuntos criam
+     * tarefas paralelas: 2 + log2 do paralelismo (arredondado por defeito),
+     * ou seja, entre duas e quatro tarefas por thread do pool.
+     *
+     * @param pool Pool onde corre a operação.
+     * @return Número de níveis paralelos.
+     */
+    private static int niveisParalelos(ForkJoinPool pool) {
+        return 2 + 31 - Integer.numberOfLeadingZeros(pool.getParallelism());
+    }
+
+    /**
+     * Divide uma subárvore pela chave indicada, sem rotações.
+     *
+     * @param node Subárvore a dividir.
+     * @param chave A chave de corte.
+     * @return Um array com a subárvore das chaves menores, o nó com a chave
+     *         (ou {@code null}, já sem filhos) e a subárvore das chaves maiores.
+     */
+    private Node[] dividir(Node node, int chave) {
+        if (node == null) return new Node[3];
+
+        if (chave < node.chave) {
+            Node[] partes = dividir(node.esquerda, chave);
+            node.esquerda = partes[2];
+            if (contarTamanhos) atualizarTamanho(node);
+            partes[2] = node;
+            return partes;
+        }
+        if (chave > node.chave) {
+            Node[] partes = dividir(node.direita, chave);
+            node.direita = partes[0];
+            if (contarTamanhos) atualizarTamanho(node);
+            partes[0] = node;
+            return partes;
+        }
+
+        Node[] partes = {node.esquerda, node, node.direita};
+        node.esquerda = node.direita = null;
+        if (contarTamanhos) ((NoContado) node).tamanho = 1;
+        return partes;
+    }
+
+    /**
+     * União recursiva: a raiz de maior prioridade divide a outra subárvore e
+     * cada lado é unido separadamente.
+     *
+     * @param a Primeira subárvore.
+     * @param b Segunda subárvore.
+     * @param niveis Níveis restantes em que os dois lados correm em paralelo.
+     * @return A raiz da união.
+     */
+    private Node uniao(Node a, Node b, int niveis) {
+        if (a == null) return b;
+        if (b == null) return a;
+        if (a.prioridade < b.prioridade) {
+            Node tmp = a;
+            a = b;
+            b = tmp;
+        }
+
+        Node[] partes = dividir(b, a.chave);
+        Node esquerdaA = a.esquerda, direitaA = a.direita;
+        if (niveis > 0) {
+            ForkJoinTask<Node> esquerda = ForkJoinTask.adapt(() -> uniao(esquerdaA, partes[0], niveis - 1)).fork();
+            a.direita = uniao(direitaA, partes[2], niveis - 1);
+            a.esquerda = esquerda.join();
+        } else {
+            a.esquerda = uniao(esquerdaA, partes[0], 0);
+            a.direita = uniao(direitaA, partes[2], 0);
+        }
+        if (contarTamanhos) atualizarTamanho(a);
+        return a;
+    }
+
+    /**
+     * Interseção recursiva: a raiz de maior prioridade divide a outra
+     * subárvore e só é mantida se a sua chave existir nas duas.
+     *
+     * @param a Primeira subárvore.
+     * @param b Segunda subárvore.
+     * @param niveis Níveis restantes em que os dois lados correm em paralelo.
+     * @return A raiz da interseção.
+     */
+    private Node intersecao(Node a, Node b, int niveis) {
+        if (a == null || b == null) return null;
+        if (a.prioridade < b.prioridade) {
+            Node tmp = a;
+            a = b;
+            b = tmp;
+        }
+
+        Node[] partes = dividir(b, a.chave);
+        Node esquerdaA = a.esquerda, direitaA = a.direita;
+        Node esquerda, direita;
+        if (niveis > 0) {
+            ForkJoinTask<Node> tarefa = ForkJoinTask.adapt(() -> intersecao(esquerdaA, partes[0], niveis - 1)).fork();
+            direita = intersecao(direitaA, partes[2], niveis - 1);
+            esquerda = tarefa.join();
+        } else {
+            esquerda = intersecao(esquerdaA, partes[0], 0);
+            direita = intersecao(direitaA, partes[2], 0);
+        }
+
+        if (partes[1] == null) return juntar(esquerda, direita);
+        a.esquerda = esquerda;
+        a.direita = direita;
+        if (contarTamanhos) atualizarTamanho(a);
+        return a;
+    }
+
+    /**
+     * Diferença recursiva: a raiz de {@code b} divide {@code a} e a sua chave
+     * é descartada; os dois lados são tratados separadamente e depois unidos.
+     *
+     * @param a Subárvore de onde são retiradas as chaves.
+     * @param b Subárvore com as chaves a retirar.
+     * @param niveis Níveis restantes em que os dois lados correm em paralelo.
+     * @return A raiz da diferença.
+     */
+    private Node diferenca(Node a, Node b, int niveis) {
+        if (a == null) return null;
+        if (b == null) return a;
+
+        Node[] partes = dividir(a, b.chave);
+        Node esquerda, direita;
+        if (niveis > 0) {
+            ForkJoinTask<Node> tarefa = ForkJoinTask.adapt(() -> diferenca(partes[0], b.esquerda, niveis - 1)).fork();
+            direita = diferenca(partes[2], b.direita, niveis - 1);
+            esquerda = tarefa.join();
+        } else {
+            esquerda = diferenca(partes[0], b.esquerda, 0);
+            direita = diferenca(partes[2], b.direita, 0);
+        }
+        return juntar(esquerda, direita);
+    }
+
     /**
      * Insere uma nova chave inteira na Treap.
      *
      * @param chave A chave a ser inserida.
      */
     public void insert(int chave) {
+        alturaGuardada = -1;
         root = insertRec(root, chave);
     }
 
+    /**
+     * Insere uma nova chave sem recursão, guardando o caminho num buffer explícito.
+     *
+     * O novo nó é ligado como folha e sobe por rotações enquanto a sua
+     * prioridade for maior do que a do pai; a subida termina na primeira
+     * comparação que falha e só as ligações alteradas são reescritas.
+     *
+     * @param chave A chave a ser inserida.
+     */
+    public void insertIter(int chave) {
+        alturaGuardada = -1;
+        if (root == null) {
+            root = novoNo(chave, rand.nextInt());
+            return;
+        }
+
+        int profundidade = 0;
+        Node atual = root;
+        while (atual != null) {
+            if (profundidade == caminho.length) caminho = Arrays.copyOf(caminho, profundidade * 2);
+            caminho[profundidade++] = atual;
+            comparacoes++;
+            if (chave < atual.chave) {
+                atual = atual.esquerda;
+            } else if (chave > atual.chave) {
+                atual = atual.direita;
+            } else {
+                // Chave duplicada, não faz nada
+                return;
+            }
+        }
+
+        Node novo = novoNo(chave, rand.nextInt());
+        Node pai = caminho[profundidade - 1];
+        if (chave < pai.chave) pai.esquerda = novo;
+        else pai.direita = novo;
+        if (contarTamanhos) for (int i = 0; i < profundidade; i++) ((NoContado) caminho[i]).tamanho++;
+
+        for (int i = profundidade - 1; i >= 0 && novo.prioridade > caminho[i].prioridade; i--) {
+            Node node = caminho[i];
+            Node subida = (node.esquerda == novo) ? rotateRight(node) : rotateLeft(node);
+
+            if (i == 0) root = subida;
+            else if (caminho[i - 1].esquerda == node) caminho[i - 1].esquerda = subida;
+            else caminho[i - 1].direita = subida;
+        }
+    }
+
     /**
      * Método recursivo auxiliar para inserção de uma chave.
      *
@@ -54,8 +567,9 @@ public class TreapTree {
      * @return A subárvore atualizada após a inserção e possíveis rotações.
      */
     private Node insertRec(Node node, int chave) {
-        if (node == null) return new Node(chave);
+        if (node == null) return novoNo(chave, rand.nextInt());
 
+        comparacoes++;
         if (chave < node.chave) {
             node.esquerda = insertRec(node.esquerda, chave);
             if (node.esquerda.prioridade > node.prioridade)
@@ -69,9 +583,482 @@ public class TreapTree {
             return node;
         }
 
+        if (contarTamanhos) atualizarTamanho(node);
         return node;
     }
 
+    /**
+     * Verifica se uma chave existe na árvore.
+     *
+     * @param chave chave a procurar
+     * @return true se a chave existir, false caso contrário
+     */
+    public boolean contains(int chave) {
+        Node atual = root;
+        while (atual != null) {
+            if (chave < atual.chave) atual = atual.esquerda;
+            else if (chave > atual.chave) atual = atual.direita;
+            else return true;
+        }
+        return false;
+    }
+
+    /**
+     * Devolve a maior chave da árvore menor ou igual à indicada.
+     *
+     * @param chave chave de referência
+     * @return a chave encontrada, ou {@code null} se não existir
+     */
+    public Integer floor(int chave) {
+        Node atual = root, melhor = null;
+        while (atual != null) {
+            if (chave < atual.chave) {
+                atual = atual.esquerda;
+            } else if (chave > atual.chave) {
+                melhor = atual;
+                atual = atual.direita;
+            } else {
+                return atual.chave;
+            }
+        }
+        return melhor == null ? null : melhor.chave;
+    }
+
+    /**
+     * Devolve a menor chave da árvore maior ou igual à indicada.
+     *
+     * @param chave chave de referência
+     * @return a chave encontrada, ou {@code null} se não existir
+     */
+    public Integer ceiling(int chave) {
+        Node atual = root, melhor = null;
+        while (atual != null) {
+            if (chave > atual.chave) {
+                atual = atual.direita;
+            } else if (chave < atual.chave) {
+                melhor = atual;
+                atual = atual.esquerda;
+            } else {
+                return atual.chave;
+            }
+        }
+        return melhor == null ? null : melhor.chave;
+    }
+
+    /**
+     * Percorre por ordem crescente as chaves do intervalo [de, ate], sem
+     * recursão e sem visitar as subárvores que ficam fora do intervalo.
+     *
+     * @param de limite inferior (inclusive)
+     * @param ate limite superior (inclusive)
+     * @param acao ação aplicada a cada chave do intervalo
+     * @return o número de chaves visitadas
+     */
+    public int range(int de, int ate, IntConsumer acao) {
+        int visitadas = 0;
+        ArrayDeque<Node> pilha = new ArrayDeque<>();
+        Node atual = root;
+        while (true) {
+            while (atual != null) {
+                if (atual.chave < de) {
+                    atual = atual.direita;
+                } else {
+                    pilha.push(atual);
+                    atual = atual.esquerda;
+                }
+            }
+            if (pilha.isEmpty()) return visitadas;
+
+            Node node = pilha.pop();
+            if (node.chave > ate) return visitadas;
+            acao.accept(node.chave);
+            visitadas++;
+            atual = node.direita;
+        }
+    }
+
+    /**
+     * Devolve um cursor pelas chaves, por ordem crescente. O cursor não aloca
+     * nada por chave e pode ser reposto no início com {@link Cursor#reiniciar()}
+     * para voltar a percorrer a árvore sem criar outro. Deixa de ser válido se
+     * a árvore for alterada.
+     *
+     * @return o cursor, posicionado na menor chave
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Devolve um spliterator pelas chaves, por ordem crescente, que se divide
+     * nas fronteiras das subárvores, para agregações com
+     * {@code IntStream.parallel()}. A árvore não pode ser alterada enquanto
+     * é percorrida.
+     *
+     * @return o spliterator
+     */
+    public Spliterator.OfInt spliterator() {
+        return new Percurso(root, contarTamanhos ? tamanho(root) : Long.MAX_VALUE);
+    }
+
+    /**
+     * Devolve as chaves como um {@link IntStream}, por ordem crescente.
+     *
+     * @param paralelo true para um stream paralelo
+     * @return o stream das chaves
+     */
+    public IntStream stream(boolean paralelo) {
+        return StreamSupport.intStream(spliterator(), paralelo);
+    }
+
+    /**
+     * Converte a árvore numa forma imutável sem referências, num único
+     * {@code int[]} com disposição Eytzinger, para fases só de leitura. A
+     * árvore não é alterada.
+     *
+     * @return a forma imutável com as chaves atuais
+     */
+    public FrozenTree freeze() {
+        return freeze(false);
+    }
+
+    /**
+     * Converte a árvore numa forma imutável sem referências, com disposição
+     * Eytzinger ou van Emde Boas (ver {@link FrozenTree}). A árvore não é alterada.
+     *
+     * @param vanEmdeBoas true para a disposição van Emde Boas
+     * @return a forma imutável com as chaves atuais
+     */
+    public FrozenTree freeze(boolean vanEmdeBoas) {
+        FrozenTree.Recolha recolha = new FrozenTree.Recolha();
+        range(Integer.MIN_VALUE, Integer.MAX_VALUE, recolha);
+        return vanEmdeBoas ? FrozenTree.vanEmdeBoas(recolha.chaves()) : FrozenTree.eytzinger(recolha.chaves());
+    }
+
+    /**
+     * Grava a árvore num ficheiro de snapshot binário (ver {@link FormatoArvore}):
+     * os nós em pré-ordem, cada um com a chave, a prioridade de cada nó e os filhos
+     * que tem. O ficheiro é substituído se existir.
+     *
+     * @param ficheiro caminho do ficheiro
+     * @throws IOException se não for possível escrever o ficheiro
+     */
+    public void gravar(Path ficheiro) throws IOException {
+        try (FormatoArvore.Escritor escritor = new FormatoArvore.Escritor(ficheiro, FormatoArvore.TREAP,
+                contarTamanhos ? FormatoArvore.TAMANHOS : 0)) {
+            if (root == null) return;
+            ArrayDeque<Node> pilha = new ArrayDeque<>();
+            pilha.push(root);
+            while (!pilha.isEmpty()) {
+                Node node = pilha.pop();
+                int filhos = (node.esquerda != null ? FormatoArvore.ESQUERDA : 0)
+                        | (node.direita != null ? FormatoArvore.DIREITA : 0);
+                escritor.no(9).putInt(node.chave).putInt(node.prioridade).put((byte) (filhos << 6));
+                if (node.direita != null) pilha.push(node.direita);
+                if (node.esquerda != null) pilha.push(node.esquerda);
+            }
+        }
+    }
+
+    /**
+     * Lê uma árvore de um ficheiro de snapshot gravado por {@link #gravar(Path)},
+     * mapeado em memória. A árvore é refeita com a mesma forma e com as prioridades guardadas,
+     * numa só passagem e sem rotações.
+     *
+     * @param ficheiro caminho do ficheiro
+     * @return a árvore lida
+     * @throws IOException se o ficheiro não puder ser lido ou não for um snapshot válido
+     */
+    public static TreapTree ler(Path ficheiro) throws IOException {
+        ByteBuffer mapa = FormatoArvore.mapear(ficheiro, FormatoArvore.TREAP, 9);
+        TreapTree arvore = new TreapTree();
+        arvore.contarTamanhos = (FormatoArvore.opcoes(mapa) & FormatoArvore.TAMANHOS) != 0;
+        arvore.lerNos(mapa, FormatoArvore.nos(mapa));
+        if (arvore.contarTamanhos) arvore.recalcularTamanhos();
+        return arvore;
+    }
+
+    /**
+     * Refaz a árvore a partir dos nós em pré-ordem. Cada nó com filhos fica
+     * numa pilha até receber todos os filhos que o registo indica.
+     */
+    private void lerNos(ByteBuffer mapa, int n) throws IOException {
+        Node[] pilha = new Node[64];
+        int[] pendentes = new int[64];
+        int topo = 0;
+        for (int i = 0; i < n; i++) {
+            int chave = mapa.getInt();
+            int prioridade = mapa.getInt();
+            int meta = mapa.get() & 0xFF;
+            Node node = novoNo(chave, prioridade);
+            int filhos = meta >>> 6;
+
+            if (root == null) {
+                root = node;
+            } else {
+                if (topo == 0) throw new IOException("Snapshot inválido: nó sem pai na posição " + i);
+                Node pai = pilha[topo - 1];
+                if ((pendentes[topo - 1] & FormatoArvore.ESQUERDA) != 0) {
+                    pai.esquerda = node;
+                    pendentes[topo - 1] &= ~FormatoArvore.ESQUERDA;
+                } else {
+                    pai.direita = node;
+                    pendentes[topo - 1] = 0;
+                }
+                if (pendentes[topo - 1] == 0) topo--;
+            }
+
+            if (filhos != 0) {
+                if (topo == pilha.length) {
+                    pilha = Arrays.copyOf(pilha, topo * 2);
+                    pendentes = Arrays.copyOf(pendentes, topo * 2);
+                }
+                pilha[topo] = node;
+                pendentes[topo++] = filhos;
+            }
+        }
+        if (topo != 0) throw new IOException("Snapshot inválido: faltam nós");
+    }
+
+    /**
+     * Ativa a contagem do tamanho de cada subárvore, que permite
+     * {@link #rank(int)}, {@link #select(int)} e {@link #countRange(int, int)}
+     * em O(log n). Além das inserções e rotações, o split e a junção das
+     * operações de conjuntos recalculam o tamanho de cada nó que religam, e o
+     * resultado de uma operação de conjuntos mantém os tamanhos se uma das
+     * entradas os mantiver. Como na {@link AVLTree#comTamanhos()}, só os nós
+     * criados ou convertidos a partir daqui têm o campo do tamanho.
+     *
+     * @return esta árvore
+     */
+    public TreapTree comTamanhos() {
+        if (!contarTamanhos) {
+            contarTamanhos = true;
+            recalcularTamanhos();
+        }
+        return this;
+    }
+
+    /**
+     * Devolve o número de chaves da árvore menores do que a indicada.
+     *
+     * @param chave chave de referência
+     * @return número de chaves menores
+     * @throws IllegalStateException se os tamanhos das subárvores não estiverem ativos
+     */
+    public int rank(int chave) {
+        return contarMenores(chave);
+    }
+
+    /**
+     * Devolve a chave com a posição indicada na ordem crescente.
+     *
+     * @param posicao posição da chave, a começar em 0
+     * @return a chave nessa posição
+     * @throws IllegalStateException se os tamanhos das subárvores não estiverem ativos
+     * @throws IndexOutOfBoundsException se a posição não existir
+     */
+    public int select(int posicao) {
+        exigirTamanhos();
+        if (posicao < 0 || posicao >= tamanho(root)) {
+            throw new IndexOutOfBoundsException("Posição " + posicao + " fora de [0, " + tamanho(root) + ")");
+        }
+
+        Node atual = root;
+        while (true) {
+            int esquerda = tamanho(atual.esquerda);
+            if (posicao < esquerda) {
+                atual = atual.esquerda;
+            } else if (posicao > esquerda) {
+                posicao -= esquerda + 1;
+                atual = atual.direita;
+            } else {
+                return atual.chave;
+            }
+        }
+    }
+
+    /**
+     * Conta as chaves do intervalo [de, ate] sem as percorrer.
+     *
+     * @param de limite inferior (inclusive)
+     * @param ate limite superior (inclusive)
+     * @return número de chaves no intervalo
+     * @throws IllegalStateException se os tamanhos das subárvores não estiverem ativos
+     */
+    public int countRange(int de, int ate) {
+        if (de > ate) {
+            exigirTamanhos();
+            return 0;
+        }
+        return contarMenores((long) ate + 1) - contarMenores(de);
+    }
+
+    /**
+     * Conta as chaves menores do que um limite, somando os tamanhos das
+     * subárvores esquerdas deixadas para trás na descida.
+     *
+     * @param limite limite (exclusivo); é um long para que {@code ate + 1} não transborde
+     * @return número de chaves menores do que o limite
+     */
+    private int contarMenores(long limite) {
+        exigirTamanhos();
+        int menores = 0;
+        Node atual = root;
+        while (atual != null) {
+            if (limite <= atual.chave) {
+                atual = atual.esquerda;
+            } else {
+                menores += tamanho(atual.esquerda) + 1;
+                atual = atual.direita;
+            }
+        }
+        return menores;
+    }
+
+    /**
+     * Garante que os tamanhos das subárvores estão a ser mantidos.
+     *
+     * @throws IllegalStateException se não estiverem
+     */
+    private void exigirTamanhos() {
+        if (!contarTamanhos) {
+            throw new IllegalStateException("Os tamanhos das subárvores não estão ativos; use comTamanhos()");
+        }
+    }
+
+    /**
+     * Troca cada nó sem tamanho por um {@link NoContado} e calcula o tamanho de
+     * todos os nós sem recursão, porque a altura de uma treap só é logarítmica
+     * em média: a lista por ordem de descoberta é percorrida ao contrário, pelo
+     * que cada nó é tratado depois dos filhos. Os nós que já têm tamanho (por
+     * exemplo os de uma entrada de uma operação de conjuntos) são reaproveitados.
+     */
+    private void recalcularTamanhos() {
+        if (root == null) return;
+
+        ArrayList<Node> ordem = new ArrayList<>();
+        root = contado(root);
+        ordem.add(root);
+        for (int i = 0; i < ordem.size(); i++) {
+            Node node = ordem.get(i);
+            if (node.esquerda != null) ordem.add(node.esquerda = contado(node.esquerda));
+            if (node.direita != null) ordem.add(node.direita = contado(node.direita));
+        }
+        for (int i = ordem.size() - 1; i >= 0; i--) atualizarTamanho(ordem.get(i));
+    }
+
+    /**
+     * Devolve o próprio nó, se já tiver tamanho, ou uma cópia com tamanho,
+     * com a mesma prioridade e os mesmos filhos.
+     */
+    private Node contado(Node node) {
+        if (node instanceof NoContado) return node;
+        Node copia = new NoContado(node.chave, node.prioridade);
+        copia.esquerda = node.esquerda;
+        copia.direita = node.direita;
+        return copia;
+    }
+
+    /**
+     * Cria um nó, com o campo do tamanho se os tamanhos estiverem ativos.
+     *
+     * @param chave A chave do nó.
+     * @param prioridade A prioridade do nó no heap.
+     * @return O novo nó.
+     */
+    private Node novoNo(int chave, int prioridade) {
+        return contarTamanhos ? new NoContado(chave, prioridade) : new Node(chave, prioridade);
+    }
+
+    /**
+     * Devolve a altura da árvore (número de nós no caminho mais longo). Numa
+     * treap a altura depende das prioridades sorteadas e muda com as rotações,
+     * por isso é medida quando é pedida e reaproveitada enquanto a árvore não
+     * for alterada; é também ela que dimensiona as pilhas dos percursos.
+     *
+     * @return altura da árvore, ou 0 se estiver vazia
+     */
+    public int altura() {
+        if (root == null) return 0;
+        if (alturaGuardada < 0) alturaGuardada = calcularAltura();
+        return alturaGuardada;
+    }
+
+    /**
+     * Mede a altura sem recursão, com pilhas de nós e de profundidades que
+     * duplicam quando a árvore é mais alta.
+     *
+     * @return altura da árvore não vazia
+     */
+    private int calcularAltura() {
+        Node[] nos = new Node[64];
+        int[] profundidades = new int[64];
+        int topo = 0, altura = 0;
+        nos[topo] = root;
+        profundidades[topo++] = 1;
+        while (topo > 0) {
+            Node node = nos[--topo];
+            int profundidade = profundidades[topo];
+            altura = Math.max(altura, profundidade);
+            if (topo + 2 > nos.length) {
+                nos = Arrays.copyOf(nos, nos.length * 2);
+                profundidades = Arrays.copyOf(profundidades, nos.length);
+            }
+            if (node.esquerda != null) {
+                nos[topo] = node.esquerda;
+                profundidades[topo++] = profundidade + 1;
+            }
+            if (node.direita != null) {
+                nos[topo] = node.direita;
+                profundidades[topo++] = profundidade + 1;
+            }
+        }
+        return altura;
+    }
+
+    /**
+     * Devolve a profundidade média dos nós, isto é, o comprimento médio do
+     * caminho desde a raiz (a raiz tem profundidade 1).
+     *
+     * @return profundidade média, ou 0 se a árvore estiver vazia
+     */
+    public double profundidadeMedia() {
+        long[] forma = medirForma();
+        return forma[0] == 0 ? 0.0 : (double) forma[1] / forma[0];
+    }
+
+    /**
+     * Percorre a árvore sem recursão e mede a sua forma.
+     *
+     * @return número de nós, soma das profundidades e altura
+     */
+    private long[] medirForma() {
+        long[] forma = new long[3];
+        if (root == null) return forma;
+
+        ArrayDeque<Node> nos = new ArrayDeque<>();
+        ArrayDeque<Integer> profundidades = new ArrayDeque<>();
+        nos.push(root);
+        profundidades.push(1);
+        while (!nos.isEmpty()) {
+            Node node = nos.pop();
+            int profundidade = profundidades.pop();
+            forma[0]++;
+            forma[1] += profundidade;
+            forma[2] = Math.max(forma[2], profundidade);
+            if (node.esquerda != null) {
+                nos.push(node.esquerda);
+                profundidades.push(profundidade + 1);
+            }
+            if (node.direita != null) {
+                nos.push(node.direita);
+                profundidades.push(profundidade + 1);
+            }
+        }
+        return forma;
+    }
+
     /**
      * Realiza uma rotação à esquerda para manter as propriedades do heap.
      *
@@ -83,6 +1070,10 @@ public class TreapTree {
         Node y = x.direita;
         x.direita = y.esquerda;
         y.esquerda = x;
+        if (contarTamanhos) {
+            atualizarTamanho(x);
+            atualizarTamanho(y);
+        }
         return y;
     }
 
@@ -97,6 +1088,163 @@ public class TreapTree {
         Node x = y.esquerda;
         y.esquerda = x.direita;
         x.direita = y;
+        if (contarTamanhos) {
+            atualizarTamanho(y);
+            atualizarTamanho(x);
+        }
         return x;
     }
-}
\ No newline at end of file
+
+    /**
+     * Retorna o tamanho da subárvore de um nó.
+     *
+     * @param node O nó a ser avaliado.
+     * @return O número de nós da subárvore, ou 0 se for {@code null}.
+     */
+    private int tamanho(Node node) {
+        return node == null ? 0 : ((NoContado) node).tamanho;
+    }
+
+    /**
+     * Atualiza o tamanho de um nó com base nos tamanhos dos seus filhos.
+     *
+     * @param node O nó cujo tamanho deve ser atualizado.
+     */
+    private void atualizarTamanho(Node node) {
+        ((NoContado) node).tamanho = 1 + tamanho(node.esquerda) + tamanho(node.direita);
+    }
+
+    /**
+     * Cursor em ordem pela treap, com a pilha reservada pela {@link #altura()}
+     * da árvore. {@link #reiniciar()} reutiliza-a e só a faz crescer se a
+     * árvore tiver ficado mais alta.
+     */
+    public final class Cursor implements PrimitiveIterator.OfInt {
+        private Node[] pilha = new Node[Math.max(1, altura())];
+        private int topo = 0;
+
+        private Cursor() {
+            descer(root);
+        }
+
+        /**
+         * Volta a posicionar o cursor na menor chave da árvore, reutilizando a pilha.
+         */
+        public void reiniciar() {
+            Arrays.fill(pilha, 0, topo, null);
+            topo = 0;
+            descer(root);
+        }
+
+        private void descer(Node node) {
+            for (; node != null; node = node.esquerda) {
+                if (topo == pilha.length) pilha = Arrays.copyOf(pilha, topo * 2);
+                pilha[topo++] = node;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return topo > 0;
+        }
+
+        @Override
+        public int nextInt() {
+            if (topo == 0) throw new NoSuchElementException();
+            Node node = pilha[--topo];
+            descer(node.direita);
+            return node.chave;
+        }
+
+        @Override
+        public void forEachRemaining(IntConsumer acao) {
+            while (topo > 0) {
+                Node node = pilha[--topo];
+                descer(node.direita);
+                acao.accept(node.chave);
+            }
+        }
+    }
+
+    /**
+     * Spliterator em ordem pela treap, dividido pelas subárvores direitas da
+     * pilha como o da {@link BinaryTree}. As prioridades tornam o tamanho das
+     * partes irregular, por isso a estimativa (metade a cada divisão) é apenas
+     * indicativa.
+     */
+    private final class Percurso implements Spliterator.OfInt {
+        private Node[] pilha;
+        private int topo = 0, corte = 0;
+        private long estimativa;
+
+        Percurso(Node raiz, long estimativa) {
+            this.pilha = new Node[Math.max(1, altura())];
+            this.estimativa = estimativa;
+            descer(raiz);
+        }
+
+        private Percurso(Node[] pilha, int topo, long estimativa) {
+            this.pilha = pilha;
+            this.topo = topo;
+            this.corte = 1;
+            this.estimativa = estimativa;
+        }
+
+        private void descer(Node node) {
+            for (; node != null; node = node.esquerda) {
+                if (topo == pilha.length) pilha = Arrays.copyOf(pilha, topo * 2);
+                pilha[topo++] = node;
+            }
+        }
+
+        @Override
+        public boolean tryAdvance(IntConsumer acao) {
+            if (topo == 0) return false;
+            Node node = pilha[--topo];
+            if (topo >= corte) descer(node.direita);
+            acao.accept(node.chave);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(IntConsumer acao) {
+            while (topo > 0) {
+                Node node = pilha[--topo];
+                if (topo >= corte) descer(node.direita);
+                acao.accept(node.chave);
+            }
+        }
+
+        @Override
+        public Spliterator.OfInt trySplit() {
+            int c = corte;
+            while (c < topo && pilha[c].direita == null) c++;
+            if (c >= topo) return null;
+
+            // Prefixo: o nó c (sem a subárvore direita) e os nós por cima dele
+            Node[] prefixo = Arrays.copyOfRange(pilha, c, c + pilha.length);
+            Node direita = pilha[c].direita;
+            Arrays.fill(pilha, c, topo, null);
+            int tamanhoPrefixo = topo - c;
+            topo = corte = c;
+            descer(direita);
+            estimativa >>>= 1;
+            return new Percurso(prefixo, tamanhoPrefixo, estimativa);
+        }
+
+        @Override
+        public long estimateSize() {
+            return estimativa;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SORTED | DISTINCT | NONNULL;
+        }
+
+        @Override
+        public Comparator<? super Integer> getComparator() {
+            return null;
+        }
+    }
+}
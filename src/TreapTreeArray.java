@@ -0,0 +1,155 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Variante da {@link TreapTree} em que os nós são guardados em arrays paralelos
+ * de tipos primitivos (struct-of-arrays) em vez de objetos individuais.
+ *
+ * Cada nó é identificado por um índice; o índice 0 representa o nó nulo.
+ * Os arrays crescem para o dobro quando ficam cheios. A lógica de inserção
+ * e rotação é a mesma da {@link TreapTree}.
+ *
+ * @author Guilherme Rosmaninho
+ * @version 1.0
+ */
+public class TreapTreeArray {
+
+    /** Índice que representa a ausência de nó. */
+    private static final int NULO = 0;
+
+    private int[] chaves;
+    private int[] prioridades;
+    private int[] esquerdas;
+    private int[] direitas;
+
+    /** Número de nós alocados (o índice 0 está reservado). */
+    private int tamanho = 0;
+
+    private int root = NULO;
+    private Random rand = new Random();
+
+    /**
+     * Número total de rotações realizadas durante inserções.
+     */
+    public int rotacoes = 0;
+
+    /**
+     * Cria uma treap vazia com capacidade inicial por omissão.
+     */
+    public TreapTreeArray() {
+        this(16);
+    }
+
+    /**
+     * Cria uma treap vazia com a capacidade inicial indicada.
+     *
+     * @param capacidade número de nós a reservar inicialmente
+     */
+    public TreapTreeArray(int capacidade) {
+        int n = Math.max(2, capacidade + 1);
+        chaves = new int[n];
+        prioridades = new int[n];
+        esquerdas = new int[n];
+        direitas = new int[n];
+    }
+
+    /**
+     * Insere uma nova chave inteira na Treap.
+     *
+     * @param chave A chave a ser inserida.
+     */
+    public void insert(int chave) {
+        root = insertRec(root, chave);
+    }
+
+    /**
+     * Devolve o número de bytes ocupados pelos arrays de nós.
+     *
+     * @return bytes reservados para o armazenamento
+     */
+    public long bytesUsados() {
+        return (long) chaves.length * 4 * Integer.BYTES;
+    }
+
+    /**
+     * Aloca um novo nó com prioridade aleatória, fazendo crescer os arrays se necessário.
+     *
+     * @param chave A chave a guardar no nó.
+     * @return O índice do novo nó.
+     */
+    private int novoNo(int chave) {
+        if (tamanho + 1 == chaves.length) crescer();
+        int node = ++tamanho;
+        chaves[node] = chave;
+        prioridades[node] = rand.nextInt();
+        return node;
+    }
+
+    /**
+     * Duplica a capacidade dos arrays de nós.
+     */
+    private void crescer() {
+        int n = chaves.length * 2;
+        chaves = Arrays.copyOf(chaves, n);
+        prioridades = Arrays.copyOf(prioridades, n);
+        esquerdas = Arrays.copyOf(esquerdas, n);
+        direitas = Arrays.copyOf(direitas, n);
+    }
+
+    /**
+     * Método recursivo auxiliar para inserção de uma chave.
+     *
+     * @param node Índice da subárvore atual.
+     * @param chave Chave a ser inserida.
+     * @return O índice da subárvore atualizada após a inserção e possíveis rotações.
+     */
+    private int insertRec(int node, int chave) {
+        if (node == NULO) return novoNo(chave);
+
+        // O filho é calculado antes da escrita porque a inserção pode realocar os arrays
+        if (chave < chaves[node]) {
+            int filho = insertRec(esquerdas[node], chave);
+            esquerdas[node] = filho;
+            if (prioridades[filho] > prioridades[node])
+                node = rotateRight(node);
+        } else if (chave > chaves[node]) {
+            int filho = insertRec(direitas[node], chave);
+            direitas[node] = filho;
+            if (prioridades[filho] > prioridades[node])
+                node = rotateLeft(node);
+        } else {
+            // Chave duplicada, não faz nada
+            return node;
+        }
+
+        return node;
+    }
+
+    /**
+     * Realiza uma rotação à esquerda para manter as propriedades do heap.
+     *
+     * @param x O nó desbalanceado.
+     * @return Novo nó raiz da subárvore após rotação.
+     */
+    private int rotateLeft(int x) {
+        rotacoes++;
+        int y = direitas[x];
+        direitas[x] = esquerdas[y];
+        esquerdas[y] = x;
+        return y;
+    }
+
+    /**
+     * Realiza uma rotação à direita para manter as propriedades do heap.
+     *
+     * @param y O nó desbalanceado.
+     * @return Novo nó raiz da subárvore após rotação.
+     */
+    private int rotateRight(int y) {
+        rotacoes++;
+        int x = esquerdas[y];
+        esquerdas[y] = direitas[x];
+        direitas[x] = y;
+        return x;
+    }
+}
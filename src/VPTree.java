@@ -1,3 +1,20 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
 /**
  * Classe que representa uma árvore vermelho-preto (VP), uma estrutura de dados
  * balanceada que garante inserções eficientes em tempo logarítmico.
@@ -28,23 +45,702 @@ public class VPTree {
         }
     }
 
+    /**
+     * Nó com o tamanho da sua subárvore, criado só com os tamanhos ativos
+     * (ver {@link #comTamanhos()}).
+     */
+    private class NoContado extends Node {
+        int tamanho = 1;
+
+        NoContado(int key) {
+            super(key);
+        }
+    }
+
+    /** Tamanho abaixo do qual a construção paralela passa a ser sequencial. */
+    private static final int LIMIAR_PARALELO = 1 << 13;
+
     private Node root;
 
+    /** Altura calculada por {@link #altura()}, ou -1 se a árvore mudou desde então. */
+    private int alturaGuardada = -1;
+
     /**
      * Número total de rotações realizadas durante inserções.
      */
     public int rotacoes = 0;
 
+    /**
+     * Número total de comparações de chaves feitas nas descidas das inserções.
+     */
+    public long comparacoes = 0;
+
+    /** Indica se o tamanho de cada subárvore é mantido (ver {@link #comTamanhos()}). */
+    private boolean contarTamanhos = false;
+
+    /** Caminho da raiz até ao ponto de inserção, reutilizado por {@link #insertIter(int)}. */
+    private Node[] caminho = new Node[64];
+
+    /** Cor de cada nó do caminho e do seu filho esquerdo antes da inserção. */
+    private boolean[] corAntes = new boolean[64], corEsquerdaAntes = new boolean[64];
+
+    /** Dedo: caminho da raiz até à última chave inserida por {@link #insertFinger(int)}. */
+    private Node[] dedo = new Node[64];
+
+    /** Intervalo aberto de chaves que cabe na subárvore de cada nó do dedo. */
+    private long[] dedoInf = new long[64], dedoSup = new long[64];
+
+    /** Cor de cada nó do dedo e do seu filho esquerdo, registada na última descida. */
+    private boolean[] dedoCor = new boolean[64], dedoCorEsquerda = new boolean[64];
+
+    /** Número de níveis válidos do dedo; 0 quando outra inserção o invalidou. */
+    private int tamanhoDedo = 0;
+
+    /**
+     * Constrói em tempo linear uma árvore VP válida a partir de chaves
+     * ordenadas de forma crescente, sem qualquer rotação.
+     *
+     * A árvore é construída como uma árvore 2-3 com todas as folhas à mesma
+     * profundidade, em que cada nó de três filhos é representado por um nó
+     * preto com um filho esquerdo vermelho. As chaves repetidas são ignoradas.
+     *
+     * @param ordenadas chaves por ordem crescente
+     * @return a árvore construída
+     * @throws IllegalArgumentException se as chaves não estiverem ordenadas
+     */
+    public static VPTree fromSorted(int[] ordenadas) {
+        int[] chaves = DetetorOrdem.semDuplicados(ordenadas);
+
+        // Menor altura negra h tal que uma árvore 2-3 de altura h comporta todas as chaves
+        long capacidade = 0;
+        while (capacidade < chaves.length) capacidade = capacidade * 3 + 2;
+
+        VPTree tree = new VPTree();
+        tree.root = tree.construir23(chaves, 0, chaves.length, capacidade);
+        return tree;
+    }
+
+    /**
+     * Constrói uma árvore VP a partir de um conjunto de chaves qualquer.
+     * Se as chaves já estiverem ordenadas (crescente ou decrescente) usa
+     * {@link #fromSorted(int[])}; caso contrário insere-as uma a uma.
+     *
+     * @param chaves chaves a carregar
+     * @return a árvore construída
+     */
+    public static VPTree carregar(int[] chaves) {
+        int[] ordenadas = DetetorOrdem.ordenadasSemDuplicados(chaves);
+        if (ordenadas != null) return fromSorted(ordenadas);
+
+        VPTree tree = new VPTree();
+        for (int key : chaves) tree.insert(key);
+        return tree;
+    }
+
+    /**
+     * Constrói em paralelo uma árvore VP com as chaves indicadas, por qualquer ordem.
+     *
+     * As chaves são ordenadas e deduplicadas com uma ordenação paralela e as
+     * subárvores de cada nó 2-3 grande são construídas em tarefas separadas
+     * do pool, sendo ligadas ao nó no regresso. A árvore resultante contém as
+     * mesmas chaves que a inserção sequencial.
+     *
+     * @param chaves chaves a carregar
+     * @param pool pool onde correm a ordenação e a construção
+     * @return a árvore construída
+     */
+    public static VPTree carregarParalelo(int[] chaves, ForkJoinPool pool) {
+        VPTree tree = new VPTree();
+        tree.root = pool.invoke(ForkJoinTask.adapt(() -> {
+            int[] ordenadas = DetetorOrdem.ordenarEmParalelo(chaves);
+            long capacidade = 0;
+            while (capacidade < ordenadas.length) capacidade = capacidade * 3 + 2;
+            return tree.new ConstrucaoParalela(ordenadas, 0, ordenadas.length, capacidade).invoke();
+        }));
+        return tree;
+    }
+
+    /**
+     * Tarefa que constrói uma subárvore 2-3, com a mesma divisão de
+     * {@link #construir23(int[], int, int, long)}, repartindo os filhos de
+     * cada nó por tarefas enquanto o intervalo for grande.
+     */
+    @SuppressWarnings("serial") // as tarefas nunca são serializadas
+    private class ConstrucaoParalela extends RecursiveTask<Node> {
+        private final int[] chaves;
+        private final int inicio, quantidade;
+        private final long capacidade;
+
+        ConstrucaoParalela(int[] chaves, int inicio, int quantidade, long capacidade) {
+            this.chaves = chaves;
+            this.inicio = inicio;
+            this.quantidade = quantidade;
+            this.capacidade = capacidade;
+        }
+
+        @Override
+        protected Node compute() {
+            if (quantidade < LIMIAR_PARALELO) return construir23(chaves, inicio, quantidade, capacidade);
+
+            long capacidadeFilho = (capacidade + 1) / 3 - 1;
+            if (quantidade - 1 <= 2 * capacidadeFilho) {
+                int esquerda = (quantidade - 1) / 2;
+                ConstrucaoParalela tarefa = new ConstrucaoParalela(chaves, inicio, esquerda, capacidadeFilho);
+                tarefa.fork();
+                Node node = novoNo(chaves[inicio + esquerda]);
+                node.cor = PRETO;
+                node.direita = new ConstrucaoParalela(chaves, inicio + esquerda + 1,
+                        quantidade - 1 - esquerda, capacidadeFilho).compute();
+                node.esquerda = tarefa.join();
+                return node;
+            }
+
+            int restantes = quantidade - 2;
+            int primeira = restantes / 3;
+            int segunda = (restantes - primeira) / 2;
+            int terceira = restantes - primeira - segunda;
+
+            ConstrucaoParalela t1 = new ConstrucaoParalela(chaves, inicio, primeira, capacidadeFilho);
+            ConstrucaoParalela t2 = new ConstrucaoParalela(chaves, inicio + primeira + 1, segunda, capacidadeFilho);
+            t1.fork();
+            t2.fork();
+
+            Node node = novoNo(chaves[inicio + primeira + 1 + segunda]);
+            node.cor = PRETO;
+            node.direita = new ConstrucaoParalela(chaves, inicio + primeira + segunda + 2,
+                    terceira, capacidadeFilho).compute();
+
+            Node vermelho = novoNo(chaves[inicio + primeira]);
+            vermelho.direita = t2.join();
+            vermelho.esquerda = t1.join();
+            node.esquerda = vermelho;
+            return node;
+        }
+    }
+
+    /**
+     * Constrói recursivamente uma subárvore 2-3 com um número fixo de chaves.
+     *
+     * Usa um nó de dois filhos sempre que as chaves restantes cabem em duas
+     * subárvores da altura seguinte e, caso contrário, um nó de três filhos.
+     *
+     * @param chaves chaves estritamente crescentes
+     * @param inicio primeira posição do intervalo
+     * @param quantidade número de chaves do intervalo
+     * @param capacidade número máximo de chaves de uma subárvore desta altura (3^h - 1)
+     * @return a raiz da subárvore, ou {@code null} se o intervalo for vazio
+     */
+    private Node construir23(int[] chaves, int inicio, int quantidade, long capacidade) {
+        if (quantidade == 0) return null;
+
+        long capacidadeFilho = (capacidade + 1) / 3 - 1;
+        if (quantidade - 1 <= 2 * capacidadeFilho) {
+            int esquerda = (quantidade - 1) / 2;
+            Node node = novoNo(chaves[inicio + esquerda]);
+            node.cor = PRETO;
+            node.esquerda = construir23(chaves, inicio, esquerda, capacidadeFilho);
+            node.direita = construir23(chaves, inicio + esquerda + 1, quantidade - 1 - esquerda, capacidadeFilho);
+            return node;
+        }
+
+        int restantes = quantidade - 2;
+        int primeira = restantes / 3;
+        int segunda = (restantes - primeira) / 2;
+        int terceira = restantes - primeira - segunda;
+
+        Node vermelho = novoNo(chaves[inicio + primeira]);
+        vermelho.esquerda = construir23(chaves, inicio, primeira, capacidadeFilho);
+        vermelho.direita = construir23(chaves, inicio + primeira + 1, segunda, capacidadeFilho);
+
+        Node node = novoNo(chaves[inicio + primeira + 1 + segunda]);
+        node.cor = PRETO;
+        node.esquerda = vermelho;
+        node.direita = construir23(chaves, inicio + primeira + segunda + 2, terceira, capacidadeFilho);
+        return node;
+    }
+
     /**
      * Insere uma nova chave inteira na árvore.
      *
      * @param key A chave a ser inserida.
      */
     public void insert(int key) {
+        tamanhoDedo = 0;
+        alturaGuardada = -1;
         root = insertRec(root, key);
         root.cor = PRETO;
     }
 
+    /**
+     * Verifica se uma chave existe na árvore.
+     *
+     * @param key chave a procurar
+     * @return true se a chave existir, false caso contrário
+     */
+    public boolean contains(int key) {
+        Node atual = root;
+        while (atual != null) {
+            if (key < atual.key) atual = atual.esquerda;
+            else if (key > atual.key) atual = atual.direita;
+            else return true;
+        }
+        return false;
+    }
+
+    /**
+     * Devolve a maior chave da árvore menor ou igual à indicada.
+     *
+     * @param key chave de referência
+     * @return a chave encontrada, ou {@code null} se não existir
+     */
+    public Integer floor(int key) {
+        Node atual = root, melhor = null;
+        while (atual != null) {
+            if (key < atual.key) {
+                atual = atual.esquerda;
+            } else if (key > atual.key) {
+                melhor = atual;
+                atual = atual.direita;
+            } else {
+                return atual.key;
+            }
+        }
+        return melhor == null ? null : melhor.key;
+    }
+
+    /**
+     * Devolve a menor chave da árvore maior ou igual à indicada.
+     *
+     * @param key chave de referência
+     * @return a chave encontrada, ou {@code null} se não existir
+     */
+    public Integer ceiling(int key) {
+        Node atual = root, melhor = null;
+        while (atual != null) {
+            if (key > atual.key) {
+                atual = atual.direita;
+            } else if (key < atual.key) {
+                melhor = atual;
+                atual = atual.esquerda;
+            } else {
+                return atual.key;
+            }
+        }
+        return melhor == null ? null : melhor.key;
+    }
+
+    /**
+     * Percorre por ordem crescente as chaves do intervalo [de, ate], sem
+     * recursão e sem visitar as subárvores que ficam fora do intervalo.
+     *
+     * @param de limite inferior (inclusive)
+     * @param ate limite superior (inclusive)
+     * @param acao ação aplicada a cada chave do intervalo
+     * @return o número de chaves visitadas
+     */
+    public int range(int de, int ate, IntConsumer acao) {
+        int visitadas = 0;
+        ArrayDeque<Node> pilha = new ArrayDeque<>();
+        Node atual = root;
+        while (true) {
+            while (atual != null) {
+                if (atual.key < de) {
+                    atual = atual.direita;
+                } else {
+                    pilha.push(atual);
+                    atual = atual.esquerda;
+                }
+            }
+            if (pilha.isEmpty()) return visitadas;
+
+            Node node = pilha.pop();
+            if (node.key > ate) return visitadas;
+            acao.accept(node.key);
+            visitadas++;
+            atual = node.direita;
+        }
+    }
+
+    /**
+     * Devolve um cursor pelas chaves, por ordem crescente. O cursor não aloca
+     * nada por chave e pode ser reposto no início com {@link Cursor#reiniciar()}
+     * para voltar a percorrer a árvore sem criar outro. Deixa de ser válido se
+     * a árvore for alterada.
+     *
+     * @return o cursor, posicionado na menor chave
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Devolve um spliterator pelas chaves, por ordem crescente, que se divide
+     * nas fronteiras das subárvores, para agregações com
+     * {@code IntStream.parallel()}. A árvore não pode ser alterada enquanto
+     * é percorrida.
+     *
+     * @return o spliterator
+     */
+    public Spliterator.OfInt spliterator() {
+        return new Percurso(root, contarTamanhos ? tamanho(root) : Long.MAX_VALUE);
+    }
+
+    /**
+     * Devolve as chaves como um {@link IntStream}, por ordem crescente.
+     *
+     * @param paralelo true para um stream paralelo
+     * @return o stream das chaves
+     */
+    public IntStream stream(boolean paralelo) {
+        return StreamSupport.intStream(spliterator(), paralelo);
+    }
+
+    /**
+     * Converte a árvore numa forma imutável sem referências, num único
+     * {@code int[]} com disposição Eytzinger, para fases só de leitura. A
+     * árvore não é alterada.
+     *
+     * @return a forma imutável com as chaves atuais
+     */
+    public FrozenTree freeze() {
+        return freeze(false);
+    }
+
+    /**
+     * Converte a árvore numa forma imutável sem referências, com disposição
+     * Eytzinger ou van Emde Boas (ver {@link FrozenTree}). A árvore não é alterada.
+     *
+     * @param vanEmdeBoas true para a disposição van Emde Boas
+     * @return a forma imutável com as chaves atuais
+     */
+    public FrozenTree freeze(boolean vanEmdeBoas) {
+        FrozenTree.Recolha recolha = new FrozenTree.Recolha();
+        range(Integer.MIN_VALUE, Integer.MAX_VALUE, recolha);
+        return vanEmdeBoas ? FrozenTree.vanEmdeBoas(recolha.chaves()) : FrozenTree.eytzinger(recolha.chaves());
+    }
+
+    /**
+     * Grava a árvore num ficheiro de snapshot binário (ver {@link FormatoArvore}):
+     * os nós em pré-ordem, cada um com a chave, a cor de cada nó e os filhos
+     * que tem. O ficheiro é substituído se existir.
+     *
+     * @param ficheiro caminho do ficheiro
+     * @throws IOException se não for possível escrever o ficheiro
+     */
+    public void gravar(Path ficheiro) throws IOException {
+        try (FormatoArvore.Escritor escritor = new FormatoArvore.Escritor(ficheiro, FormatoArvore.VP,
+                contarTamanhos ? FormatoArvore.TAMANHOS : 0)) {
+            if (root == null) return;
+            ArrayDeque<Node> pilha = new ArrayDeque<>();
+            pilha.push(root);
+            while (!pilha.isEmpty()) {
+                Node node = pilha.pop();
+                int filhos = (node.esquerda != null ? FormatoArvore.ESQUERDA : 0)
+                        | (node.direita != null ? FormatoArvore.DIREITA : 0);
+                escritor.no(5).putInt(node.key).put((byte) ((node.cor == VERMELHO ? 1 : 0) | filhos << 6));
+                if (node.direita != null) pilha.push(node.direita);
+                if (node.esquerda != null) pilha.push(node.esquerda);
+            }
+        }
+    }
+
+    /**
+     * Lê uma árvore de um ficheiro de snapshot gravado por {@link #gravar(Path)},
+     * mapeado em memória. A árvore é refeita com a mesma forma e com as cores guardadas,
+     * numa só passagem e sem rotações.
+     *
+     * @param ficheiro caminho do ficheiro
+     * @return a árvore lida
+     * @throws IOException se o ficheiro não puder ser lido ou não for um snapshot válido
+     */
+    public static VPTree ler(Path ficheiro) throws IOException {
+        ByteBuffer mapa = FormatoArvore.mapear(ficheiro, FormatoArvore.VP, 5);
+        VPTree arvore = new VPTree();
+        arvore.contarTamanhos = (FormatoArvore.opcoes(mapa) & FormatoArvore.TAMANHOS) != 0;
+        arvore.lerNos(mapa, FormatoArvore.nos(mapa));
+        if (arvore.contarTamanhos) arvore.recalcularTamanhos();
+        return arvore;
+    }
+
+    /**
+     * Refaz a árvore a partir dos nós em pré-ordem. Cada nó com filhos fica
+     * numa pilha até receber todos os filhos que o registo indica.
+     */
+    private void lerNos(ByteBuffer mapa, int n) throws IOException {
+        Node[] pilha = new Node[64];
+        int[] pendentes = new int[64];
+        int topo = 0;
+        for (int i = 0; i < n; i++) {
+            int key = mapa.getInt();
+            int meta = mapa.get() & 0xFF;
+            Node node = novoNo(key);
+            node.cor = (meta & 1) != 0 ? VERMELHO : PRETO;
+            int filhos = meta >>> 6;
+
+            if (root == null) {
+                root = node;
+            } else {
+                if (topo == 0) throw new IOException("Snapshot inválido: nó sem pai na posição " + i);
+                Node pai = pilha[topo - 1];
+                if ((pendentes[topo - 1] & FormatoArvore.ESQUERDA) != 0) {
+                    pai.esquerda = node;
+                    pendentes[topo - 1] &= ~FormatoArvore.ESQUERDA;
+                } else {
+                    pai.direita = node;
+                    pendentes[topo - 1] = 0;
+                }
+                if (pendentes[topo - 1] == 0) topo--;
+            }
+
+            if (filhos != 0) {
+                if (topo == pilha.length) {
+                    pilha = Arrays.copyOf(pilha, topo * 2);
+                    pendentes = Arrays.copyOf(pendentes, topo * 2);
+                }
+                pilha[topo] = node;
+                pendentes[topo++] = filhos;
+            }
+        }
+        if (topo != 0) throw new IOException("Snapshot inválido: faltam nós");
+    }
+
+    /**
+     * Ativa a contagem do tamanho de cada subárvore, que permite
+     * {@link #rank(int)}, {@link #select(int)} e {@link #countRange(int, int)}
+     * em O(log n). Na descida de uma inserção o tamanho de cada nó do caminho
+     * é incrementado; as rotações acertam os dois nós rodados e as trocas de
+     * cor não mexem nos tamanhos. Os nós existentes são trocados por nós com
+     * o campo do tamanho, que só estes têm (ver {@link AVLTree#comTamanhos()}).
+     *
+     * @return esta árvore
+     */
+    public VPTree comTamanhos() {
+        if (!contarTamanhos) {
+            contarTamanhos = true;
+            recalcularTamanhos();
+        }
+        return this;
+    }
+
+    /**
+     * Devolve o número de chaves da árvore menores do que a indicada.
+     *
+     * @param key chave de referência
+     * @return número de chaves menores
+     * @throws IllegalStateException se os tamanhos das subárvores não estiverem ativos
+     */
+    public int rank(int key) {
+        return contarMenores(key);
+    }
+
+    /**
+     * Devolve a chave com a posição indicada na ordem crescente.
+     *
+     * @param posicao posição da chave, a começar em 0
+     * @return a chave nessa posição
+     * @throws IllegalStateException se os tamanhos das subárvores não estiverem ativos
+     * @throws IndexOutOfBoundsException se a posição não existir
+     */
+    public int select(int posicao) {
+        exigirTamanhos();
+        if (posicao < 0 || posicao >= tamanho(root)) {
+            throw new IndexOutOfBoundsException("Posição " + posicao + " fora de [0, " + tamanho(root) + ")");
+        }
+
+        Node atual = root;
+        while (true) {
+            int esquerda = tamanho(atual.esquerda);
+            if (posicao < esquerda) {
+                atual = atual.esquerda;
+            } else if (posicao > esquerda) {
+                posicao -= esquerda + 1;
+                atual = atual.direita;
+            } else {
+                return atual.key;
+            }
+        }
+    }
+
+    /**
+     * Conta as chaves do intervalo [de, ate] sem as percorrer.
+     *
+     * @param de limite inferior (inclusive)
+     * @param ate limite superior (inclusive)
+     * @return número de chaves no intervalo
+     * @throws IllegalStateException se os tamanhos das subárvores não estiverem ativos
+     */
+    public int countRange(int de, int ate) {
+        if (de > ate) {
+            exigirTamanhos();
+            return 0;
+        }
+        return contarMenores((long) ate + 1) - contarMenores(de);
+    }
+
+    /**
+     * Conta as chaves menores do que um limite, somando os tamanhos das
+     * subárvores esquerdas deixadas para trás na descida.
+     *
+     * @param limite limite (exclusivo); é um long para que {@code ate + 1} não transborde
+     * @return número de chaves menores do que o limite
+     */
+    private int contarMenores(long limite) {
+        exigirTamanhos();
+        int menores = 0;
+        Node atual = root;
+        while (atual != null) {
+            if (limite <= atual.key) {
+                atual = atual.esquerda;
+            } else {
+                menores += tamanho(atual.esquerda) + 1;
+                atual = atual.direita;
+            }
+        }
+        return menores;
+    }
+
+    /**
+     * Garante que os tamanhos das subárvores estão a ser mantidos.
+     *
+     * @throws IllegalStateException se não estiverem
+     */
+    private void exigirTamanhos() {
+        if (!contarTamanhos) {
+            throw new IllegalStateException("Os tamanhos das subárvores não estão ativos; use comTamanhos()");
+        }
+    }
+
+    /**
+     * Troca cada nó sem tamanho por um {@link NoContado} e calcula o tamanho de
+     * todos os nós, em largura e depois pela ordem inversa. É iterativa porque
+     * uma árvore lida por {@link #ler(Path)} não tem a forma verificada e pode
+     * ser mais alta do que uma Árvore Vermelho-Preto válida.
+     */
+    private void recalcularTamanhos() {
+        tamanhoDedo = 0;
+        if (root == null) return;
+
+        ArrayList<Node> ordem = new ArrayList<>();
+        root = contado(root);
+        ordem.add(root);
+        for (int i = 0; i < ordem.size(); i++) {
+            Node node = ordem.get(i);
+            if (node.esquerda != null) ordem.add(node.esquerda = contado(node.esquerda));
+            if (node.direita != null) ordem.add(node.direita = contado(node.direita));
+        }
+        for (int i = ordem.size() - 1; i >= 0; i--) atualizarTamanho(ordem.get(i));
+    }
+
+    /**
+     * Devolve o próprio nó, se já tiver tamanho, ou uma cópia com tamanho,
+     * com a mesma cor e os mesmos filhos.
+     */
+    private Node contado(Node node) {
+        if (node instanceof NoContado) return node;
+        Node copia = new NoContado(node.key);
+        copia.cor = node.cor;
+        copia.esquerda = node.esquerda;
+        copia.direita = node.direita;
+        return copia;
+    }
+
+    /**
+     * Cria um nó vermelho, com o campo do tamanho se os tamanhos estiverem ativos.
+     *
+     * @param key A chave do nó.
+     * @return O novo nó.
+     */
+    private Node novoNo(int key) {
+        return contarTamanhos ? new NoContado(key) : new Node(key);
+    }
+
+    /**
+     * Devolve a altura da árvore (número de nós no caminho mais longo). É
+     * calculada numa passagem sem recursão e guardada até à próxima alteração,
+     * porque também dimensiona as pilhas dos percursos.
+     *
+     * @return altura da árvore, ou 0 se estiver vazia
+     */
+    public int altura() {
+        if (root == null) return 0;
+        if (alturaGuardada < 0) alturaGuardada = calcularAltura();
+        return alturaGuardada;
+    }
+
+    /**
+     * Mede a altura com uma pilha explícita de nós e profundidades, que só
+     * cresce até à altura da árvore.
+     *
+     * @return altura da árvore não vazia
+     */
+    private int calcularAltura() {
+        Node[] nos = new Node[64];
+        int[] profundidades = new int[64];
+        int topo = 0, altura = 0;
+        nos[topo] = root;
+        profundidades[topo++] = 1;
+        while (topo > 0) {
+            Node node = nos[--topo];
+            int profundidade = profundidades[topo];
+            altura = Math.max(altura, profundidade);
+            if (topo + 2 > nos.length) {
+                nos = Arrays.copyOf(nos, nos.length * 2);
+                profundidades = Arrays.copyOf(profundidades, nos.length);
+            }
+            if (node.esquerda != null) {
+                nos[topo] = node.esquerda;
+                profundidades[topo++] = profundidade + 1;
+            }
+            if (node.direita != null) {
+                nos[topo] = node.direita;
+                profundidades[topo++] = profundidade + 1;
+            }
+        }
+        return altura;
+    }
+
+    /**
+     * Devolve a profundidade média dos nós, isto é, o comprimento médio do
+     * caminho desde a raiz (a raiz tem profundidade 1).
+     *
+     * @return profundidade média, ou 0 se a árvore estiver vazia
+     */
+    public double profundidadeMedia() {
+        long[] forma = medirForma();
+        return forma[0] == 0 ? 0.0 : (double) forma[1] / forma[0];
+    }
+
+    /**
+     * Percorre a árvore sem recursão e mede a sua forma.
+     *
+     * @return número de nós, soma das profundidades e altura
+     */
+    private long[] medirForma() {
+        long[] forma = new long[3];
+        if (root == null) return forma;
+
+        ArrayDeque<Node> nos = new ArrayDeque<>();
+        ArrayDeque<Integer> profundidades = new ArrayDeque<>();
+        nos.push(root);
+        profundidades.push(1);
+        while (!nos.isEmpty()) {
+            Node node = nos.pop();
+            int profundidade = profundidades.pop();
+            forma[0]++;
+            forma[1] += profundidade;
+            forma[2] = Math.max(forma[2], profundidade);
+            if (node.esquerda != null) {
+                nos.push(node.esquerda);
+                profundidades.push(profundidade + 1);
+            }
+            if (node.direita != null) {
+                nos.push(node.direita);
+                profundidades.push(profundidade + 1);
+            }
+        }
+        return forma;
+    }
+
     /**
      * Verifica se um nó é vermelho.
      *
@@ -55,6 +751,188 @@ public class VPTree {
         return node != null && node.cor == VERMELHO;
     }
 
+    /**
+     * Insere uma nova chave sem recursão, guardando o caminho num buffer explícito.
+     *
+     * Produz exatamente a mesma árvore que {@link #insert(int)}. Numa árvore VP
+     * válida as correções não alteram nenhum nó, por isso a subida termina
+     * logo que um nó do caminho mantém a identidade, a cor e a cor do filho
+     * esquerdo, que é tudo o que o pai consulta. Só as ligações que mudaram
+     * são reescritas.
+     *
+     * @param key A chave a ser inserida.
+     */
+    public void insertIter(int key) {
+        tamanhoDedo = 0;
+        alturaGuardada = -1;
+        if (root == null) {
+            root = novoNo(key);
+            root.cor = PRETO;
+            return;
+        }
+
+        int profundidade = 0;
+        Node atual = root;
+        while (atual != null) {
+            if (profundidade == caminho.length) {
+                int n = profundidade * 2;
+                caminho = Arrays.copyOf(caminho, n);
+                corAntes = Arrays.copyOf(corAntes, n);
+                corEsquerdaAntes = Arrays.copyOf(corEsquerdaAntes, n);
+            }
+            caminho[profundidade] = atual;
+            corAntes[profundidade] = atual.cor;
+            corEsquerdaAntes[profundidade] = isRed(atual.esquerda);
+            profundidade++;
+            comparacoes++;
+
+            if (key < atual.key) {
+                atual = atual.esquerda;
+            } else if (key > atual.key) {
+                atual = atual.direita;
+            } else {
+                // Chave duplicada, não faz nada
+                return;
+            }
+        }
+
+        if (contarTamanhos) for (int i = 0; i < profundidade; i++) ((NoContado) caminho[i]).tamanho++;
+        Node filho = novoNo(key);
+        for (int i = profundidade - 1; i >= 0; i--) {
+            Node node = caminho[i];
+            if (key < node.key) {
+                if (node.esquerda != filho) node.esquerda = filho;
+            } else {
+                if (node.direita != filho) node.direita = filho;
+            }
+
+            if (isRed(node.direita) && !isRed(node.esquerda)) node = rotateLeft(node);
+            if (isRed(node.esquerda) && isRed(node.esquerda.esquerda)) node = rotateRight(node);
+            if (isRed(node.esquerda) && isRed(node.direita)) flipColors(node);
+
+            if (node == caminho[i] && node.cor == corAntes[i] && isRed(node.esquerda) == corEsquerdaAntes[i]) {
+                root.cor = PRETO;
+                return;
+            }
+            filho = node;
+        }
+
+        root = filho;
+        root.cor = PRETO;
+    }
+
+    /**
+     * Insere uma nova chave partindo da posição da última inserção (finger search).
+     *
+     * Sobe pelo dedo até à subárvore mais funda cujo intervalo de chaves contém
+     * a nova chave e desce a partir daí, pelo que o custo da procura depende da
+     * distância à chave anterior e não do tamanho da árvore. As correções são
+     * as de {@link #insertIter(int)}, com a mesma paragem antecipada, e o dedo
+     * é refeito a partir do nível onde as correções pararam.
+     *
+     * @param key A chave a ser inserida.
+     */
+    public void insertFinger(int key) {
+        alturaGuardada = -1;
+        if (root == null) {
+            root = novoNo(key);
+            root.cor = PRETO;
+            tamanhoDedo = empilharDedo(0, root, Long.MIN_VALUE, Long.MAX_VALUE);
+            return;
+        }
+
+        int nivel = tamanhoDedo - 1;
+        while (nivel > 0 && (key <= dedoInf[nivel] || key >= dedoSup[nivel])) nivel--;
+        int profundidade = nivel < 0
+                ? descerDedo(0, root, Long.MIN_VALUE, Long.MAX_VALUE, key)
+                : descerDedo(nivel, dedo[nivel], dedoInf[nivel], dedoSup[nivel], key);
+
+        if (dedo[profundidade - 1].key == key) {
+            // Chave duplicada, o dedo fica no nó existente
+            tamanhoDedo = profundidade;
+            return;
+        }
+
+        if (contarTamanhos) for (int i = 0; i < profundidade; i++) ((NoContado) dedo[i]).tamanho++;
+        Node filho = novoNo(key);
+        for (int i = profundidade - 1; i >= 0; i--) {
+            Node node = dedo[i];
+            if (key < node.key) {
+                if (node.esquerda != filho) node.esquerda = filho;
+            } else {
+                if (node.direita != filho) node.direita = filho;
+            }
+
+            if (isRed(node.direita) && !isRed(node.esquerda)) node = rotateLeft(node);
+            if (isRed(node.esquerda) && isRed(node.esquerda.esquerda)) node = rotateRight(node);
+            if (isRed(node.esquerda) && isRed(node.direita)) flipColors(node);
+
+            if (node == dedo[i] && node.cor == dedoCor[i] && isRed(node.esquerda) == dedoCorEsquerda[i]) {
+                tamanhoDedo = descerDedo(i, node, dedoInf[i], dedoSup[i], key);
+                return;
+            }
+            filho = node;
+        }
+
+        root = filho;
+        root.cor = PRETO;
+        tamanhoDedo = descerDedo(0, root, Long.MIN_VALUE, Long.MAX_VALUE, key);
+    }
+
+    /**
+     * Desce a partir de um nó até encontrar a chave ou o ponto onde seria
+     * inserida, registando cada nó no dedo com o intervalo da sua subárvore.
+     *
+     * @param nivel Nível do dedo onde fica o nó de partida.
+     * @param atual Nó de partida.
+     * @param inf Limite inferior (exclusivo) das chaves da subárvore de partida.
+     * @param sup Limite superior (exclusivo) das chaves da subárvore de partida.
+     * @param key Chave procurada.
+     * @return Número de níveis do dedo; o último é o nó com a chave ou o seu futuro pai.
+     */
+    private int descerDedo(int nivel, Node atual, long inf, long sup, int key) {
+        while (true) {
+            nivel = empilharDedo(nivel, atual, inf, sup);
+            comparacoes++;
+            if (key < atual.key && atual.esquerda != null) {
+                sup = atual.key;
+                atual = atual.esquerda;
+            } else if (key > atual.key && atual.direita != null) {
+                inf = atual.key;
+                atual = atual.direita;
+            } else {
+                return nivel;
+            }
+        }
+    }
+
+    /**
+     * Regista um nó num nível do dedo, com o intervalo da sua subárvore e as
+     * cores atuais, fazendo crescer os buffers se necessário.
+     *
+     * @param nivel Nível a escrever.
+     * @param node Nó a registar.
+     * @param inf Limite inferior (exclusivo) das chaves da subárvore.
+     * @param sup Limite superior (exclusivo) das chaves da subárvore.
+     * @return O número de níveis após o registo.
+     */
+    private int empilharDedo(int nivel, Node node, long inf, long sup) {
+        if (nivel == dedo.length) {
+            int n = nivel * 2;
+            dedo = Arrays.copyOf(dedo, n);
+            dedoInf = Arrays.copyOf(dedoInf, n);
+            dedoSup = Arrays.copyOf(dedoSup, n);
+            dedoCor = Arrays.copyOf(dedoCor, n);
+            dedoCorEsquerda = Arrays.copyOf(dedoCorEsquerda, n);
+        }
+        dedo[nivel] = node;
+        dedoInf[nivel] = inf;
+        dedoSup[nivel] = sup;
+        dedoCor[nivel] = node.cor;
+        dedoCorEsquerda[nivel] = isRed(node.esquerda);
+        return nivel + 1;
+    }
+
     /**
      * Método recursivo auxiliar para inserção de uma chave.
      *
@@ -63,8 +941,9 @@ public class VPTree {
      * @return A subárvore atualizada após a inserção e possíveis rotações.
      */
     private Node insertRec(Node node, int key) {
-        if (node == null) return new Node(key);
+        if (node == null) return novoNo(key);
 
+        comparacoes++;
         if (key < node.key) {
             node.esquerda = insertRec(node.esquerda, key);
         } else if (key > node.key) {
@@ -73,6 +952,7 @@ public class VPTree {
             // Chave duplicada, não faz nada
             return node;
         }
+        if (contarTamanhos) atualizarTamanho(node);
 
         if (isRed(node.direita) && !isRed(node.esquerda)) node = rotateLeft(node);
         if (isRed(node.esquerda) && isRed(node.esquerda.esquerda)) node = rotateRight(node);
@@ -94,6 +974,10 @@ public class VPTree {
         x.esquerda = h;
         x.cor = h.cor;
         h.cor = VERMELHO;
+        if (contarTamanhos) {
+            atualizarTamanho(h);
+            atualizarTamanho(x);
+        }
         return x;
     }
 
@@ -110,11 +994,16 @@ public class VPTree {
         x.direita = h;
         x.cor = h.cor;
         h.cor = VERMELHO;
+        if (contarTamanhos) {
+            atualizarTamanho(h);
+            atualizarTamanho(x);
+        }
         return x;
     }
 
     /**
      * Inverte as cores de um nó e seus filhos, mantendo as propriedades da árvore VP.
+     * Não altera a estrutura, pelo que os tamanhos das subárvores continuam válidos.
      *
      * @param h O nó cujo esquema de cores deve ser invertido.
      */
@@ -123,4 +1012,157 @@ public class VPTree {
         if (h.esquerda != null) h.esquerda.cor = PRETO;
         if (h.direita != null) h.direita.cor = PRETO;
     }
-}
\ No newline at end of file
+
+    /**
+     * Retorna o tamanho da subárvore de um nó.
+     *
+     * @param node O nó a ser avaliado.
+     * @return O número de nós da subárvore, ou 0 se for {@code null}.
+     */
+    private int tamanho(Node node) {
+        return node == null ? 0 : ((NoContado) node).tamanho;
+    }
+
+    /**
+     * Atualiza o tamanho de um nó com base nos tamanhos dos seus filhos.
+     *
+     * @param node O nó cujo tamanho deve ser atualizado.
+     */
+    private void atualizarTamanho(Node node) {
+        ((NoContado) node).tamanho = 1 + tamanho(node.esquerda) + tamanho(node.direita);
+    }
+
+    /**
+     * Cursor em ordem pela Árvore VP. A pilha é reservada com a altura da
+     * árvore, e não com o limite 2·log2(n + 1), porque uma árvore lida por
+     * {@link #ler(Path)} não tem a forma verificada; {@link #reiniciar()}
+     * reutiliza-a e só a faz crescer se a árvore tiver ficado mais alta.
+     */
+    public final class Cursor implements PrimitiveIterator.OfInt {
+        private Node[] pilha = new Node[Math.max(1, altura())];
+        private int topo = 0;
+
+        private Cursor() {
+            descer(root);
+        }
+
+        /**
+         * Volta a posicionar o cursor na menor chave da árvore, reutilizando a pilha.
+         */
+        public void reiniciar() {
+            Arrays.fill(pilha, 0, topo, null);
+            topo = 0;
+            descer(root);
+        }
+
+        private void descer(Node node) {
+            for (; node != null; node = node.esquerda) {
+                if (topo == pilha.length) pilha = Arrays.copyOf(pilha, topo * 2);
+                pilha[topo++] = node;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return topo > 0;
+        }
+
+        @Override
+        public int nextInt() {
+            if (topo == 0) throw new NoSuchElementException();
+            Node node = pilha[--topo];
+            descer(node.direita);
+            return node.key;
+        }
+
+        @Override
+        public void forEachRemaining(IntConsumer acao) {
+            while (topo > 0) {
+                Node node = pilha[--topo];
+                descer(node.direita);
+                acao.accept(node.key);
+            }
+        }
+    }
+
+    /**
+     * Spliterator em ordem pela Árvore VP, dividido pelas subárvores direitas da
+     * pilha como o da {@link BinaryTree}, com a pilha reservada pela altura da
+     * árvore, como a do {@link Cursor}.
+     */
+    private final class Percurso implements Spliterator.OfInt {
+        private Node[] pilha;
+        private int topo = 0, corte = 0;
+        private long estimativa;
+
+        Percurso(Node raiz, long estimativa) {
+            this.pilha = new Node[Math.max(1, altura())];
+            this.estimativa = estimativa;
+            descer(raiz);
+        }
+
+        private Percurso(Node[] pilha, int topo, long estimativa) {
+            this.pilha = pilha;
+            this.topo = topo;
+            this.corte = 1;
+            this.estimativa = estimativa;
+        }
+
+        private void descer(Node node) {
+            for (; node != null; node = node.esquerda) {
+                if (topo == pilha.length) pilha = Arrays.copyOf(pilha, topo * 2);
+                pilha[topo++] = node;
+            }
+        }
+
+        @Override
+        public boolean tryAdvance(IntConsumer acao) {
+            if (topo == 0) return false;
+            Node node = pilha[--topo];
+            if (topo >= corte) descer(node.direita);
+            acao.accept(node.key);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(IntConsumer acao) {
+            while (topo > 0) {
+                Node node = pilha[--topo];
+                if (topo >= corte) descer(node.direita);
+                acao.accept(node.key);
+            }
+        }
+
+        @Override
+        public Spliterator.OfInt trySplit() {
+            int c = corte;
+            while (c < topo && pilha[c].direita == null) c++;
+            if (c >= topo) return null;
+
+            // O prefixo (o nó c e os de cima) nunca é mais alto do que a pilha original
+            Node[] prefixo = Arrays.copyOfRange(pilha, c, c + pilha.length);
+            Node direita = pilha[c].direita;
+            Arrays.fill(pilha, c, topo, null);
+            int tamanhoPrefixo = topo - c;
+            topo = corte = c;
+            descer(direita);
+            estimativa >>>= 1;
+            return new Percurso(prefixo, tamanhoPrefixo, estimativa);
+        }
+
+        @Override
+        public long estimateSize() {
+            return estimativa;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SORTED | DISTINCT | NONNULL;
+        }
+
+        @Override
+        public Comparator<? super Integer> getComparator() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+import java.util.Arrays;
+
+/**
+ * Variante da {@link VPTree} em que os nós são guardados em arrays paralelos
+ * de tipos primitivos (struct-of-arrays) em vez de objetos individuais.
+ *
+ * Cada nó é identificado por um índice; o índice 0 representa o nó nulo,
+ * que é sempre preto. Os arrays crescem para o dobro quando ficam cheios.
+ * A lógica de inserção, rotação e troca de cores é a mesma da {@link VPTree}.
+ *
+ * @version 1.0
+ */
+public class VPTreeArray {
+
+    private static final boolean VERMELHO = true;
+    private static final boolean PRETO = false;
+
+    /** Índice que representa a ausência de nó. */
+    private static final int NULO = 0;
+
+    private int[] keys;
+    private int[] esquerdas;
+    private int[] direitas;
+    private boolean[] cores;
+
+    /** Número de nós alocados (o índice 0 está reservado). */
+    private int tamanho = 0;
+
+    private int root = NULO;
+
+    /**
+     * Número total de rotações realizadas durante inserções.
+     */
+    public int rotacoes = 0;
+
+    /**
+     * Cria uma árvore vazia com capacidade inicial por omissão.
+     */
+    public VPTreeArray() {
+        this(16);
+    }
+
+    /**
+     * Cria uma árvore vazia com a capacidade inicial indicada.
+     *
+     * @param capacidade número de nós a reservar inicialmente
+     */
+    public VPTreeArray(int capacidade) {
+        int n = Math.max(2, capacidade + 1);
+        keys = new int[n];
+        esquerdas = new int[n];
+        direitas = new int[n];
+        cores = new boolean[n];
+    }
+
+    /**
+     * Insere uma nova chave inteira na árvore.
+     *
+     * @param key A chave a ser inserida.
+     */
+    public void insert(int key) {
+        root = insertRec(root, key);
+        cores[root] = PRETO;
+    }
+
+    /**
+     * Devolve o número de bytes ocupados pelos arrays de nós.
+     *
+     * @return bytes reservados para o armazenamento
+     */
+    public long bytesUsados() {
+        return (long) keys.length * (3 * Integer.BYTES + 1);
+    }
+
+    /**
+     * Verifica se um nó é vermelho.
+     *
+     * @param node O nó a ser verificado.
+     * @return true se o nó for vermelho, false caso contrário.
+     */
+    private boolean isRed(int node) {
+        return node != NULO && cores[node] == VERMELHO;
+    }
+
+    /**
+     * Aloca um novo nó vermelho, fazendo crescer os arrays se necessário.
+     *
+     * @param key A chave a guardar no nó.
+     * @return O índice do novo nó.
+     */
+    private int novoNo(int key) {
+        if (tamanho + 1 == keys.length) crescer();
+        int node = ++tamanho;
+        keys[node] = key;
+        cores[node] = VERMELHO;
+        return node;
+    }
+
+    /**
+     * Duplica a capacidade dos arrays de nós.
+     */
+    private void crescer() {
+        int n = keys.length * 2;
+        keys = Arrays.copyOf(keys, n);
+        esquerdas = Arrays.copyOf(esquerdas, n);
+        direitas = Arrays.copyOf(direitas, n);
+        cores = Arrays.copyOf(cores, n);
+    }
+
+    /**
+     * Método recursivo auxiliar para inserção de uma chave.
+     *
+     * @param node Índice da subárvore atual.
+     * @param key Chave a ser inserida.
+     * @return O índice da subárvore atualizada após a inserção e possíveis rotações.
+     */
+    private int insertRec(int node, int key) {
+        if (node == NULO) return novoNo(key);
+
+        // O filho é calculado antes da escrita porque a inserção pode realocar os arrays
+        if (key < keys[node]) {
+            int filho = insertRec(esquerdas[node], key);
+            esquerdas[node] = filho;
+        } else if (key > keys[node]) {
+            int filho = insertRec(direitas[node], key);
+            direitas[node] = filho;
+        } else {
+            // Chave duplicada, não faz nada
+            return node;
+        }
+
+        if (isRed(direitas[node]) && !isRed(esquerdas[node])) node = rotateLeft(node);
+        if (isRed(esquerdas[node]) && isRed(esquerdas[esquerdas[node]])) node = rotateRight(node);
+        if (isRed(esquerdas[node]) && isRed(direitas[node])) flipColors(node);
+
+        return node;
+    }
+
+    /**
+     * Realiza uma rotação à esquerda para balancear a árvore.
+     *
+     * @param h O nó desbalanceado.
+     * @return Novo nó raiz da subárvore após rotação.
+     */
+    private int rotateLeft(int h) {
+        rotacoes++;
+        int x = direitas[h];
+        direitas[h] = esquerdas[x];
+        esquerdas[x] = h;
+        cores[x] = cores[h];
+        cores[h] = VERMELHO;
+        return x;
+    }
+
+    /**
+     * Realiza uma rotação à direita para balancear a árvore.
+     *
+     * @param h O nó desbalanceado.
+     * @return Novo nó raiz da subárvore após rotação.
+     */
+    private int rotateRight(int h) {
+        rotacoes++;
+        int x = esquerdas[h];
+        esquerdas[h] = direitas[x];
+        direitas[x] = h;
+        cores[x] = cores[h];
+        cores[h] = VERMELHO;
+        return x;
+    }
+
+    /**
+     * Inverte as cores de um nó e seus filhos, mantendo as propriedades da árvore VP.
+     *
+     * @param h O nó cujo esquema de cores deve ser invertido.
+     */
+    private void flipColors(int h) {
+        cores[h] = VERMELHO;
+        if (esquerdas[h] != NULO) cores[esquerdas[h]] = PRETO;
+        if (direitas[h] != NULO) cores[direitas[h]] = PRETO;
+    }
+}